@@ -21,11 +21,9 @@ package com.google.bitcoinj;
  */
 
 import com.mrd.bitlib.util.HashUtils;
-import com.mrd.bitlib.util.Sha256Hash;
 
 import java.io.UnsupportedEncodingException;
 import java.math.BigInteger;
-import java.util.Arrays;
 
 /**
  * <p>
@@ -115,8 +113,9 @@ public class Base58 {
    public static String encodeWithChecksum(byte[] input) {
       byte[] b = new byte[input.length + 4];
       System.arraycopy(input, 0, b, 0, input.length);
-      Sha256Hash checkSum = HashUtils.doubleSha256(b, 0, input.length);
-      System.arraycopy(checkSum.getBytes(), 0, b, input.length, 4);
+      byte[] checksum = new byte[HashUtils.SHA256_LENGTH];
+      HashUtils.doubleSha256(input, 0, input.length, checksum, 0);
+      System.arraycopy(checksum, 0, b, input.length, 4);
       return encode(b);
    }
    
@@ -178,16 +177,16 @@ public class Base58 {
       if (tmp == null || tmp.length < 4) {
          return null;
       }
-      byte[] bytes = copyOfRange(tmp, 0, tmp.length - 4);
-      byte[] checksum = copyOfRange(tmp, tmp.length - 4, tmp.length);
-
-      Sha256Hash sha256Hash = HashUtils.doubleSha256(bytes);
-      byte[] hash = sha256Hash.firstFourBytes();
-      if (!Arrays.equals(checksum, hash)) {
-         return null;
+      int length = tmp.length - 4;
+      byte[] hash = new byte[HashUtils.SHA256_LENGTH];
+      HashUtils.doubleSha256(tmp, 0, length, hash, 0);
+      for (int i = 0; i < 4; i++) {
+         if (tmp[length + i] != hash[i]) {
+            return null;
+         }
       }
 
-      return bytes;
+      return copyOfRange(tmp, 0, length);
    }
 
    //
@@ -7,8 +7,7 @@ import static java.lang.System.arraycopy;
 
 import java.security.GeneralSecurityException;
 
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
+import com.mrd.bitlib.crypto.KeyedHmac;
 
 /**
  * An implementation of the <a
@@ -109,8 +108,7 @@ public class SCrypt {
       if (r > MAX_VALUE / 128 / p)
          throw new IllegalArgumentException("Parameter r is too large");
 
-      Mac mac = Mac.getInstance("HmacSHA256");
-      mac.init(new SecretKeySpec(passwd, "HmacSHA256"));
+      KeyedHmac mac = KeyedHmac.hmacSha256(passwd);
 
       byte[] DK = new byte[dkLen];
 
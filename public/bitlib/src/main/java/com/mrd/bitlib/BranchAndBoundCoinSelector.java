@@ -0,0 +1,126 @@
+/*
+ * Copyright 2013 Megion Research & Development GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mrd.bitlib;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.mrd.bitlib.model.UnspentTransactionOutput;
+
+/**
+ * Searches for a set of outputs that matches the target closely enough that
+ * no change output is needed.
+ * <p>
+ * The search is a depth first branch and bound over the outputs ordered by
+ * descending value, trying inclusion before omission. A branch is cut when it
+ * overshoots the match window or when the remaining outputs cannot reach the
+ * target. The number of steps is bounded, so apart from the sorting done by
+ * the pool the search takes constant time. If no match is found the selection
+ * is left to a fallback selector.
+ */
+public class BranchAndBoundCoinSelector implements CoinSelector {
+
+   /**
+    * The maximum number of search steps before giving up
+    */
+   public static final int MAX_TRIES = 100000;
+
+   private final long _tolerance;
+   private final CoinSelector _fallback;
+
+   /**
+    * Create a selector that accepts any match which leaves less than the
+    * minimum output value as change, and falls back to oldest first selection
+    */
+   public BranchAndBoundCoinSelector() {
+      this(TransactionUtils.MINIMUM_OUTPUT_VALUE - 1, new OldestFirstCoinSelector());
+   }
+
+   /**
+    * Create a selector
+    *
+    * @param tolerance
+    *           the largest excess over the target that counts as a match. The
+    *           excess goes to the miners.
+    * @param fallback
+    *           the selector to use when there is no match
+    */
+   public BranchAndBoundCoinSelector(long tolerance, CoinSelector fallback) {
+      _tolerance = tolerance;
+      _fallback = fallback;
+   }
+
+   @Override
+   public List<UnspentTransactionOutput> select(UnspentOutputPool pool, long target) {
+      if (pool.getTotalValue() < target) {
+         return null;
+      }
+      List<UnspentTransactionOutput> match = findMatch(pool, target);
+      if (match != null) {
+         return match;
+      }
+      return _fallback.select(pool, target);
+   }
+
+   private List<UnspentTransactionOutput> findMatch(UnspentOutputPool pool, long target) {
+      int n = pool.size();
+      long[] values = new long[n];
+      for (int i = 0; i < n; i++) {
+         values[i] = pool.getByValue(i).value;
+      }
+      // remaining[i] is the sum of the values from index i on
+      long[] remaining = new long[n + 1];
+      for (int i = n - 1; i >= 0; i--) {
+         remaining[i] = remaining[i + 1] + values[i];
+      }
+
+      // The indexes of the included outputs in ascending order
+      int[] included = new int[n];
+      int numIncluded = 0;
+      int depth = 0;
+      long sum = 0;
+      for (int tries = 0; tries < MAX_TRIES; tries++) {
+         if (sum >= target && sum - target <= _tolerance) {
+            List<UnspentTransactionOutput> selected = new ArrayList<UnspentTransactionOutput>(numIncluded);
+            for (int i = 0; i < numIncluded; i++) {
+               selected.add(pool.getByValue(included[i]));
+            }
+            return selected;
+         }
+         if (sum > target || sum + remaining[depth] < target) {
+            // Backtrack by omitting the last included output
+            if (numIncluded == 0) {
+               return null;
+            }
+            int last = included[--numIncluded];
+            sum -= values[last];
+            depth = last + 1;
+         } else if (depth > 0 && (numIncluded == 0 || included[numIncluded - 1] != depth - 1)
+               && values[depth] == values[depth - 1]) {
+            // The previous output was omitted. Including an output of the same
+            // value instead would only repeat the search, so omit it too.
+            depth++;
+         } else {
+            included[numIncluded++] = depth;
+            sum += values[depth];
+            depth++;
+         }
+      }
+      return null;
+   }
+
+}
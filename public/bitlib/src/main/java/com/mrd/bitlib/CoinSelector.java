@@ -0,0 +1,44 @@
+/*
+ * Copyright 2013 Megion Research & Development GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mrd.bitlib;
+
+import java.util.List;
+
+import com.mrd.bitlib.model.UnspentTransactionOutput;
+
+/**
+ * A strategy for choosing which unspent outputs fund a transaction.
+ * <p>
+ * Implementations must be stateless or thread safe, as a selector may be
+ * shared between transaction builders.
+ */
+public interface CoinSelector {
+
+   /**
+    * Select unspent outputs from a pool that together are worth at least the
+    * target value.
+    *
+    * @param pool
+    *           the unspent outputs to choose from
+    * @param target
+    *           the value to send including the miner fee
+    * @return the selected outputs, or null if the pool does not hold enough
+    *         funds
+    */
+   List<UnspentTransactionOutput> select(UnspentOutputPool pool, long target);
+
+}
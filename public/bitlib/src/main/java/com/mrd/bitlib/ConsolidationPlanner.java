@@ -0,0 +1,229 @@
+/*
+ * Copyright 2013 Megion Research & Development GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mrd.bitlib;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.base.Preconditions;
+
+import com.mrd.bitlib.StandardTransactionBuilder.InsufficientFundsException;
+import com.mrd.bitlib.StandardTransactionBuilder.OutputTooSmallException;
+import com.mrd.bitlib.StandardTransactionBuilder.UnsignedTransaction;
+import com.mrd.bitlib.crypto.PublicKeyRing;
+import com.mrd.bitlib.model.Address;
+import com.mrd.bitlib.model.NetworkParameters;
+import com.mrd.bitlib.model.ScriptOutputStandard;
+import com.mrd.bitlib.model.UnspentTransactionOutput;
+
+/**
+ * Plans the consolidation of many small unspent outputs into few larger ones,
+ * so that later payments need fewer inputs.
+ * <p>
+ * Outputs are grouped by address, and each group is consolidated back into
+ * its own address so that no addresses are linked. Only outputs with standard
+ * scripts are considered, as these are the ones we can sign. Outputs worth
+ * less than the fee for spending them are left alone.
+ * <p>
+ * Each group is split into transactions no larger than the configured size,
+ * choosing the number of inputs per transaction that gives the lowest total
+ * fee.
+ */
+public class ConsolidationPlanner {
+
+   /**
+    * A planned consolidation transaction
+    */
+   public static class Consolidation {
+      public final Address address;
+      public final List<UnspentTransactionOutput> funding;
+      public final long fee;
+      public final int estimatedSize;
+
+      private Consolidation(Address address, List<UnspentTransactionOutput> funding, long fee, int estimatedSize) {
+         this.address = address;
+         this.funding = Collections.unmodifiableList(funding);
+         this.fee = fee;
+         this.estimatedSize = estimatedSize;
+      }
+
+      /**
+       * Get the value of the consolidated output, which is the value of the
+       * funding minus the fee
+       */
+      public long getValue() {
+         long sum = 0;
+         for (UnspentTransactionOutput output : funding) {
+            sum += output.value;
+         }
+         return sum - fee;
+      }
+   }
+
+   private static final Comparator<UnspentTransactionOutput> BY_VALUE_DESCENDING = new Comparator<UnspentTransactionOutput>() {
+      @Override
+      public int compare(UnspentTransactionOutput lhs, UnspentTransactionOutput rhs) {
+         return lhs.value > rhs.value ? -1 : (lhs.value == rhs.value ? 0 : 1);
+      }
+   };
+
+   private static final int OUTPUT_SIZE = TransactionUtils.calculateOutputSize(new ScriptOutputStandard(new byte[20])
+         .getScriptBytes().length);
+
+   private final NetworkParameters _network;
+   private final int _maxTransactionSize;
+   private final int _maxInputs;
+
+   /**
+    * Create a planner
+    *
+    * @param network            the network we are working on
+    * @param maxTransactionSize the largest size in bytes of a consolidation
+    *                           transaction. Must fit at least two inputs.
+    */
+   public ConsolidationPlanner(NetworkParameters network, int maxTransactionSize) {
+      _network = network;
+      _maxTransactionSize = maxTransactionSize;
+      int maxInputs = 0;
+      while (estimateSize(maxInputs + 1) <= maxTransactionSize) {
+         maxInputs++;
+      }
+      Preconditions.checkArgument(maxInputs >= 2, "Transaction size limit too small: " + maxTransactionSize);
+      _maxInputs = maxInputs;
+   }
+
+   /**
+    * Get the largest size in bytes of a consolidation transaction
+    */
+   public int getMaxTransactionSize() {
+      return _maxTransactionSize;
+   }
+
+   /**
+    * Plan the consolidation of a set of unspent outputs
+    *
+    * @param unspent the unspent outputs of the wallet
+    * @return the consolidation transactions to create, which spend disjoint
+    *         sets of outputs and can be sent in any order
+    */
+   public List<Consolidation> plan(Collection<UnspentTransactionOutput> unspent) {
+      // The fee share of a single input
+      long inputCost = TransactionUtils.calculateInputSize(TransactionUtils.MAX_STANDARD_INPUT_SCRIPT_SIZE)
+            * TransactionUtils.DEFAULT_MINER_FEE / 1000;
+      Map<Address, List<UnspentTransactionOutput>> groups = new LinkedHashMap<Address, List<UnspentTransactionOutput>>();
+      for (UnspentTransactionOutput output : unspent) {
+         if (!(output.script instanceof ScriptOutputStandard) || output.value <= inputCost) {
+            continue;
+         }
+         Address address = output.script.getAddress(_network);
+         List<UnspentTransactionOutput> group = groups.get(address);
+         if (group == null) {
+            group = new ArrayList<UnspentTransactionOutput>();
+            groups.put(address, group);
+         }
+         group.add(output);
+      }
+
+      List<Consolidation> plan = new ArrayList<Consolidation>();
+      for (Map.Entry<Address, List<UnspentTransactionOutput>> entry : groups.entrySet()) {
+         planGroup(entry.getKey(), entry.getValue(), plan);
+      }
+      return plan;
+   }
+
+   /**
+    * Split the outputs of one address into transactions with the lowest total
+    * fee
+    */
+   private void planGroup(Address address, List<UnspentTransactionOutput> group, List<Consolidation> plan) {
+      int n = group.size();
+      if (n < 2) {
+         // Nothing to consolidate
+         return;
+      }
+      long[] fees = new long[_maxInputs + 1];
+      for (int k = 2; k <= _maxInputs; k++) {
+         fees[k] = TransactionUtils.calculateFeeRequired(estimateSize(k));
+      }
+
+      // minFee[i] is the lowest total fee for consolidating i outputs and
+      // inputs[i] the number of inputs of the last transaction. Transactions
+      // have at least two inputs, so a single output cannot be consolidated.
+      long[] minFee = new long[n + 1];
+      int[] inputs = new int[n + 1];
+      minFee[1] = Long.MAX_VALUE;
+      for (int i = 2; i <= n; i++) {
+         minFee[i] = Long.MAX_VALUE;
+         // Try the largest transactions first so that ties go to fewer
+         // transactions
+         for (int k = Math.min(i, _maxInputs); k >= 2; k--) {
+            if (minFee[i - k] == Long.MAX_VALUE) {
+               continue;
+            }
+            long fee = minFee[i - k] + fees[k];
+            if (fee < minFee[i]) {
+               minFee[i] = fee;
+               inputs[i] = k;
+            }
+         }
+      }
+      if (minFee[n] == Long.MAX_VALUE) {
+         // Only possible with two inputs per transaction and an odd count.
+         // Leave out the smallest output.
+         n--;
+      }
+
+      List<UnspentTransactionOutput> sorted = new ArrayList<UnspentTransactionOutput>(group);
+      Collections.sort(sorted, BY_VALUE_DESCENDING);
+      for (int end = n; end > 0; end -= inputs[end]) {
+         int k = inputs[end];
+         List<UnspentTransactionOutput> funding = new ArrayList<UnspentTransactionOutput>(sorted.subList(end - k, end));
+         Consolidation consolidation = new Consolidation(address, funding, fees[k], estimateSize(k));
+         if (consolidation.getValue() >= TransactionUtils.MINIMUM_OUTPUT_VALUE) {
+            plan.add(consolidation);
+         }
+      }
+   }
+
+   /**
+    * Create the unsigned transaction of a planned consolidation
+    *
+    * @param consolidation the planned consolidation
+    * @param keyRing       the public key ring matching the funding
+    * @return an unsigned transaction with a single output to the address of
+    *         the consolidation
+    */
+   public UnsignedTransaction createUnsignedTransaction(Consolidation consolidation, PublicKeyRing keyRing)
+         throws InsufficientFundsException, OutputTooSmallException {
+      StandardTransactionBuilder builder = new StandardTransactionBuilder(_network);
+      builder.addOutput(consolidation.address, consolidation.getValue());
+      // The funding exactly covers the output and the fee, so there is no
+      // change
+      return builder.createUnsignedTransaction(consolidation.funding, consolidation.address, consolidation.fee,
+            keyRing, _network);
+   }
+
+   private static int estimateSize(int numInputs) {
+      return TransactionUtils.estimateStandardTransactionSize(numInputs, 1, OUTPUT_SIZE);
+   }
+
+}
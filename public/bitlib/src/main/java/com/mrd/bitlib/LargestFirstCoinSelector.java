@@ -0,0 +1,45 @@
+/*
+ * Copyright 2013 Megion Research & Development GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mrd.bitlib;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.mrd.bitlib.model.UnspentTransactionOutput;
+
+/**
+ * Selects the largest outputs first, which gives the fewest inputs and
+ * thereby the smallest transaction.
+ */
+public class LargestFirstCoinSelector implements CoinSelector {
+
+   @Override
+   public List<UnspentTransactionOutput> select(UnspentOutputPool pool, long target) {
+      if (pool.getTotalValue() < target) {
+         return null;
+      }
+      List<UnspentTransactionOutput> selected = new ArrayList<UnspentTransactionOutput>();
+      long found = 0;
+      for (int i = 0; found < target; i++) {
+         UnspentTransactionOutput output = pool.getByValue(i);
+         found += output.value;
+         selected.add(output);
+      }
+      return selected;
+   }
+
+}
@@ -0,0 +1,284 @@
+/*
+ * Copyright 2013 Megion Research & Development GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mrd.bitlib;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.SettableFuture;
+
+import com.mrd.bitlib.StandardTransactionBuilder.InsufficientFundsException;
+import com.mrd.bitlib.StandardTransactionBuilder.OutputTooSmallException;
+import com.mrd.bitlib.StandardTransactionBuilder.UnsignedTransaction;
+import com.mrd.bitlib.crypto.PrivateKeyRing;
+import com.mrd.bitlib.crypto.RandomSource;
+import com.mrd.bitlib.model.Address;
+import com.mrd.bitlib.model.NetworkParameters;
+import com.mrd.bitlib.model.OutPoint;
+import com.mrd.bitlib.model.Transaction;
+import com.mrd.bitlib.model.UnspentTransactionOutput;
+
+/**
+ * Queues payments and sends them in batches, each as a single transaction
+ * with one output per payment and a single change output.
+ * <p>
+ * A batch is sent when the queue holds the maximum number of payments, when
+ * the oldest queued payment has waited for the maximum delay, or when
+ * {@link #flush} is called. Compared to sending payments one by one this
+ * saves the inputs, the change outputs and the signatures of all but one
+ * transaction per batch.
+ * <p>
+ * The result of each payment is reported through the future returned when it
+ * was queued. If a batch cannot be funded, signed or broadcast, all its
+ * payments fail with the same exception.
+ */
+public class PaymentBatcher {
+
+   /**
+    * Provides the unspent outputs that fund the batches
+    */
+   public interface UnspentOutputSource {
+      List<UnspentTransactionOutput> getUnspentOutputs();
+   }
+
+   /**
+    * Sends the transaction of a batch to the network
+    */
+   public interface TransactionBroadcaster {
+      void broadcast(Transaction transaction) throws IOException;
+   }
+
+   /**
+    * The transaction that carries a payment and the index of its output
+    */
+   public static class PaymentResult {
+      public final Transaction transaction;
+      public final int outputIndex;
+
+      public PaymentResult(Transaction transaction, int outputIndex) {
+         this.transaction = transaction;
+         this.outputIndex = outputIndex;
+      }
+   }
+
+   private static class QueuedPayment {
+      private final Address address;
+      private final long value;
+      private final SettableFuture<PaymentResult> result;
+
+      private QueuedPayment(Address address, long value) {
+         this.address = address;
+         this.value = value;
+         this.result = SettableFuture.create();
+      }
+   }
+
+   private final NetworkParameters _network;
+   private final UnspentOutputSource _unspentOutputSource;
+   private final PrivateKeyRing _keyRing;
+   private final Address _changeAddress;
+   private final RandomSource _randomSource;
+   private final TransactionBroadcaster _broadcaster;
+   private final ScheduledExecutorService _scheduler;
+   private final int _maxPayments;
+   private final long _maxDelayMillis;
+   private final List<QueuedPayment> _queue;
+   private final Object _flushLock;
+   // Outputs spent by earlier batches which the source may still report
+   private final Set<OutPoint> _spent;
+   private ScheduledFuture<?> _timer;
+   private volatile CoinSelector _coinSelector;
+
+   private final Runnable _flushTask = new Runnable() {
+
+      @Override
+      public void run() {
+         flush();
+      }
+   };
+
+   /**
+    * Create a payment batcher
+    *
+    * @param network          the network we are working on
+    * @param unspentOutputs   the source of the outputs that fund the batches
+    * @param keyRing          the private keys of the unspent outputs
+    * @param changeAddress    the address to send the change of each batch to
+    * @param randomSource     the random source used for signing
+    * @param broadcaster      sends the transaction of each batch
+    * @param scheduler        the executor that sends batches when a threshold is
+    *                         reached
+    * @param maxPayments      the number of queued payments at which a batch is sent
+    * @param maxDelayMillis   the longest time a payment waits in the queue
+    */
+   public PaymentBatcher(NetworkParameters network, UnspentOutputSource unspentOutputs, PrivateKeyRing keyRing,
+                         Address changeAddress, RandomSource randomSource, TransactionBroadcaster broadcaster,
+                         ScheduledExecutorService scheduler, int maxPayments, long maxDelayMillis) {
+      Preconditions.checkArgument(maxPayments > 0);
+      Preconditions.checkArgument(maxDelayMillis >= 0);
+      _network = network;
+      _unspentOutputSource = unspentOutputs;
+      _keyRing = keyRing;
+      _changeAddress = Preconditions.checkNotNull(changeAddress);
+      _randomSource = randomSource;
+      _broadcaster = broadcaster;
+      _scheduler = scheduler;
+      _maxPayments = maxPayments;
+      _maxDelayMillis = maxDelayMillis;
+      _queue = new ArrayList<QueuedPayment>();
+      _flushLock = new Object();
+      _spent = new HashSet<OutPoint>();
+      _coinSelector = new OldestFirstCoinSelector();
+   }
+
+   /**
+    * Set the strategy for choosing the unspent outputs that fund a batch
+    */
+   public void setCoinSelector(CoinSelector coinSelector) {
+      _coinSelector = Preconditions.checkNotNull(coinSelector);
+   }
+
+   /**
+    * Queue a payment
+    *
+    * @param address the address to pay to
+    * @param value   the value to pay in satoshis
+    * @return the future result of the payment, available once its batch has
+    *         been broadcast
+    * @throws OutputTooSmallException if the value is below the minimum output
+    *                                 value
+    */
+   public Future<PaymentResult> addPayment(Address address, long value) throws OutputTooSmallException {
+      if (value < TransactionUtils.MINIMUM_OUTPUT_VALUE) {
+         throw new OutputTooSmallException(value);
+      }
+      QueuedPayment payment = new QueuedPayment(Preconditions.checkNotNull(address), value);
+      synchronized (_queue) {
+         _queue.add(payment);
+         if (_queue.size() >= _maxPayments) {
+            cancelTimer();
+            _scheduler.execute(_flushTask);
+         } else if (_queue.size() == 1) {
+            _timer = _scheduler.schedule(_flushTask, _maxDelayMillis, TimeUnit.MILLISECONDS);
+         }
+      }
+      return payment.result;
+   }
+
+   /**
+    * Get the number of payments waiting to be sent
+    */
+   public int getQueueSize() {
+      synchronized (_queue) {
+         return _queue.size();
+      }
+   }
+
+   /**
+    * Send the queued payments now on the calling thread. Batches are sent one
+    * at a time, so this waits for a batch that is being sent.
+    */
+   public void flush() {
+      synchronized (_flushLock) {
+         List<QueuedPayment> batch = takeBatch();
+         if (batch.isEmpty()) {
+            return;
+         }
+         Transaction transaction;
+         try {
+            transaction = createTransaction(batch);
+            _broadcaster.broadcast(transaction);
+         } catch (Exception e) {
+            for (QueuedPayment payment : batch) {
+               payment.result.setException(e);
+            }
+            return;
+         }
+         for (int i = 0; i < transaction.inputs.length; i++) {
+            _spent.add(transaction.inputs[i].outPoint);
+         }
+         // The outputs of the payments come first and in queue order
+         for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).result.set(new PaymentResult(transaction, i));
+         }
+      }
+   }
+
+   private List<QueuedPayment> takeBatch() {
+      synchronized (_queue) {
+         cancelTimer();
+         int count = Math.min(_queue.size(), _maxPayments);
+         List<QueuedPayment> batch = new ArrayList<QueuedPayment>(_queue.subList(0, count));
+         _queue.subList(0, count).clear();
+         if (!_queue.isEmpty()) {
+            // More payments than fit in one batch were queued
+            _scheduler.execute(_flushTask);
+         }
+         return batch;
+      }
+   }
+
+   private void cancelTimer() {
+      if (_timer != null) {
+         _timer.cancel(false);
+         _timer = null;
+      }
+   }
+
+   private Transaction createTransaction(List<QueuedPayment> batch) throws InsufficientFundsException,
+         OutputTooSmallException {
+      StandardTransactionBuilder builder = new StandardTransactionBuilder(_network);
+      builder.setCoinSelector(_coinSelector);
+      for (QueuedPayment payment : batch) {
+         builder.addOutput(payment.address, payment.value);
+      }
+      UnsignedTransaction unsigned = builder.createUnsignedTransaction(getUnspentOutputs(), _changeAddress, _keyRing,
+            _network);
+      List<byte[]> signatures = StandardTransactionBuilder.generateSignatures(unsigned.getSignatureInfo(), _keyRing,
+            _randomSource);
+      return StandardTransactionBuilder.finalizeTransaction(unsigned, signatures);
+   }
+
+   /**
+    * Get the unspent outputs from the source, leaving out those already spent
+    * by an earlier batch
+    */
+   private List<UnspentTransactionOutput> getUnspentOutputs() {
+      List<UnspentTransactionOutput> reported = _unspentOutputSource.getUnspentOutputs();
+      List<UnspentTransactionOutput> unspent = new ArrayList<UnspentTransactionOutput>(reported.size());
+      Set<OutPoint> stillReported = new HashSet<OutPoint>();
+      for (UnspentTransactionOutput output : reported) {
+         if (_spent.contains(output.outPoint)) {
+            stillReported.add(output.outPoint);
+         } else {
+            unspent.add(output);
+         }
+      }
+      // Forget spent outputs the source no longer reports
+      _spent.retainAll(stillReported);
+      return unspent;
+   }
+
+}
@@ -17,9 +17,16 @@
 package com.mrd.bitlib;
 
 import java.io.Serializable;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
@@ -28,6 +35,7 @@ import com.google.common.collect.Multimap;
 import com.google.common.collect.Multimaps;
 
 import com.mrd.bitlib.crypto.BitcoinSigner;
+import com.mrd.bitlib.crypto.HmacPRNG;
 import com.mrd.bitlib.crypto.PrivateKeyRing;
 import com.mrd.bitlib.crypto.PublicKey;
 import com.mrd.bitlib.crypto.PublicKeyRing;
@@ -35,7 +43,6 @@ import com.mrd.bitlib.crypto.RandomSource;
 import com.mrd.bitlib.model.*;
 import com.mrd.bitlib.util.ByteWriter;
 import com.mrd.bitlib.util.CoinUtil;
-import com.mrd.bitlib.util.HashUtils;
 import com.mrd.bitlib.util.Sha256Hash;
 
 public class StandardTransactionBuilder {
@@ -108,6 +115,7 @@ public class StandardTransactionBuilder {
 
          // Create transaction with valid outputs and empty inputs
          Transaction transaction = new Transaction(1, inputs, _outputs, 0);
+         SigHashCalculator sigHashCalculator = new SigHashCalculator(transaction);
 
          for (int i = 0; i < _funding.length; i++) {
             UnspentTransactionOutput f = _funding[i];
@@ -128,14 +136,10 @@ public class StandardTransactionBuilder {
                throw new RuntimeException("Public key not found");
             }
 
-            // Set the input script to the funding output script
-            inputs[i].script = ScriptInput.fromOutputScript(_funding[i].script);
-
-            // Calculate the transaction hash that has to be signed
-            Sha256Hash hash = hashTransaction(transaction);
-
-            // Set the input to the empty script again
-            inputs[i] = new TransactionInput(_funding[i].outPoint, ScriptInput.EMPTY);
+            // Calculate the transaction hash that has to be signed, which is the
+            // hash of the transaction with the funding output script as input
+            // script
+            Sha256Hash hash = sigHashCalculator.getSigHash(i, f.script);
 
             _signingRequests[i] = new SigningRequest(publicKey, hash);
 
@@ -200,10 +204,20 @@ public class StandardTransactionBuilder {
 
    private NetworkParameters _network;
    private List<TransactionOutput> _outputs;
+   private CoinSelector _coinSelector;
 
    public StandardTransactionBuilder(NetworkParameters network) {
       _network = network;
       _outputs = new LinkedList<TransactionOutput>();
+      _coinSelector = new OldestFirstCoinSelector();
+   }
+
+   /**
+    * Set the strategy for choosing the unspent outputs that fund the
+    * transaction. The default is {@link OldestFirstCoinSelector}.
+    */
+   public void setCoinSelector(CoinSelector coinSelector) {
+      _coinSelector = Preconditions.checkNotNull(coinSelector);
    }
 
    public void addOutput(Address sendTo, long value) throws OutputTooSmallException {
@@ -226,18 +240,111 @@ public class StandardTransactionBuilder {
 
    public static List<byte[]> generateSignatures(SigningRequest[] requests, PrivateKeyRing keyRing,
                                                  RandomSource randomSource) {
-      List<byte[]> signatures = new LinkedList<byte[]>();
-      for (SigningRequest request : requests) {
+      byte[][] signatures = new byte[requests.length][];
+      signRange(requests, 0, requests.length, keyRing, randomSource, signatures);
+      return new LinkedList<byte[]>(Arrays.asList(signatures));
+   }
+
+   /**
+    * Generate the signatures for a number of signing requests, splitting the
+    * requests into chunks that are signed in parallel.
+    * <p>
+    * Each chunk draws its nonces from its own generator, seeded with 32 bytes
+    * from the supplied random source, so the workers do not contend on one
+    * random source. The signatures are returned in the order of the requests.
+    *
+    * @param requests
+    *           the signing requests
+    * @param keyRing
+    *           the private key ring holding the keys for the requests
+    * @param randomSource
+    *           the random source to seed the nonce generators from
+    * @param executor
+    *           the executor to sign chunks on
+    * @param parallelism
+    *           the number of chunks to split the requests into, typically the
+    *           number of available processors
+    */
+   public static List<byte[]> generateSignatures(final SigningRequest[] requests, final PrivateKeyRing keyRing,
+                                                 RandomSource randomSource, ExecutorService executor, int parallelism) {
+      if (parallelism < 1) {
+         throw new IllegalArgumentException("Parallelism must be at least one");
+      }
+      int chunks = Math.min(parallelism, requests.length);
+      if (executor == null || chunks <= 1) {
+         return generateSignatures(requests, keyRing, randomSource);
+      }
+      final byte[][] signatures = new byte[requests.length][];
+      List<Future<Void>> futures = new ArrayList<Future<Void>>(chunks);
+      int chunkSize = (requests.length + chunks - 1) / chunks;
+      for (int start = 0; start < requests.length; start += chunkSize) {
+         final int from = start;
+         final int to = Math.min(start + chunkSize, requests.length);
+         // Seed in the calling thread, so the random source is only used by
+         // one thread
+         final RandomSource chunkRandomSource = seededRandomSource(randomSource);
+         futures.add(executor.submit(new Callable<Void>() {
+
+            @Override
+            public Void call() {
+               signRange(requests, from, to, keyRing, chunkRandomSource, signatures);
+               return null;
+            }
+         }));
+      }
+      try {
+         for (Future<Void> future : futures) {
+            future.get();
+         }
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new RuntimeException(e);
+      } catch (ExecutionException e) {
+         if (e.getCause() instanceof RuntimeException) {
+            throw (RuntimeException) e.getCause();
+         }
+         throw new RuntimeException(e.getCause());
+      }
+      return new LinkedList<byte[]>(Arrays.asList(signatures));
+   }
+
+   /**
+    * Sign requests [from, to) into signatures
+    */
+   private static void signRange(SigningRequest[] requests, int from, int to, PrivateKeyRing keyRing,
+                                 RandomSource randomSource, byte[][] signatures) {
+      for (int i = from; i < to; i++) {
+         SigningRequest request = requests[i];
          BitcoinSigner signer = keyRing.findSignerByPublicKey(request.publicKey);
          if (signer == null) {
             // This should not happen as we only work on outputs that we have
             // keys for
             throw new RuntimeException("Private key not found");
          }
-         byte[] signature = signer.makeStandardBitcoinSignature(request.toSign, randomSource);
-         signatures.add(signature);
+         signatures[i] = signer.makeStandardBitcoinSignature(request.toSign, randomSource);
       }
-      return signatures;
+   }
+
+   /**
+    * Create a random source for a single thread, seeded from another random
+    * source
+    */
+   private static RandomSource seededRandomSource(RandomSource randomSource) {
+      byte[] seed = new byte[32];
+      randomSource.nextBytes(seed);
+      final HmacPRNG prng;
+      try {
+         prng = new HmacPRNG(seed);
+      } catch (NoSuchAlgorithmException e) {
+         throw new RuntimeException(e);
+      }
+      return new RandomSource() {
+
+         @Override
+         public void nextBytes(byte[] bytes) {
+            prng.nextBytes(bytes);
+         }
+      };
    }
 
    /**
@@ -255,24 +362,36 @@ public class StandardTransactionBuilder {
     */
    public UnsignedTransaction createUnsignedTransaction(List<UnspentTransactionOutput> unspent, Address changeAddress,
                                                         PublicKeyRing keyRing, NetworkParameters network) throws InsufficientFundsException {
+      // Index the outputs once for all fee levels
+      UnspentOutputPool pool = new UnspentOutputPool(unspent);
+      long outputSum = outputSum();
+      int outputsSize = outputsSize();
+      // Change goes to the richest funding address if none is given, which
+      // has a standard script
+      Address changeTo = changeAddress == null ? Address.fromStandardBytes(new byte[20], network) : changeAddress;
+      int changeOutputSize = TransactionUtils.calculateOutputSize(createOutput(changeTo, 0).script.getScriptBytes().length);
       long fee = TransactionUtils.DEFAULT_MINER_FEE;
       while (true) {
-         UnsignedTransaction unsigned;
-         try {
-            unsigned = createUnsignedTransaction(unspent, changeAddress, fee, keyRing, network);
-         } catch (InsufficientFundsException e) {
-            // We did not even have enough funds to pay the minimum fee
-            throw e;
+         List<UnspentTransactionOutput> funding = _coinSelector.select(pool, outputSum + fee);
+         if (funding == null) {
+            // We do not have enough funds to pay the fee
+            throw new InsufficientFundsException(outputSum, fee);
          }
-         int txSize = estimateTransacrionSize(unsigned);
-         // fee is based on the size of the transaction, we have to pay for
-         // every 1000 bytes
-         long requiredFee = (1 + (txSize / 1000)) * TransactionUtils.DEFAULT_MINER_FEE;
+         long change = sum(funding) - outputSum - fee;
+         int txSize;
+         if (change >= TransactionUtils.MINIMUM_OUTPUT_VALUE) {
+            txSize = TransactionUtils.estimateStandardTransactionSize(funding.size(), _outputs.size() + 1,
+                  outputsSize + changeOutputSize);
+         } else {
+            txSize = TransactionUtils.estimateStandardTransactionSize(funding.size(), _outputs.size(), outputsSize);
+         }
+         long requiredFee = TransactionUtils.calculateFeeRequired(txSize);
          if (fee >= requiredFee) {
-            return unsigned;
+            return buildUnsignedTransaction(funding, changeAddress, fee, keyRing, network);
          }
-         // collect coins anew with an increased fee
-         fee += TransactionUtils.DEFAULT_MINER_FEE;
+         // Select coins for the fee the current selection requires. The fee
+         // only grows, so this converges after a few selections.
+         fee = requiredFee;
       }
    }
 
@@ -294,21 +413,38 @@ public class StandardTransactionBuilder {
    public UnsignedTransaction createUnsignedTransaction(List<UnspentTransactionOutput> inventory,
                                                         Address changeAddress, long fee, PublicKeyRing keyRing, NetworkParameters network)
          throws InsufficientFundsException {
-      // Make a copy so we can mutate the list
-      List<UnspentTransactionOutput> unspent = new LinkedList<UnspentTransactionOutput>(inventory);
-      List<UnspentTransactionOutput> funding = new LinkedList<UnspentTransactionOutput>();
+      return createUnsignedTransaction(new UnspentOutputPool(inventory), changeAddress, fee, keyRing, network);
+   }
+
+   /**
+    * Create an unsigned transaction with a specific miner fee, funded by
+    * outputs from a pool chosen by the coin selector of this builder.
+    *
+    * @param pool          The unspent transaction outputs that can be used as funding
+    * @param changeAddress The address to send any change to
+    * @param fee           The miner fee to pay. Specifying zero may result in hanging
+    *                      transactions.
+    * @param keyRing       The public key ring matching the unspent outputs
+    * @param network       The network we are working on
+    * @return An unsigned transaction
+    * @throws InsufficientFundsException
+    */
+   public UnsignedTransaction createUnsignedTransaction(UnspentOutputPool pool, Address changeAddress, long fee,
+                                                        PublicKeyRing keyRing, NetworkParameters network)
+         throws InsufficientFundsException {
       long outputSum = outputSum();
-      long toSend = fee + outputSum;
-      long found = 0;
-      while (found < toSend) {
-         UnspentTransactionOutput output = extractOldest(unspent);
-         if (output == null) {
-            // We do not have enough funds
-            throw new InsufficientFundsException(outputSum, fee);
-         }
-         found += output.value;
-         funding.add(output);
+      List<UnspentTransactionOutput> funding = _coinSelector.select(pool, fee + outputSum);
+      if (funding == null) {
+         // We do not have enough funds
+         throw new InsufficientFundsException(outputSum, fee);
       }
+      return buildUnsignedTransaction(funding, changeAddress, fee, keyRing, network);
+   }
+
+   private UnsignedTransaction buildUnsignedTransaction(List<UnspentTransactionOutput> funding, Address changeAddress,
+                                                        long fee, PublicKeyRing keyRing, NetworkParameters network) {
+      long toSend = fee + outputSum();
+      long found = sum(funding);
       if (changeAddress == null) {
          // If no change address s specified, get the richest address from the
          // funding set
@@ -387,26 +523,12 @@ public class StandardTransactionBuilder {
       return transaction;
    }
 
-   private UnspentTransactionOutput extractOldest(Collection<UnspentTransactionOutput> unspent) {
-      // find the "oldest" output
-      int minHeight = Integer.MAX_VALUE;
-      UnspentTransactionOutput oldest = null;
-      for (UnspentTransactionOutput output : unspent) {
-         if (!(output.script instanceof ScriptOutputStandard)) {
-            // only look for standard scripts
-            continue;
-         }
-         if (output.height < minHeight) {
-            minHeight = output.height;
-            oldest = output;
-         }
-      }
-      if (oldest == null) {
-         // There were no outputs
-         return null;
+   private int outputsSize() {
+      int size = 0;
+      for (TransactionOutput output : _outputs) {
+         size += TransactionUtils.calculateOutputSize(output.script.getScriptBytes().length);
       }
-      unspent.remove(oldest);
-      return oldest;
+      return size;
    }
 
    private long outputSum() {
@@ -417,42 +539,4 @@ public class StandardTransactionBuilder {
       return sum;
    }
 
-   private static Sha256Hash hashTransaction(Transaction t) {
-      ByteWriter writer = new ByteWriter(1024);
-      t.toByteWriter(writer);
-      // We also have to write a hash type.
-      int hashType = 1;
-      writer.putIntLE(hashType);
-      // Note that this is NOT reversed to ensure it will be signed
-      // correctly. If it were to be printed out
-      // however then we would expect that it is IS reversed.
-      return HashUtils.doubleSha256(writer.toBytes());
-   }
-
-   /**
-    * Estimate transaction size by clearing all input scripts and adding 140
-    * bytes for each input. (The type of scripts we generate are 138-140 bytes
-    * long). This allows us to give a good estimate of the final transaction
-    * size, and determine whether out fee size is large enough.
-    *
-    * @param unsigned The unsigned transaction to estimate the size of
-    * @return The estimated transaction size
-    */
-   private static int estimateTransacrionSize(UnsignedTransaction unsigned) {
-      // Create fake empty inputs
-      TransactionInput[] inputs = new TransactionInput[unsigned._funding.length];
-      for (int i = 0; i < inputs.length; i++) {
-         inputs[i] = new TransactionInput(unsigned._funding[i].outPoint, ScriptInput.EMPTY);
-      }
-
-      // Create fake transaction
-      Transaction t = new Transaction(1, inputs, unsigned._outputs, 0);
-      int txSize = t.toBytes().length;
-
-      // Add maximum size for each input
-      txSize += 140 * t.inputs.length;
-
-      return txSize;
-   }
-
 }
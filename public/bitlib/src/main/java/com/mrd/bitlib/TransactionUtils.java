@@ -16,6 +16,7 @@
 
 package com.mrd.bitlib;
 
+import com.mrd.bitlib.model.CompactInt;
 import com.mrd.bitlib.model.Transaction;
 import com.mrd.bitlib.model.TransactionOutput;
 import com.mrd.bitlib.model.UnspentTransactionOutput;
@@ -32,6 +33,13 @@ public class TransactionUtils {
     */
    public static final long MINIMUM_OUTPUT_VALUE = 5430;
 
+   /**
+    * The maximum size of a standard input script: a signature of at most 72
+    * bytes plus the hash type, and an uncompressed public key, each with a one
+    * byte push
+    */
+   public static final int MAX_STANDARD_INPUT_SCRIPT_SIZE = 1 + 72 + 1 + 1 + 65;
+
    /**
     * The priority threshold at which a transaction is considered to be high
     * priority
@@ -75,11 +83,73 @@ public class TransactionUtils {
       return feePaid < feeRequired;
    }
 
-   private static long calculateFeeRequired(int txSize) {
+   /**
+    * Calculate the minimum fee for a transaction. The fee is based on the size
+    * of the transaction, we have to pay for every started 1000 bytes.
+    * 
+    * @param txSize
+    *           the size of the serialized transaction in bytes
+    */
+   public static long calculateFeeRequired(int txSize) {
       long minFee = (1 + (txSize / 1000)) * DEFAULT_MINER_FEE;
       return minFee;
    }
 
+   /**
+    * Calculate the serialized size of a transaction input
+    * 
+    * @param scriptSize
+    *           the size of the input script
+    */
+   public static int calculateInputSize(int scriptSize) {
+      // out point, script and sequence number
+      return 32 + 4 + CompactInt.sizeOf(scriptSize) + scriptSize + 4;
+   }
+
+   /**
+    * Calculate the serialized size of a transaction output
+    * 
+    * @param scriptSize
+    *           the size of the output script
+    */
+   public static int calculateOutputSize(int scriptSize) {
+      // value and script
+      return 8 + CompactInt.sizeOf(scriptSize) + scriptSize;
+   }
+
+   /**
+    * Calculate the serialized size of a transaction
+    * 
+    * @param numInputs
+    *           the number of inputs
+    * @param inputsSize
+    *           the sum of the serialized sizes of the inputs
+    * @param numOutputs
+    *           the number of outputs
+    * @param outputsSize
+    *           the sum of the serialized sizes of the outputs
+    */
+   public static int calculateTransactionSize(int numInputs, int inputsSize, int numOutputs, int outputsSize) {
+      // version, inputs, outputs and lock time
+      return 4 + CompactInt.sizeOf(numInputs) + inputsSize + CompactInt.sizeOf(numOutputs) + outputsSize + 4;
+   }
+
+   /**
+    * Calculate the largest serialized size of a transaction with standard
+    * inputs once it has been signed
+    * 
+    * @param numInputs
+    *           the number of standard inputs
+    * @param numOutputs
+    *           the number of outputs
+    * @param outputsSize
+    *           the sum of the serialized sizes of the outputs
+    */
+   public static int estimateStandardTransactionSize(int numInputs, int numOutputs, int outputsSize) {
+      int inputsSize = numInputs * calculateInputSize(MAX_STANDARD_INPUT_SCRIPT_SIZE);
+      return calculateTransactionSize(numInputs, inputsSize, numOutputs, outputsSize);
+   }
+
    private static long calculateFeePaid(Transaction tx) {
       long fee = 0;
       for (TransactionOutput out : tx.outputs) {
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2013 Megion Research & Development GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mrd.bitlib;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+
+import com.mrd.bitlib.model.ScriptOutputStandard;
+import com.mrd.bitlib.model.UnspentTransactionOutput;
+
+/**
+ * An immutable set of unspent outputs indexed by height and by value, which
+ * coin selectors choose funding from.
+ * <p>
+ * Only outputs with standard scripts are kept, as these are the only ones we
+ * can spend. Both indexes are built once in O(n log n), so a pool can be
+ * reused for every selection attempt while building a transaction.
+ */
+public class UnspentOutputPool {
+
+   private static final Comparator<UnspentTransactionOutput> BY_HEIGHT = new Comparator<UnspentTransactionOutput>() {
+      @Override
+      public int compare(UnspentTransactionOutput lhs, UnspentTransactionOutput rhs) {
+         return lhs.height < rhs.height ? -1 : (lhs.height == rhs.height ? 0 : 1);
+      }
+   };
+
+   private static final Comparator<UnspentTransactionOutput> BY_VALUE_DESCENDING = new Comparator<UnspentTransactionOutput>() {
+      @Override
+      public int compare(UnspentTransactionOutput lhs, UnspentTransactionOutput rhs) {
+         return lhs.value > rhs.value ? -1 : (lhs.value == rhs.value ? 0 : 1);
+      }
+   };
+
+   private final UnspentTransactionOutput[] _byHeight;
+   private final UnspentTransactionOutput[] _byValue;
+   private final long _totalValue;
+
+   public UnspentOutputPool(Collection<UnspentTransactionOutput> unspent) {
+      UnspentTransactionOutput[] outputs = new UnspentTransactionOutput[unspent.size()];
+      int count = 0;
+      long total = 0;
+      for (UnspentTransactionOutput output : unspent) {
+         if (!(output.script instanceof ScriptOutputStandard)) {
+            // only use standard scripts
+            continue;
+         }
+         outputs[count++] = output;
+         total += output.value;
+      }
+      // The sorts are stable, so outputs that compare equal keep the order
+      // they were given in
+      _byHeight = Arrays.copyOf(outputs, count);
+      Arrays.sort(_byHeight, BY_HEIGHT);
+      _byValue = Arrays.copyOf(outputs, count);
+      Arrays.sort(_byValue, BY_VALUE_DESCENDING);
+      _totalValue = total;
+   }
+
+   /**
+    * Get the number of outputs in the pool
+    */
+   public int size() {
+      return _byHeight.length;
+   }
+
+   /**
+    * Get the sum of the values of all outputs in the pool
+    */
+   public long getTotalValue() {
+      return _totalValue;
+   }
+
+   /**
+    * Get the output at an index when ordered by ascending height. Unconfirmed
+    * outputs have height -1 and come first.
+    */
+   public UnspentTransactionOutput getByHeight(int index) {
+      return _byHeight[index];
+   }
+
+   /**
+    * Get the output at an index when ordered by descending value
+    */
+   public UnspentTransactionOutput getByValue(int index) {
+      return _byValue[index];
+   }
+
+}
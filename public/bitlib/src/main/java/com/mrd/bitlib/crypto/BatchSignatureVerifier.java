@@ -0,0 +1,224 @@
+/*
+ * Copyright 2013 Megion Research & Development GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mrd.bitlib.crypto;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import com.mrd.bitlib.crypto.ec.EcTools;
+import com.mrd.bitlib.crypto.ec.Parameters;
+import com.mrd.bitlib.crypto.ec.Point;
+import com.mrd.bitlib.util.ByteReader;
+import com.mrd.bitlib.util.Sha256Hash;
+
+/**
+ * Verifies many ECDSA signatures in one call.
+ * <p>
+ * Compared to verifying signatures one at a time with
+ * {@link PublicKey#verifyStandardBitcoinSignature} work is shared across the
+ * batch: the inverses of all s values are computed with a single modular
+ * inversion, and the resulting curve points are converted to affine
+ * coordinates with a single field inversion. The batch is split into chunks
+ * that are verified in parallel if an executor is supplied.
+ * <p>
+ * A typical use is to verify all inputs of a multi-input transaction in a
+ * single call.
+ */
+public class BatchSignatureVerifier {
+
+   /**
+    * A single signature verification job
+    */
+   public static class Job {
+      public final Sha256Hash hash;
+      public final Signature signature;
+      public final PublicKey publicKey;
+
+      /**
+       * Create a verification job
+       *
+       * @param hash
+       *           the hash that was signed
+       * @param signature
+       *           the signature, or null if it could not be decoded, in which
+       *           case verification fails
+       * @param publicKey
+       *           the public key to verify against
+       */
+      public Job(Sha256Hash hash, Signature signature, PublicKey publicKey) {
+         this.hash = hash;
+         this.signature = signature;
+         this.publicKey = publicKey;
+      }
+
+      /**
+       * Create a verification job from a standard bitcoin signature, which is
+       * a DER encoded signature followed by a hash type byte, as accepted by
+       * {@link PublicKey#verifyStandardBitcoinSignature}
+       */
+      public static Job fromStandardBitcoinSignature(Sha256Hash hash, byte[] signature, PublicKey publicKey) {
+         ByteReader reader = new ByteReader(signature);
+         Signature params = Signatures.decodeSignatureParameters(reader);
+         // Make sure that we have a hash type at the end
+         if (params != null && reader.available() != 1) {
+            params = null;
+         }
+         return new Job(hash, params, publicKey);
+      }
+   }
+
+   private final ExecutorService _executor;
+   private final int _parallelism;
+
+   /**
+    * Create a batch verifier that verifies in the calling thread
+    */
+   public BatchSignatureVerifier() {
+      this(null, 1);
+   }
+
+   /**
+    * Create a batch verifier that splits each batch into a number of chunks
+    * that are verified in parallel
+    *
+    * @param executor
+    *           the executor to verify chunks on
+    * @param parallelism
+    *           the number of chunks to split a batch into, typically the
+    *           number of available processors
+    */
+   public BatchSignatureVerifier(ExecutorService executor, int parallelism) {
+      if (parallelism < 1) {
+         throw new IllegalArgumentException("Parallelism must be at least one");
+      }
+      _executor = executor;
+      _parallelism = parallelism;
+   }
+
+   /**
+    * Verify a batch of signatures
+    *
+    * @param jobs
+    *           the verification jobs
+    * @return the verification result of each job, in the same order as the
+    *         jobs
+    */
+   public boolean[] verify(final List<Job> jobs) {
+      final boolean[] result = new boolean[jobs.size()];
+      int chunks = Math.min(_parallelism, jobs.size());
+      if (_executor == null || chunks <= 1) {
+         verifyRange(jobs, 0, jobs.size(), result);
+         return result;
+      }
+      List<Future<Void>> futures = new ArrayList<Future<Void>>(chunks);
+      int chunkSize = (jobs.size() + chunks - 1) / chunks;
+      for (int start = 0; start < jobs.size(); start += chunkSize) {
+         final int from = start;
+         final int to = Math.min(start + chunkSize, jobs.size());
+         futures.add(_executor.submit(new Callable<Void>() {
+
+            @Override
+            public Void call() {
+               verifyRange(jobs, from, to, result);
+               return null;
+            }
+         }));
+      }
+      try {
+         for (Future<Void> future : futures) {
+            future.get();
+         }
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new RuntimeException(e);
+      } catch (ExecutionException e) {
+         throw new RuntimeException(e.getCause());
+      }
+      return result;
+   }
+
+   /**
+    * Verify jobs [from, to) and store the results
+    */
+   private static void verifyRange(List<Job> jobs, int from, int to, boolean[] result) {
+      BigInteger n = Parameters.n;
+
+      // Gather the jobs that pass the basic checks
+      List<Integer> indexes = new ArrayList<Integer>(to - from);
+      List<Point> keys = new ArrayList<Point>(to - from);
+      for (int i = from; i < to; i++) {
+         Job job = jobs.get(i);
+         Signature signature = job.signature;
+         if (signature == null || !inRange(signature.r, n) || !inRange(signature.s, n)) {
+            continue;
+         }
+         Point Q;
+         try {
+            Q = job.publicKey.getQ();
+         } catch (RuntimeException e) {
+            // Invalid public key encoding
+            continue;
+         }
+         indexes.add(i);
+         keys.add(Q);
+      }
+      if (indexes.isEmpty()) {
+         return;
+      }
+
+      // Invert all s values at once
+      BigInteger[] sValues = new BigInteger[indexes.size()];
+      for (int i = 0; i < sValues.length; i++) {
+         sValues[i] = jobs.get(indexes.get(i)).signature.s;
+      }
+      BigInteger[] c = EcTools.modInverseAll(sValues, n);
+
+      // Calculate u1 * G + u2 * Q for all jobs and normalize them at once
+      Point[][] points = new Point[sValues.length][];
+      BigInteger[][] scalars = new BigInteger[sValues.length][];
+      for (int i = 0; i < sValues.length; i++) {
+         Job job = jobs.get(indexes.get(i));
+         BigInteger e = Signatures.calculateE(n, job.hash.getBytes());
+         BigInteger u1 = e.multiply(c[i]).mod(n);
+         BigInteger u2 = job.signature.r.multiply(c[i]).mod(n);
+         points[i] = new Point[] { Parameters.G, keys.get(i) };
+         scalars[i] = new BigInteger[] { u1, u2 };
+      }
+      Point[] sums = EcTools.multiScalarMultiplyAll(points, scalars);
+
+      for (int i = 0; i < sums.length; i++) {
+         if (sums[i].isInfinity()) {
+            continue;
+         }
+         BigInteger v = sums[i].getX().toBigInteger().mod(n);
+         result[indexes.get(i)] = v.equals(jobs.get(indexes.get(i)).signature.r);
+      }
+   }
+
+   /**
+    * Check that a value is in the range [1, n - 1]
+    */
+   private static boolean inRange(BigInteger value, BigInteger n) {
+      return value.compareTo(BigInteger.ONE) >= 0 && value.compareTo(n) < 0;
+   }
+
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2013 Megion Research & Development GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mrd.bitlib.crypto;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+import com.mrd.bitlib.crypto.ec.Parameters;
+
+/**
+ * Generates ECDSA nonces deterministically from the private key and the
+ * message hash as specified in RFC 6979 section 3.2, using HMAC-SHA256 as
+ * HMAC_DRBG.
+ * <p>
+ * The same key and message always give the same sequence of nonces, so no
+ * random source is needed for signing. An instance is created per signature
+ * and holds no state shared with other instances, so signing threads do not
+ * contend.
+ */
+public final class DeterministicNonceGenerator {
+
+   private static final int LENGTH = 32;
+
+   private final BigInteger _n;
+   private byte[] _k;
+   private byte[] _v;
+   private KeyedHmac _hmac;
+
+   /**
+    * Create a nonce generator for the secp256k1 curve
+    *
+    * @param privateKey
+    *           the private key
+    * @param messageHash
+    *           the 32 byte hash of the message to sign
+    */
+   public DeterministicNonceGenerator(BigInteger privateKey, byte[] messageHash) {
+      _n = Parameters.n;
+      byte[] x = int2octets(privateKey);
+      byte[] h = int2octets(bits2int(messageHash).mod(_n));
+
+      // Steps b to g
+      _v = new byte[LENGTH];
+      Arrays.fill(_v, (byte) 0x01);
+      _k = new byte[LENGTH];
+      for (int i = 0; i <= 1; i++) {
+         _hmac = KeyedHmac.hmacSha256(_k);
+         _hmac.update(_v);
+         _hmac.update((byte) i);
+         _hmac.update(x);
+         _hmac.update(h);
+         _k = _hmac.doFinal();
+         _hmac = KeyedHmac.hmacSha256(_k);
+         _v = _hmac.mac(_v);
+      }
+   }
+
+   /**
+    * Get the next nonce candidate, which is in the range [1, n - 1]. The first
+    * call returns the nonce of RFC 6979; later calls continue the sequence for
+    * when a nonce yields an invalid signature.
+    */
+   public BigInteger nextNonce() {
+      while (true) {
+         // Step h. One HMAC output is as long as the order.
+         _v = _hmac.mac(_v);
+         BigInteger k = bits2int(_v);
+         prepareNext();
+         if (k.signum() > 0 && k.compareTo(_n) < 0) {
+            return k;
+         }
+      }
+   }
+
+   /**
+    * Update K and V for the next candidate
+    */
+   private void prepareNext() {
+      _hmac.update(_v);
+      _hmac.update((byte) 0x00);
+      _k = _hmac.doFinal();
+      _hmac = KeyedHmac.hmacSha256(_k);
+      _v = _hmac.mac(_v);
+   }
+
+   private BigInteger bits2int(byte[] bytes) {
+      BigInteger value = new BigInteger(1, bytes);
+      int excess = bytes.length * 8 - _n.bitLength();
+      if (excess > 0) {
+         value = value.shiftRight(excess);
+      }
+      return value;
+   }
+
+   private static byte[] int2octets(BigInteger value) {
+      byte[] bytes = value.toByteArray();
+      if (bytes.length == LENGTH) {
+         return bytes;
+      }
+      byte[] result = new byte[LENGTH];
+      if (bytes.length > LENGTH) {
+         // Leading zero of a positive number with the high bit set
+         System.arraycopy(bytes, bytes.length - LENGTH, result, 0, LENGTH);
+      } else {
+         System.arraycopy(bytes, 0, result, LENGTH - bytes.length, bytes.length);
+      }
+      return result;
+   }
+
+}
@@ -18,16 +18,26 @@ package com.mrd.bitlib.crypto;
 
 import java.io.UnsupportedEncodingException;
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import com.google.bitcoinj.Base58;
 import com.google.common.base.Preconditions;
+import com.mrd.bitlib.crypto.ec.EcTools;
 import com.mrd.bitlib.crypto.ec.Parameters;
 import com.mrd.bitlib.crypto.ec.Point;
+import com.mrd.bitlib.model.Address;
 import com.mrd.bitlib.model.NetworkParameters;
 import com.mrd.bitlib.util.BitUtils;
 import com.mrd.bitlib.util.ByteReader;
 import com.mrd.bitlib.util.ByteReader.InsufficientBytesException;
 import com.mrd.bitlib.util.ByteWriter;
+import com.mrd.bitlib.util.HashUtils;
 
 /**
  * Implementation of BIP 32 HD wallet key derivation.
@@ -45,6 +55,8 @@ public class HdKeyNode {
    }
 
    private static final String BITCOIN_SEED = "Bitcoin seed";
+   private static final long HARDENED_BIT = 0x80000000L;
+   private static final int COMPRESSED_KEY_LENGTH = 33;
 
    private final InMemoryPrivateKey _privateKey;
    private final PublicKey _publicKey;
@@ -52,6 +64,7 @@ public class HdKeyNode {
    private final int _depth;
    private final int _parentFingerprint;
    private final int _index;
+   private volatile KeyedHmac _chainCodeHmac;
 
    HdKeyNode(InMemoryPrivateKey privateKey, byte[] chainCode, int depth, int parentFingerprint, int index) {
       _privateKey = privateKey;
@@ -166,34 +179,9 @@ public class HdKeyNode {
     *            can be created for this index (extremely unlikely)
     */
    public HdKeyNode createChildNode(int index) throws KeyGenerationException {
-      byte[] data;
-      byte[] publicKeyBytes = _publicKey.getPublicKeyBytes();
-      if (0 == (index & 0x80000000)) {
-         // Not hardened key
-         ByteWriter writer = new ByteWriter(publicKeyBytes.length + 4);
-         writer.putBytes(publicKeyBytes);
-         writer.putIntBE(index);
-         data = writer.toBytes();
-      } else {
-         // Hardened key
-         if (!isPrivateHdKeyNode()) {
-            throw new KeyGenerationException("Cannot generate hardened HD key node from pubic HD key node");
-         }
-         ByteWriter writer = new ByteWriter(33 + 4);
-         writer.put((byte) 0);
-         writer.putBytes(_privateKey.getPrivateKeyBytes());
-         writer.putIntBE(index);
-         data = writer.toBytes();
-      }
-      byte[] l = Hmac.hmacSha512(_chainCode, data);
-      byte[] lL = BitUtils.copyOfRange(l, 0, 32);
+      byte[] l = deriveHmac(getChainCodeHmac(), index);
       byte[] lR = BitUtils.copyOfRange(l, 32, 64);
-
-      BigInteger m = new BigInteger(1, lL);
-      if (m.compareTo(Parameters.n) >= 0) {
-         throw new KeyGenerationException(
-               "An unlikely thing happened: A key derivation paramter is larger than the N modulus of the curve");
-      }
+      BigInteger m = derivationParameter(l);
 
       if (isPrivateHdKeyNode()) {
 
@@ -208,7 +196,7 @@ public class HdKeyNode {
          InMemoryPrivateKey key = new InMemoryPrivateKey(privateKeyBytes, true);
          return new HdKeyNode(key, lR, _depth + 1, getFingerprint(), index);
       } else {
-         Point q = Parameters.G.multiply(m).add(Parameters.curve.decodePoint(_publicKey.getPublicKeyBytes()));
+         Point q = EcTools.multiplyGenerator(m).add(_publicKey.getQ());
          if (q.isInfinity()) {
             throw new KeyGenerationException("An unlikely thing happened: Invalid key point at infinity");
          }
@@ -217,6 +205,278 @@ public class HdKeyNode {
       }
    }
 
+   /**
+    * Create the descendant node of this node along a sequence of child
+    * indexes
+    * 
+    * @param path
+    *           the child indexes, starting with the child of this node
+    * @return the descendant node, or this node if the path is empty
+    * @throws KeyGenerationException
+    *            if this is a public key node and the path contains a hardened
+    *            index, or if no key can be created for the path (extremely
+    *            unlikely)
+    */
+   public HdKeyNode createChildNode(int[] path) throws KeyGenerationException {
+      HdKeyNode node = this;
+      for (int index : path) {
+         node = node.createChildNode(index);
+      }
+      return node;
+   }
+
+   /**
+    * Create the descendant node of this node for a BIP 32 path such as
+    * m/44'/0'/0'/1/7, where m is this node. See {@link #parsePath}.
+    * 
+    * @param path
+    *           the path to derive
+    * @return the descendant node
+    * @throws KeyGenerationException
+    *            if the path is invalid, if this is a public key node and the
+    *            path contains a hardened index, or if no key can be created
+    *            for the path (extremely unlikely)
+    */
+   public HdKeyNode createChildNode(String path) throws KeyGenerationException {
+      return createChildNode(parsePath(path));
+   }
+
+   /**
+    * Parse a BIP 32 path such as m/44'/0'/0'/1/7 into child indexes. The path
+    * starts with m, and each following element is an index below 2^31
+    * optionally followed by ', h or H to mark it as hardened.
+    * 
+    * @param path
+    *           the path to parse
+    * @return the child indexes, with the hardened bit set for hardened
+    *         elements
+    * @throws KeyGenerationException
+    *            if the path is invalid
+    */
+   public static int[] parsePath(String path) throws KeyGenerationException {
+      String[] elements = path.trim().split("/", -1);
+      if (!elements[0].equals("m")) {
+         throw new KeyGenerationException("HD key path must start with m");
+      }
+      int[] result = new int[elements.length - 1];
+      for (int i = 0; i < result.length; i++) {
+         String element = elements[i + 1];
+         boolean hardened = element.endsWith("'") || element.endsWith("h") || element.endsWith("H");
+         if (hardened) {
+            element = element.substring(0, element.length() - 1);
+         }
+         if (element.length() == 0 || element.length() > 10) {
+            throw new KeyGenerationException("Invalid HD key path element: " + elements[i + 1]);
+         }
+         long index = 0;
+         for (int j = 0; j < element.length(); j++) {
+            char c = element.charAt(j);
+            if (c < '0' || c > '9') {
+               throw new KeyGenerationException("Invalid HD key path element: " + elements[i + 1]);
+            }
+            index = index * 10 + (c - '0');
+         }
+         if (index >= HARDENED_BIT) {
+            throw new KeyGenerationException("HD key path index too large: " + elements[i + 1]);
+         }
+         result[i] = hardened ? (int) index | (int) HARDENED_BIT : (int) index;
+      }
+      return result;
+   }
+
+   /**
+    * Format child indexes as a BIP 32 path such as m/44'/0'/0'/1/7
+    */
+   public static String pathToString(int[] path) {
+      StringBuilder sb = new StringBuilder("m");
+      for (int index : path) {
+         sb.append('/').append(index & 0x7FFFFFFF);
+         if (0 != (index & 0x80000000)) {
+            sb.append('\'');
+         }
+      }
+      return sb.toString();
+   }
+
+   /**
+    * Derive the public keys of the children with indexes from, from + 1, ...,
+    * from + count - 1 in the calling thread.
+    * <p>
+    * This gives the same keys as calling {@link #createChildPublicKey} for
+    * each index, but the parent public key is decoded once, the generator
+    * multiplications share a precomputed table and all child keys are
+    * converted to affine coordinates with a single field inversion. This makes
+    * it suitable for scanning many addresses of an account.
+    * 
+    * @param from
+    *           the first index to derive
+    * @param count
+    *           the number of children to derive
+    * @return the child public keys in index order
+    * @throws KeyGenerationException
+    *            if the range contains hardened indexes and this is a public
+    *            key node, or if no key can be created for one of the indexes
+    *            (extremely unlikely)
+    */
+   public List<PublicKey> deriveRange(int from, int count) throws KeyGenerationException {
+      return deriveRange(from, count, null, 1);
+   }
+
+   /**
+    * Derive the public keys of the children with indexes from, from + 1, ...,
+    * from + count - 1. The range is split into a number of chunks that are
+    * derived in parallel. See {@link #deriveRange(int, int)}.
+    * 
+    * @param from
+    *           the first index to derive
+    * @param count
+    *           the number of children to derive
+    * @param executor
+    *           the executor to derive chunks on, or null to derive in the
+    *           calling thread
+    * @param parallelism
+    *           the number of chunks to split the range into, typically the
+    *           number of available processors
+    * @return the child public keys in index order
+    * @throws KeyGenerationException
+    *            if the range contains hardened indexes and this is a public
+    *            key node, or if no key can be created for one of the indexes
+    *            (extremely unlikely)
+    */
+   public List<PublicKey> deriveRange(final int from, int count, ExecutorService executor, int parallelism)
+         throws KeyGenerationException {
+      Preconditions.checkArgument(count >= 0, "count must not be negative");
+      Preconditions.checkArgument(parallelism >= 1, "parallelism must be at least one");
+      final PublicKey[] result = new PublicKey[count];
+      int chunks = Math.min(parallelism, count);
+      if (executor == null || chunks <= 1) {
+         deriveRange(from, 0, count, result);
+         return Arrays.asList(result);
+      }
+      List<Future<Void>> futures = new ArrayList<Future<Void>>(chunks);
+      int chunkSize = (count + chunks - 1) / chunks;
+      for (int start = 0; start < count; start += chunkSize) {
+         final int offset = start;
+         final int end = Math.min(start + chunkSize, count);
+         futures.add(executor.submit(new Callable<Void>() {
+
+            @Override
+            public Void call() throws KeyGenerationException {
+               deriveRange(from, offset, end, result);
+               return null;
+            }
+         }));
+      }
+      try {
+         for (Future<Void> future : futures) {
+            future.get();
+         }
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new RuntimeException(e);
+      } catch (ExecutionException e) {
+         if (e.getCause() instanceof KeyGenerationException) {
+            throw (KeyGenerationException) e.getCause();
+         }
+         throw new RuntimeException(e.getCause());
+      }
+      return Arrays.asList(result);
+   }
+
+   /**
+    * Derive the standard addresses of the children with indexes from, from +
+    * 1, ..., from + count - 1. See {@link #deriveRange(int, int)}.
+    */
+   public List<Address> deriveAddressRange(int from, int count, NetworkParameters network)
+         throws KeyGenerationException {
+      List<PublicKey> keys = deriveRange(from, count);
+      List<Address> addresses = new ArrayList<Address>(keys.size());
+      for (PublicKey key : keys) {
+         addresses.add(key.toAddress(network));
+      }
+      return addresses;
+   }
+
+   /**
+    * Derive the public keys of the children from + offset to from + end - 1
+    * into result[offset] to result[end - 1]
+    */
+   private void deriveRange(int from, int offset, int end, PublicKey[] result) throws KeyGenerationException {
+      KeyedHmac hmac = getChainCodeHmac();
+      BigInteger[] m = new BigInteger[end - offset];
+      for (int i = 0; i < m.length; i++) {
+         m[i] = derivationParameter(deriveHmac(hmac, from + offset + i));
+      }
+      // The child key is m * G + the parent key, also for private nodes
+      Point[] q = EcTools.multiplyGeneratorAndAddAll(m, _publicKey.getQ());
+      // Encode the keys next to each other and calculate their address hashes
+      // in one go, so that address scanning does not hash them one by one
+      byte[] keys = new byte[q.length * COMPRESSED_KEY_LENGTH];
+      for (int i = 0; i < q.length; i++) {
+         if (q[i].isInfinity()) {
+            throw new KeyGenerationException("An unlikely thing happened: Invalid key point at infinity");
+         }
+         byte[] encoded = new Point(Parameters.curve, q[i].getX(), q[i].getY(), true).getEncoded();
+         System.arraycopy(encoded, 0, keys, i * COMPRESSED_KEY_LENGTH, COMPRESSED_KEY_LENGTH);
+      }
+      byte[] hashes = new byte[q.length * HashUtils.ADDRESS_HASH_LENGTH];
+      HashUtils.addressHashes(keys, 0, COMPRESSED_KEY_LENGTH, q.length, hashes, 0);
+      for (int i = 0; i < q.length; i++) {
+         byte[] key = Arrays.copyOfRange(keys, i * COMPRESSED_KEY_LENGTH, (i + 1) * COMPRESSED_KEY_LENGTH);
+         byte[] hash = Arrays.copyOfRange(hashes, i * HashUtils.ADDRESS_HASH_LENGTH, (i + 1)
+               * HashUtils.ADDRESS_HASH_LENGTH);
+         result[offset + i] = new PublicKey(key, hash);
+      }
+   }
+
+   /**
+    * Calculate the HMAC-SHA512 of the parent key and index for a child, using
+    * an HMAC keyed with the chain code of this node
+    */
+   private byte[] deriveHmac(KeyedHmac hmac, int index) throws KeyGenerationException {
+      if (0 == (index & 0x80000000)) {
+         // Not hardened key
+         hmac.update(_publicKey.getPublicKeyBytes());
+      } else {
+         // Hardened key
+         if (!isPrivateHdKeyNode()) {
+            throw new KeyGenerationException("Cannot generate hardened HD key node from pubic HD key node");
+         }
+         hmac.update((byte) 0);
+         hmac.update(_privateKey.getPrivateKeyBytes());
+      }
+      hmac.update((byte) (index >>> 24));
+      hmac.update((byte) (index >>> 16));
+      hmac.update((byte) (index >>> 8));
+      hmac.update((byte) index);
+      return hmac.doFinal();
+   }
+
+   /**
+    * Get an HMAC-SHA512 keyed with the chain code of this node. The keyed
+    * HMAC is created once per node and copied for each use.
+    */
+   private KeyedHmac getChainCodeHmac() {
+      KeyedHmac hmac = _chainCodeHmac;
+      if (hmac == null) {
+         hmac = KeyedHmac.hmacSha512(_chainCode);
+         _chainCodeHmac = hmac;
+      }
+      return hmac.clone();
+   }
+
+   /**
+    * Get the key derivation parameter from the left half of a child HMAC
+    */
+   private static BigInteger derivationParameter(byte[] l) throws KeyGenerationException {
+      BigInteger m = new BigInteger(1, BitUtils.copyOfRange(l, 0, 32));
+      if (m.compareTo(Parameters.n) >= 0) {
+         throw new KeyGenerationException(
+               "An unlikely thing happened: A key derivation paramter is larger than the N modulus of the curve");
+      }
+      return m;
+   }
+
    private byte[] bigIntegerTo32Bytes(BigInteger b) {
       // Returns an array of bytes which is at most 33 bytes long, and possibly
       // with a leading zero
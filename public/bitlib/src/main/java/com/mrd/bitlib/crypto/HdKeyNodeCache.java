@@ -0,0 +1,145 @@
+/*
+ * Copyright 2013 Megion Research & Development GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mrd.bitlib.crypto;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.mrd.bitlib.crypto.HdKeyNode.KeyGenerationException;
+
+/**
+ * A bounded cache of derived HD key nodes.
+ * <p>
+ * Nodes are keyed by their root node and the path from the root. When a path
+ * is derived the deepest cached node along the path is used as starting point
+ * and all nodes derived on the way are added to the cache, so that sibling
+ * derivations such as m/44'/0'/0'/0/1 and m/44'/0'/0'/0/2 reuse the account
+ * and chain nodes. The least recently used nodes are evicted when the cache is
+ * full.
+ * <p>
+ * This class is thread safe. Derivation happens outside of the lock, so two
+ * threads may occasionally derive the same node.
+ */
+public class HdKeyNodeCache {
+
+   private static class Key {
+      private final HdKeyNode _root;
+      private final int[] _path;
+      private final int _hash;
+
+      private Key(HdKeyNode root, int[] path, int length) {
+         _root = root;
+         _path = Arrays.copyOf(path, length);
+         _hash = root.hashCode() * 31 + Arrays.hashCode(_path);
+      }
+
+      @Override
+      public int hashCode() {
+         return _hash;
+      }
+
+      @Override
+      public boolean equals(Object obj) {
+         if (!(obj instanceof Key)) {
+            return false;
+         }
+         Key other = (Key) obj;
+         return _hash == other._hash && Arrays.equals(_path, other._path) && _root.equals(other._root);
+      }
+   }
+
+   private final Map<Key, HdKeyNode> _cache;
+
+   /**
+    * Create a cache
+    *
+    * @param maxSize
+    *           the maximum number of nodes to keep
+    */
+   public HdKeyNodeCache(final int maxSize) {
+      if (maxSize < 1) {
+         throw new IllegalArgumentException("Cache size must be at least one");
+      }
+      _cache = new LinkedHashMap<Key, HdKeyNode>(16, 0.75f, true) {
+         private static final long serialVersionUID = 1L;
+
+         @Override
+         protected boolean removeEldestEntry(Map.Entry<Key, HdKeyNode> eldest) {
+            return size() > maxSize;
+         }
+      };
+   }
+
+   /**
+    * Get the descendant node of a root node for a BIP 32 path such as
+    * m/44'/0'/0'/1/7. See {@link HdKeyNode#createChildNode(String)}.
+    */
+   public HdKeyNode getNode(HdKeyNode root, String path) throws KeyGenerationException {
+      return getNode(root, HdKeyNode.parsePath(path));
+   }
+
+   /**
+    * Get the descendant node of a root node along a sequence of child indexes.
+    * See {@link HdKeyNode#createChildNode(int[])}.
+    */
+   public HdKeyNode getNode(HdKeyNode root, int[] path) throws KeyGenerationException {
+      // Find the deepest cached node along the path
+      HdKeyNode node = root;
+      int depth = 0;
+      synchronized (_cache) {
+         for (int i = path.length; i > 0; i--) {
+            HdKeyNode cached = _cache.get(new Key(root, path, i));
+            if (cached != null) {
+               node = cached;
+               depth = i;
+               break;
+            }
+         }
+      }
+
+      // Derive and cache the rest
+      while (depth < path.length) {
+         node = node.createChildNode(path[depth]);
+         depth++;
+         Key key = new Key(root, path, depth);
+         synchronized (_cache) {
+            _cache.put(key, node);
+         }
+      }
+      return node;
+   }
+
+   /**
+    * Get the number of cached nodes
+    */
+   public int size() {
+      synchronized (_cache) {
+         return _cache.size();
+      }
+   }
+
+   /**
+    * Remove all cached nodes
+    */
+   public void clear() {
+      synchronized (_cache) {
+         _cache.clear();
+      }
+   }
+
+}
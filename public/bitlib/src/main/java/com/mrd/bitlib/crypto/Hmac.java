@@ -24,10 +24,10 @@ import com.mrd.bitlib.util.HexUtils;
 
 public class Hmac {
 
-   private static final String SHA256 = "SHA-256";
-   private static final String SHA512 = "SHA-512";
-   private static final int SHA256_BLOCK_SIZE = 64;
-   private static final int SHA512_BLOCK_SIZE = 128;
+   static final String SHA256 = "SHA-256";
+   static final String SHA512 = "SHA-512";
+   static final int SHA256_BLOCK_SIZE = 64;
+   static final int SHA512_BLOCK_SIZE = 128;
 
    public static byte[] hmacSha256(byte[] key, byte[] message) {
       MessageDigest digest;
@@ -52,31 +52,36 @@ public class Hmac {
    }
 
    private static byte[] hmac(MessageDigest digest, int blockSize, byte[] key, byte[] message) {
+      key = padKey(digest, blockSize, key);
+      byte[] o_key_pad = keyPad(key, 0x5c);
+      byte[] i_key_pad = keyPad(key, 0x36);
+      return hash(digest, o_key_pad, hash(digest, i_key_pad, message));
+   }
 
+   /**
+    * Hash keys that are longer than the block size and zero pad the result to
+    * the block size
+    */
+   static byte[] padKey(MessageDigest digest, int blockSize, byte[] key) {
       // Ensure sufficient key length
       if (key.length > blockSize) {
          key = hash(digest, key);
       }
-      if (key.length < blockSize) {
-         // Zero pad
-         byte[] temp = new byte[blockSize];
-         System.arraycopy(key, 0, temp, 0, key.length);
-         key = temp;
-      }
-
-      // Prepare o key pad
-      byte[] o_key_pad = new byte[blockSize];
-      for (int i = 0; i < blockSize; i++) {
-         o_key_pad[i] = (byte) (0x5c ^ key[i]);
-      }
+      // Zero pad
+      byte[] temp = new byte[blockSize];
+      System.arraycopy(key, 0, temp, 0, key.length);
+      return temp;
+   }
 
-      // Prepare i key pad
-      byte[] i_key_pad = new byte[blockSize];
-      for (int i = 0; i < blockSize; i++) {
-         i_key_pad[i] = (byte) (0x36 ^ key[i]);
+   /**
+    * Prepare the inner (0x36) or outer (0x5c) key pad from a padded key
+    */
+   static byte[] keyPad(byte[] paddedKey, int pad) {
+      byte[] result = new byte[paddedKey.length];
+      for (int i = 0; i < paddedKey.length; i++) {
+         result[i] = (byte) (pad ^ paddedKey[i]);
       }
-
-      return hash(digest, o_key_pad, hash(digest, i_key_pad, message));
+      return result;
    }
 
    private static byte[] hash(MessageDigest digest, byte[] data) {
@@ -41,6 +41,7 @@ public class InMemoryPrivateKey extends PrivateKey implements KeyExporter, Seria
 
    private final BigInteger _privateKey;
    private final PublicKey _publicKey;
+   private volatile boolean _deterministicSigning;
 
    /**
     * Construct a random private key using a secure random source. Using this
@@ -75,7 +76,7 @@ public class InMemoryPrivateKey extends PrivateKey implements KeyExporter, Seria
          d = new BigInteger(bytes);
       } while (d.equals(BigInteger.ZERO) || (d.compareTo(Parameters.n) >= 0));
 
-      Point Q = EcTools.multiply(Parameters.G, d);
+      Point Q = EcTools.multiplyGenerator(d);
       _privateKey = d;
       if (compressed) {
          // Convert Q to a compressed point on the curve
@@ -117,7 +118,7 @@ public class InMemoryPrivateKey extends PrivateKey implements KeyExporter, Seria
       byte[] keyBytes = new byte[33];
       System.arraycopy(bytes, 0, keyBytes, 1, 32);
       _privateKey = new BigInteger(keyBytes);
-      Point Q = EcTools.multiply(Parameters.G, _privateKey);
+      Point Q = EcTools.multiplyGenerator(_privateKey);
       if (compressed) {
          // Convert Q to a compressed point on the curve
          Q = new Point(Q.getCurve(), Q.getX(), Q.getY(), true);
@@ -177,7 +178,7 @@ public class InMemoryPrivateKey extends PrivateKey implements KeyExporter, Seria
       decoded[0] = 0;
 
       _privateKey = new BigInteger(decoded);
-      Point Q = EcTools.multiply(Parameters.G, _privateKey);
+      Point Q = EcTools.multiplyGenerator(_privateKey);
       if (compressed) {
          // Convert Q to a compressed point on the curve
          Q = new Point(Q.getCurve(), Q.getX(), Q.getY(), true);
@@ -190,12 +191,31 @@ public class InMemoryPrivateKey extends PrivateKey implements KeyExporter, Seria
       return _publicKey;
    }
 
+   /**
+    * Choose how signature nonces are generated. With deterministic signing
+    * the nonces are derived from the key and the message as specified in RFC
+    * 6979 and the random source passed for signing is not used. The default
+    * is to draw nonces from the random source.
+    */
+   public void setDeterministicSigning(boolean deterministic) {
+      _deterministicSigning = deterministic;
+   }
+
+   /**
+    * Are signature nonces derived deterministically as specified in RFC 6979?
+    */
+   public boolean isDeterministicSigning() {
+      return _deterministicSigning;
+   }
+
    @Override
    protected Signature generateSignature(Sha256Hash messageHash, RandomSource randomSource) {
       BigInteger n = Parameters.n;
       BigInteger e = calculateE(n, messageHash.getBytes()); //leaving strong typing here
       BigInteger r = null;
       BigInteger s = null;
+      DeterministicNonceGenerator nonces = _deterministicSigning ? new DeterministicNonceGenerator(_privateKey,
+            messageHash.getBytes()) : null;
       // 5.3.2
       do // generate s
       {
@@ -204,16 +224,20 @@ public class InMemoryPrivateKey extends PrivateKey implements KeyExporter, Seria
 
          do // generate r
          {
-            do {
-               // make a BigInteger from bytes to ensure that Andriod and
-               // 'classic' java make the same BigIntegers
-               byte[] bytes = new byte[nBitLength / 8];
-               randomSource.nextBytes(bytes);
-               bytes[0] = (byte) (bytes[0] & 0x7F); // ensure positive number
-               k = new BigInteger(bytes);
-            } while (k.equals(BigInteger.ZERO));
-
-            Point p = EcTools.multiply(Parameters.G, k);
+            if (nonces != null) {
+               k = nonces.nextNonce();
+            } else {
+               do {
+                  // make a BigInteger from bytes to ensure that Andriod and
+                  // 'classic' java make the same BigIntegers
+                  byte[] bytes = new byte[nBitLength / 8];
+                  randomSource.nextBytes(bytes);
+                  bytes[0] = (byte) (bytes[0] & 0x7F); // ensure positive number
+                  k = new BigInteger(bytes);
+               } while (k.equals(BigInteger.ZERO));
+            }
+
+            Point p = EcTools.multiplyGenerator(k);
 
             // 5.3.3
             BigInteger x = p.getX().toBigInteger();
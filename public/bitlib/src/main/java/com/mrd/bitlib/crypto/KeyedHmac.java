@@ -0,0 +1,179 @@
+/*
+ * Copyright 2013 Megion Research & Development GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mrd.bitlib.crypto;
+
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * An HMAC with a fixed key, for calculating many HMAC values with the same
+ * key.
+ * <p>
+ * The padded key is absorbed into an inner and an outer digest once, and these
+ * keyed midstates are restored for every message, so each HMAC value costs
+ * two block compressions less than {@link Hmac#hmacSha256} or
+ * {@link Hmac#hmacSha512}.
+ * <p>
+ * Instances are not thread safe. Use {@link #clone} to get an independent
+ * copy for another thread, which is cheaper than keying a new instance.
+ */
+public final class KeyedHmac implements Cloneable {
+
+   private final String _algorithm;
+   private final byte[] _innerPad;
+   private final byte[] _outerPad;
+   private final MessageDigest _innerKeyed;
+   private final MessageDigest _outerKeyed;
+   private final byte[] _innerHash;
+   private MessageDigest _inner;
+
+   /**
+    * Create an HMAC-SHA256 with a key
+    */
+   public static KeyedHmac hmacSha256(byte[] key) {
+      return new KeyedHmac(Hmac.SHA256, Hmac.SHA256_BLOCK_SIZE, key);
+   }
+
+   /**
+    * Create an HMAC-SHA512 with a key
+    */
+   public static KeyedHmac hmacSha512(byte[] key) {
+      return new KeyedHmac(Hmac.SHA512, Hmac.SHA512_BLOCK_SIZE, key);
+   }
+
+   private KeyedHmac(String algorithm, int blockSize, byte[] key) {
+      _algorithm = algorithm;
+      byte[] paddedKey = Hmac.padKey(newDigest(algorithm), blockSize, key);
+      _innerPad = Hmac.keyPad(paddedKey, 0x36);
+      _outerPad = Hmac.keyPad(paddedKey, 0x5c);
+      _innerKeyed = newDigest(algorithm);
+      _innerKeyed.update(_innerPad);
+      _outerKeyed = newDigest(algorithm);
+      _outerKeyed.update(_outerPad);
+      _innerHash = new byte[_innerKeyed.getDigestLength()];
+      _inner = restore(_innerKeyed, _innerPad);
+   }
+
+   private KeyedHmac(KeyedHmac other) {
+      _algorithm = other._algorithm;
+      _innerPad = other._innerPad;
+      _outerPad = other._outerPad;
+      _innerKeyed = restore(other._innerKeyed, _innerPad);
+      _outerKeyed = restore(other._outerKeyed, _outerPad);
+      _innerHash = new byte[other._innerHash.length];
+      _inner = restore(other._inner, null);
+   }
+
+   /**
+    * Get the length of the HMAC value in bytes
+    */
+   public int getMacLength() {
+      return _innerHash.length;
+   }
+
+   public void update(byte b) {
+      _inner.update(b);
+   }
+
+   public void update(byte[] data) {
+      _inner.update(data, 0, data.length);
+   }
+
+   public void update(byte[] data, int offset, int length) {
+      _inner.update(data, offset, length);
+   }
+
+   /**
+    * Finish the HMAC value of the data added since the last reset and reset
+    * this instance
+    */
+   public byte[] doFinal() {
+      byte[] result = new byte[getMacLength()];
+      doFinal(result, 0);
+      return result;
+   }
+
+   /**
+    * Finish the HMAC value of the data added since the last reset into a
+    * buffer and reset this instance
+    */
+   public void doFinal(byte[] output, int offset) {
+      try {
+         _inner.digest(_innerHash, 0, _innerHash.length);
+         MessageDigest outer = restore(_outerKeyed, _outerPad);
+         outer.update(_innerHash);
+         outer.digest(output, offset, _innerHash.length);
+      } catch (DigestException e) {
+         // Only happens if the output buffer is too small
+         throw new IllegalArgumentException(e);
+      }
+      reset();
+   }
+
+   /**
+    * Calculate the HMAC value of a message. Data added with update and not yet
+    * finished is discarded.
+    */
+   public byte[] mac(byte[] message) {
+      reset();
+      update(message);
+      return doFinal();
+   }
+
+   /**
+    * Discard all data added since the last reset
+    */
+   public void reset() {
+      _inner = restore(_innerKeyed, _innerPad);
+   }
+
+   /**
+    * Get an independent copy of this instance including any data added so far
+    */
+   @Override
+   public KeyedHmac clone() {
+      return new KeyedHmac(this);
+   }
+
+   /**
+    * Copy a digest. If the digest cannot be cloned a new digest is created
+    * and the pad is absorbed again.
+    */
+   private MessageDigest restore(MessageDigest digest, byte[] pad) {
+      try {
+         return (MessageDigest) digest.clone();
+      } catch (CloneNotSupportedException e) {
+         if (pad == null) {
+            throw new RuntimeException(e);
+         }
+         MessageDigest result = newDigest(_algorithm);
+         result.update(pad);
+         return result;
+      }
+   }
+
+   private static MessageDigest newDigest(String algorithm) {
+      try {
+         return MessageDigest.getInstance(algorithm);
+      } catch (NoSuchAlgorithmException e) {
+         // Only happens if the platform does not support the algorithm
+         throw new RuntimeException(e);
+      }
+   }
+
+}
@@ -19,7 +19,6 @@ package com.mrd.bitlib.crypto;
 import java.io.Serializable;
 
 import com.mrd.bitlib.util.ByteWriter;
-import com.mrd.bitlib.util.HashUtils;
 import com.mrd.bitlib.util.Sha256Hash;
 
 
@@ -61,8 +60,7 @@ public abstract class PrivateKey implements BitcoinSigner, Serializable {
    }
 
    public SignedMessage signMessage(String message, RandomSource randomSource) {
-      byte[] data = Signatures.formatMessageForSigning(message);
-      Sha256Hash hash = HashUtils.doubleSha256(data);
+      Sha256Hash hash = Signatures.messageHash(message);
       Signature sig = generateSignature(hash, randomSource);
       // Now we have to work backwards to figure out the recId needed to recover the signature.
       PublicKey targetPubKey = getPublicKey();
@@ -40,6 +40,14 @@ public class PublicKey implements Serializable {
       _pubKeyBytes = publicKeyBytes;
    }
 
+   /**
+    * Create a public key whose address hash has already been calculated
+    */
+   PublicKey(byte[] publicKeyBytes, byte[] publicKeyHash) {
+      _pubKeyBytes = publicKeyBytes;
+      _pubKeyHash = publicKeyHash;
+   }
+
    public Address toAddress(NetworkParameters networkParameters) {
       byte[] hashedPublicKey = getPublicKeyHash();
       return Address.fromStandardBytes(hashedPublicKey, networkParameters);
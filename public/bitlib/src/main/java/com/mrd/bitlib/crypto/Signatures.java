@@ -22,16 +22,19 @@ import java.io.UnsupportedEncodingException;
 import java.math.BigInteger;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.mrd.bitlib.crypto.digest.Sha256Digest;
 import com.mrd.bitlib.crypto.ec.EcTools;
 import com.mrd.bitlib.crypto.ec.Parameters;
 import com.mrd.bitlib.crypto.ec.Point;
 import com.mrd.bitlib.util.ByteReader;
 import com.mrd.bitlib.util.ByteWriter;
+import com.mrd.bitlib.util.Sha256Hash;
 
 public class Signatures {
 
    private static final byte[] HEADER;
    private static final byte[] SIGNING_HEADER;
+   private static final Sha256Digest.Midstate SIGNING_HEADER_MIDSTATE;
 
    static{
       try {
@@ -40,6 +43,9 @@ public class Signatures {
          throw new RuntimeException(e);
       }
       SIGNING_HEADER = standardSigningHeader();
+      Sha256Digest digest = new Sha256Digest();
+      digest.update(SIGNING_HEADER);
+      SIGNING_HEADER_MIDSTATE = digest.getMidstate();
    }
    
     public static Signature decodeSignatureParameters(ByteReader reader) {
@@ -139,7 +145,7 @@ public class Signatures {
       return v.equals(r);
    }
 
-   private static BigInteger calculateE(BigInteger n, byte[] message) {
+   static BigInteger calculateE(BigInteger n, byte[] message) {
       if (n.bitLength() > message.length * 8) {
          return new BigInteger(1, message);
       } else {
@@ -169,6 +175,29 @@ public class Signatures {
       return writer.toBytes();
    }
 
+   /**
+    * Calculate the double SHA-256 of a message formatted for signing, see
+    * {@link #formatMessageForSigning}. Hashing resumes from the state after
+    * the signing header and the second round uses the 32 byte kernel.
+    */
+   static Sha256Hash messageHash(String message) {
+      byte[] messageBytes;
+      try {
+         messageBytes = message.getBytes("UTF-8");
+      } catch (UnsupportedEncodingException e) {
+         throw new RuntimeException(e);
+      }
+      ByteWriter length = new ByteWriter(9);
+      length.putCompactInt(message.length());
+      Sha256Digest digest = new Sha256Digest(SIGNING_HEADER_MIDSTATE);
+      digest.update(length.toBytes());
+      digest.update(messageBytes);
+      byte[] hash = new byte[Sha256Digest.DIGEST_LENGTH];
+      digest.doFinal(hash, 0);
+      digest.hash32(hash, 0, hash, 0);
+      return new Sha256Hash(hash);
+   }
+
    private static byte[] standardSigningHeader() {
       ByteArrayOutputStream bos1 = new ByteArrayOutputStream();
       bos1.write(HEADER.length);
@@ -27,7 +27,6 @@ import com.mrd.bitlib.crypto.ec.Parameters;
 import com.mrd.bitlib.crypto.ec.Point;
 import com.mrd.bitlib.model.Address;
 import com.mrd.bitlib.util.BitUtils;
-import com.mrd.bitlib.util.HashUtils;
 import com.mrd.bitlib.util.Sha256Hash;
 
 public class SignedMessage implements Serializable {
@@ -89,11 +88,10 @@ public class SignedMessage implements Serializable {
       if (header < 27 || header > 34)
          throw new WrongSignatureException("Header byte out of range: " + header);
 
-      byte[] messageBytes = Signatures.formatMessageForSigning(message);
       // Note that the C++ code doesn't actually seem to specify any character
       // encoding. Presumably it's whatever
       // JSON-SPIRIT hands back. Assume UTF-8 for now.
-      Sha256Hash messageHash = HashUtils.doubleSha256(messageBytes);
+      Sha256Hash messageHash = Signatures.messageHash(message);
       boolean compressed = false;
       if (header >= 31) {
          compressed = true;
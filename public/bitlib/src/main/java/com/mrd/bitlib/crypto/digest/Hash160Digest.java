@@ -0,0 +1,81 @@
+/*
+ * Copyright 2013 Megion Research & Development GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mrd.bitlib.crypto.digest;
+
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Calculates RIPEMD-160(SHA-256(data)), the hash of a public key used in
+ * Bitcoin addresses.
+ * <p>
+ * Both digests and the intermediate SHA-256 value are kept by the instance, so
+ * hashing does not allocate. The SHA-256 value always has 32 bytes, so the
+ * RIPEMD-160 round uses its single block kernel.
+ * <p>
+ * Instances are not thread safe.
+ */
+public final class Hash160Digest {
+
+   public static final int DIGEST_LENGTH = 20;
+   private static final int SHA256_LENGTH = 32;
+
+   private final MessageDigest _sha256;
+   private final RIPEMD160Digest _ripemd160;
+   private final byte[] _sha256Hash;
+
+   public Hash160Digest() {
+      try {
+         _sha256 = MessageDigest.getInstance("SHA-256");
+      } catch (NoSuchAlgorithmException e) {
+         throw new RuntimeException(e); // cannot happen
+      }
+      _ripemd160 = new RIPEMD160Digest();
+      _sha256Hash = new byte[SHA256_LENGTH];
+   }
+
+   /**
+    * Calculate the hash of length bytes of data at offset into out at
+    * outOffset
+    */
+   public void hash(byte[] data, int offset, int length, byte[] out, int outOffset) {
+      _sha256.reset();
+      _sha256.update(data, offset, length);
+      try {
+         _sha256.digest(_sha256Hash, 0, SHA256_LENGTH);
+      } catch (DigestException e) {
+         throw new RuntimeException(e); // cannot happen
+      }
+      _ripemd160.hash32(_sha256Hash, 0, out, outOffset);
+   }
+
+   /**
+    * Calculate the hashes of count items of itemLength bytes each laid out
+    * contiguously in data from offset. The hash of item i is written to out at
+    * outOffset + i * {@link #DIGEST_LENGTH}.
+    */
+   public void hashAll(byte[] data, int offset, int itemLength, int count, byte[] out, int outOffset) {
+      if (offset + itemLength * count > data.length || outOffset + DIGEST_LENGTH * count > out.length) {
+         throw new IllegalArgumentException("Buffer too small");
+      }
+      for (int i = 0; i < count; i++) {
+         hash(data, offset + i * itemLength, itemLength, out, outOffset + i * DIGEST_LENGTH);
+      }
+   }
+
+}
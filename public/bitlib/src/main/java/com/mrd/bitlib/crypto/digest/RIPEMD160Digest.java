@@ -103,6 +103,31 @@ public class RIPEMD160Digest extends GeneralDigest {
       return DIGEST_LENGTH;
    }
 
+   /**
+    * Calculate the RIPEMD-160 of the 32 bytes at inOff into out at outOff. The
+    * message and its padding fit in a single block, so no buffering takes
+    * place. Any data added with update is discarded.
+    */
+   public void hash32(byte[] in, int inOff, byte[] out, int outOff) {
+      reset();
+      for (int i = 0; i < 8; i++) {
+         int off = inOff + i * 4;
+         X[i] = (in[off] & 0xff) | ((in[off + 1] & 0xff) << 8) | ((in[off + 2] & 0xff) << 16)
+               | ((in[off + 3] & 0xff) << 24);
+      }
+      X[8] = 0x80;
+      X[14] = 32 * 8;
+      processBlock();
+
+      unpackWord(H0, out, outOff);
+      unpackWord(H1, out, outOff + 4);
+      unpackWord(H2, out, outOff + 8);
+      unpackWord(H3, out, outOff + 12);
+      unpackWord(H4, out, outOff + 16);
+
+      reset();
+   }
+
    /**
     * reset the chaining variables to the IV values.
     */
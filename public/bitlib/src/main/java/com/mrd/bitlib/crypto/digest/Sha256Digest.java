@@ -0,0 +1,356 @@
+/*
+ * Copyright 2013 Megion Research & Development GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mrd.bitlib.crypto.digest;
+
+/**
+ * Pure Java implementation of SHA-256 (FIPS 180-4).
+ * <p>
+ * Besides the usual streaming interface this class has kernels for messages of
+ * exactly 32 and 64 bytes, which is what the second round of a double SHA-256
+ * and merkle tree nodes hash. Their padding is fixed, and for 64 byte messages
+ * the message schedule of the padding block is precomputed.
+ * <p>
+ * The state after hashing a common prefix can be exported as a
+ * {@link Midstate} and imported again, so that the prefix is only hashed once.
+ * <p>
+ * Instances are not thread safe.
+ */
+public final class Sha256Digest {
+
+   public static final int DIGEST_LENGTH = 32;
+   private static final int BLOCK_LENGTH = 64;
+
+   private static final int[] K = { 0x428a2f98, 0x71374491, 0xb5c0fbcf, 0xe9b5dba5, 0x3956c25b, 0x59f111f1,
+         0x923f82a4, 0xab1c5ed5, 0xd807aa98, 0x12835b01, 0x243185be, 0x550c7dc3, 0x72be5d74, 0x80deb1fe, 0x9bdc06a7,
+         0xc19bf174, 0xe49b69c1, 0xefbe4786, 0x0fc19dc6, 0x240ca1cc, 0x2de92c6f, 0x4a7484aa, 0x5cb0a9dc, 0x76f988da,
+         0x983e5152, 0xa831c66d, 0xb00327c8, 0xbf597fc7, 0xc6e00bf3, 0xd5a79147, 0x06ca6351, 0x14292967, 0x27b70a85,
+         0x2e1b2138, 0x4d2c6dfc, 0x53380d13, 0x650a7354, 0x766a0abb, 0x81c2c92e, 0x92722c85, 0xa2bfe8a1, 0xa81a664b,
+         0xc24b8b70, 0xc76c51a3, 0xd192e819, 0xd6990624, 0xf40e3585, 0x106aa070, 0x19a4c116, 0x1e376c08, 0x2748774c,
+         0x34b0bcb5, 0x391c0cb3, 0x4ed8aa4a, 0x5b9cca4f, 0x682e6ff3, 0x748f82ee, 0x78a5636f, 0x84c87814, 0x8cc70208,
+         0x90befffa, 0xa4506ceb, 0xbef9a3f7, 0xc67178f2 };
+
+   private static final int[] IV = { 0x6a09e667, 0xbb67ae85, 0x3c6ef372, 0xa54ff53a, 0x510e527f, 0x9b05688c,
+         0x1f83d9ab, 0x5be0cd19 };
+
+   /**
+    * The message schedule of the padding block of a 64 byte message
+    */
+   private static final int[] PADDING_64_W = new int[64];
+
+   static {
+      PADDING_64_W[0] = 0x80000000;
+      PADDING_64_W[15] = 64 * 8;
+      expand(PADDING_64_W);
+   }
+
+   /**
+    * The exported state of a digest. Immutable.
+    */
+   public static final class Midstate {
+      private final int[] _h;
+      private final byte[] _buffer;
+      private final long _byteCount;
+
+      private Midstate(int[] h, byte[] buffer, long byteCount) {
+         _h = h;
+         _buffer = buffer;
+         _byteCount = byteCount;
+      }
+
+      /**
+       * Get the number of bytes hashed to reach this state
+       */
+      public long getByteCount() {
+         return _byteCount;
+      }
+   }
+
+   private final int[] _h = new int[8];
+   private final byte[] _buf = new byte[BLOCK_LENGTH];
+   private final int[] _w = new int[64];
+   private int _bufOff;
+   private long _byteCount;
+
+   public Sha256Digest() {
+      reset();
+   }
+
+   /**
+    * Create a digest that continues from an exported state
+    */
+   public Sha256Digest(Midstate midstate) {
+      setMidstate(midstate);
+   }
+
+   /**
+    * Copy constructor
+    */
+   public Sha256Digest(Sha256Digest t) {
+      System.arraycopy(t._h, 0, _h, 0, 8);
+      System.arraycopy(t._buf, 0, _buf, 0, t._bufOff);
+      _bufOff = t._bufOff;
+      _byteCount = t._byteCount;
+   }
+
+   public void reset() {
+      System.arraycopy(IV, 0, _h, 0, 8);
+      _bufOff = 0;
+      _byteCount = 0;
+   }
+
+   /**
+    * Export the current state
+    */
+   public Midstate getMidstate() {
+      byte[] buffer = new byte[_bufOff];
+      System.arraycopy(_buf, 0, buffer, 0, _bufOff);
+      return new Midstate(_h.clone(), buffer, _byteCount);
+   }
+
+   /**
+    * Continue from an exported state, discarding the current state
+    */
+   public void setMidstate(Midstate midstate) {
+      System.arraycopy(midstate._h, 0, _h, 0, 8);
+      System.arraycopy(midstate._buffer, 0, _buf, 0, midstate._buffer.length);
+      _bufOff = midstate._buffer.length;
+      _byteCount = midstate._byteCount;
+   }
+
+   public void update(byte in) {
+      _buf[_bufOff++] = in;
+      _byteCount++;
+      if (_bufOff == BLOCK_LENGTH) {
+         compress(_buf, 0);
+         _bufOff = 0;
+      }
+   }
+
+   public void update(byte[] in, int inOff, int len) {
+      _byteCount += len;
+      // Fill a partial block
+      if (_bufOff != 0) {
+         int n = Math.min(len, BLOCK_LENGTH - _bufOff);
+         System.arraycopy(in, inOff, _buf, _bufOff, n);
+         _bufOff += n;
+         inOff += n;
+         len -= n;
+         if (_bufOff < BLOCK_LENGTH) {
+            return;
+         }
+         compress(_buf, 0);
+         _bufOff = 0;
+      }
+      // Whole blocks straight from the input
+      while (len >= BLOCK_LENGTH) {
+         compress(in, inOff);
+         inOff += BLOCK_LENGTH;
+         len -= BLOCK_LENGTH;
+      }
+      System.arraycopy(in, inOff, _buf, 0, len);
+      _bufOff = len;
+   }
+
+   public void update(byte[] in) {
+      update(in, 0, in.length);
+   }
+
+   /**
+    * Finish the hash into out at outOff and reset this digest
+    *
+    * @return the number of bytes written
+    */
+   public int doFinal(byte[] out, int outOff) {
+      long bitLength = _byteCount << 3;
+      _buf[_bufOff++] = (byte) 0x80;
+      if (_bufOff > BLOCK_LENGTH - 8) {
+         while (_bufOff < BLOCK_LENGTH) {
+            _buf[_bufOff++] = 0;
+         }
+         compress(_buf, 0);
+         _bufOff = 0;
+      }
+      while (_bufOff < BLOCK_LENGTH - 8) {
+         _buf[_bufOff++] = 0;
+      }
+      putInt((int) (bitLength >>> 32), _buf, BLOCK_LENGTH - 8);
+      putInt((int) bitLength, _buf, BLOCK_LENGTH - 4);
+      compress(_buf, 0);
+      for (int i = 0; i < 8; i++) {
+         putInt(_h[i], out, outOff + i * 4);
+      }
+      reset();
+      return DIGEST_LENGTH;
+   }
+
+   /**
+    * Calculate the SHA-256 of the 32 bytes at inOff into out at outOff. The
+    * output may overlap the input. The state of this digest is reset.
+    */
+   public void hash32(byte[] in, int inOff, byte[] out, int outOff) {
+      int[] w = _w;
+      for (int i = 0; i < 8; i++) {
+         w[i] = getInt(in, inOff + i * 4);
+      }
+      w[8] = 0x80000000;
+      for (int i = 9; i < 15; i++) {
+         w[i] = 0;
+      }
+      w[15] = 32 * 8;
+      System.arraycopy(IV, 0, _h, 0, 8);
+      compressSchedule();
+      for (int i = 0; i < 8; i++) {
+         putInt(_h[i], out, outOff + i * 4);
+      }
+      reset();
+   }
+
+   /**
+    * Calculate the SHA-256 of the 64 bytes at inOff into out at outOff. The
+    * output may overlap the input. The state of this digest is reset.
+    */
+   public void hash64(byte[] in, int inOff, byte[] out, int outOff) {
+      System.arraycopy(IV, 0, _h, 0, 8);
+      compress(in, inOff);
+      rounds(_h, PADDING_64_W);
+      for (int i = 0; i < 8; i++) {
+         putInt(_h[i], out, outOff + i * 4);
+      }
+      reset();
+   }
+
+   /**
+    * Calculate the double SHA-256 of the 64 bytes at inOff into out at outOff,
+    * as for a merkle tree node. The output may overlap the input. The state of
+    * this digest is reset.
+    */
+   public void doubleHash64(byte[] in, int inOff, byte[] out, int outOff) {
+      hash64(in, inOff, out, outOff);
+      hash32(out, outOff, out, outOff);
+   }
+
+   private void compress(byte[] block, int off) {
+      int[] w = _w;
+      for (int i = 0; i < 16; i++) {
+         w[i] = getInt(block, off + i * 4);
+      }
+      compressSchedule();
+   }
+
+   /**
+    * Compress the block held as 16 words in _w
+    */
+   private void compressSchedule() {
+      expand(_w);
+      rounds(_h, _w);
+   }
+
+   private static void expand(int[] w) {
+      for (int i = 16; i < 64; i++) {
+         int x = w[i - 15];
+         int y = w[i - 2];
+         int s0 = Integer.rotateRight(x, 7) ^ Integer.rotateRight(x, 18) ^ (x >>> 3);
+         int s1 = Integer.rotateRight(y, 17) ^ Integer.rotateRight(y, 19) ^ (y >>> 10);
+         w[i] = w[i - 16] + s0 + w[i - 7] + s1;
+      }
+   }
+
+   /**
+    * The 64 rounds, unrolled by eight so that the working variables rotate
+    * roles instead of being moved
+    */
+   private static void rounds(int[] state, int[] w) {
+      int[] k = K;
+      int a = state[0];
+      int b = state[1];
+      int c = state[2];
+      int d = state[3];
+      int e = state[4];
+      int f = state[5];
+      int g = state[6];
+      int h = state[7];
+      for (int i = 0; i < 64; i += 8) {
+         h += sum1(e) + ch(e, f, g) + k[i] + w[i];
+         d += h;
+         h += sum0(a) + maj(a, b, c);
+
+         g += sum1(d) + ch(d, e, f) + k[i + 1] + w[i + 1];
+         c += g;
+         g += sum0(h) + maj(h, a, b);
+
+         f += sum1(c) + ch(c, d, e) + k[i + 2] + w[i + 2];
+         b += f;
+         f += sum0(g) + maj(g, h, a);
+
+         e += sum1(b) + ch(b, c, d) + k[i + 3] + w[i + 3];
+         a += e;
+         e += sum0(f) + maj(f, g, h);
+
+         d += sum1(a) + ch(a, b, c) + k[i + 4] + w[i + 4];
+         h += d;
+         d += sum0(e) + maj(e, f, g);
+
+         c += sum1(h) + ch(h, a, b) + k[i + 5] + w[i + 5];
+         g += c;
+         c += sum0(d) + maj(d, e, f);
+
+         b += sum1(g) + ch(g, h, a) + k[i + 6] + w[i + 6];
+         f += b;
+         b += sum0(c) + maj(c, d, e);
+
+         a += sum1(f) + ch(f, g, h) + k[i + 7] + w[i + 7];
+         e += a;
+         a += sum0(b) + maj(b, c, d);
+      }
+      state[0] += a;
+      state[1] += b;
+      state[2] += c;
+      state[3] += d;
+      state[4] += e;
+      state[5] += f;
+      state[6] += g;
+      state[7] += h;
+   }
+
+   private static int ch(int x, int y, int z) {
+      return (x & y) ^ (~x & z);
+   }
+
+   private static int maj(int x, int y, int z) {
+      return (x & y) ^ (x & z) ^ (y & z);
+   }
+
+   private static int sum0(int x) {
+      return Integer.rotateRight(x, 2) ^ Integer.rotateRight(x, 13) ^ Integer.rotateRight(x, 22);
+   }
+
+   private static int sum1(int x) {
+      return Integer.rotateRight(x, 6) ^ Integer.rotateRight(x, 11) ^ Integer.rotateRight(x, 25);
+   }
+
+   private static int getInt(byte[] b, int off) {
+      return (b[off] << 24) | ((b[off + 1] & 0xFF) << 16) | ((b[off + 2] & 0xFF) << 8) | (b[off + 3] & 0xFF);
+   }
+
+   private static void putInt(int value, byte[] b, int off) {
+      b[off] = (byte) (value >>> 24);
+      b[off + 1] = (byte) (value >>> 16);
+      b[off + 2] = (byte) (value >>> 8);
+      b[off + 3] = (byte) value;
+   }
+
+}
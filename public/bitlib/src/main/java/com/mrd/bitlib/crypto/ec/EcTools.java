@@ -21,6 +21,8 @@
 package com.mrd.bitlib.crypto.ec;
 
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Various tools for elliptic curves
@@ -57,53 +59,303 @@ public class EcTools {
    }
 
    /**
-    * Multiply a point with a big integer
+    * Window width used for variable base wNAF multiplication
+    */
+   private static final int WNAF_WIDTH = 5;
+
+   /**
+    * Multiply a point with a big integer. For secp256k1 points the scalar is
+    * split in two halves using the curve endomorphism and both halves are
+    * processed with interleaved wNAF in Jacobian coordinates. The result is
+    * converted to affine coordinates once.
     */
    public static Point multiply(Point p, BigInteger k) {
-      BigInteger e = k;
-      BigInteger h = e.multiply(BigInteger.valueOf(3));
+      return multiply(p, k, true);
+   }
 
-      Point neg = p.negate();
-      Point R = p;
+   /**
+    * Multiply a point with a big integer using wNAF, with or without GLV
+    * decomposition of the scalar
+    */
+   static Point multiply(Point p, BigInteger k, boolean useEndomorphism) {
+      if (!isSecp256k1(p.getCurve())) {
+         return multiplyAffine(p, k);
+      }
+      k = k.mod(Parameters.n);
+      if (k.signum() == 0 || p.isInfinity()) {
+         return p.getCurve().getInfinity();
+      }
+      if (p.equals(Parameters.G)) {
+         return multiplyGenerator(k);
+      }
+      JacobianPoint R = new JacobianPoint();
+      if (useEndomorphism) {
+         interleaveWnaf(new Point[] { p }, new BigInteger[] { k }, R);
+      } else {
+         Wnaf.Table table = Wnaf.oddMultiples(p, WNAF_WIDTH);
+         Wnaf.interleave(new Wnaf.Table[] { table }, new byte[][] { Wnaf.recode(k, WNAF_WIDTH) }, R);
+      }
+      return R.toAffine(p.getCurve());
+   }
 
-      for (int i = h.bitLength() - 2; i > 0; --i) {
-         R = R.twice();
+   /**
+    * Multiply the generator {@link Parameters#G} with a big integer using a
+    * precomputed table. This is much faster than {@link #multiply} with an
+    * arbitrary point and should be used for all private to public key
+    * conversions.
+    */
+   public static Point multiplyGenerator(BigInteger k) {
+      if (k.signum() == 0) {
+         return Parameters.curve.getInfinity();
+      }
+      return GeneratorTable.getInstance().multiply(k);
+   }
 
-         boolean hBit = h.testBit(i);
-         boolean eBit = e.testBit(i);
+   /**
+    * Multiply the generator {@link Parameters#G} with several big integers.
+    * This is equivalent to calling {@link #multiplyGenerator} for each of
+    * them, but all results are converted to affine coordinates with a single
+    * field inversion.
+    */
+   public static Point[] multiplyGeneratorAll(BigInteger[] k) {
+      GeneratorTable table = GeneratorTable.getInstance();
+      JacobianPoint[] points = new JacobianPoint[k.length];
+      for (int i = 0; i < k.length; i++) {
+         points[i] = new JacobianPoint();
+         table.multiply(k[i], points[i]);
+      }
+      return JacobianPoint.normalizeAll(points, Parameters.curve);
+   }
 
-         if (hBit != eBit) {
-            R = R.add(hBit ? p : neg);
+   /**
+    * Calculate k[i] * G + Q for several big integers and a fixed point Q, as
+    * needed when deriving many public child keys from the same parent key. Q
+    * is converted to field limbs once and added with a mixed addition, and all
+    * results are converted to affine coordinates with a single field
+    * inversion.
+    */
+   public static Point[] multiplyGeneratorAndAddAll(BigInteger[] k, Point Q) {
+      if (!isSecp256k1(Q.getCurve())) {
+         throw new IllegalArgumentException("Only points on secp256k1 are supported");
+      }
+      GeneratorTable table = GeneratorTable.getInstance();
+      int[] qx = null;
+      int[] qy = null;
+      if (!Q.isInfinity()) {
+         qx = Secp256k1Field.fromBigInteger(Q.getX().toBigInteger());
+         qy = Secp256k1Field.fromBigInteger(Q.getY().toBigInteger());
+      }
+      JacobianPoint[] points = new JacobianPoint[k.length];
+      for (int i = 0; i < k.length; i++) {
+         points[i] = new JacobianPoint();
+         table.multiply(k[i], points[i]);
+         if (qx != null) {
+            points[i].addAffine(qx, qy);
          }
       }
-
-      return R;
+      return JacobianPoint.normalizeAll(points, Parameters.curve);
    }
 
+   /**
+    * Calculate k * P + l * Q. See {@link #multiScalarMultiply}.
+    */
    public static Point sumOfTwoMultiplies(Point P, BigInteger k, Point Q, BigInteger l) {
-      int m = Math.max(k.bitLength(), l.bitLength());
-      Point Z = P.add(Q);
-      Point R = P.getCurve().getInfinity();
+      return multiScalarMultiply(new Point[] { P, Q }, new BigInteger[] { k, l });
+   }
 
-      for (int i = m - 1; i >= 0; --i) {
-         R = R.twice();
+   /**
+    * Calculate the sum of scalars[i] * points[i].
+    * <p>
+    * For secp256k1 the generator {@link Parameters#G} is multiplied using the
+    * precomputed generator table. All other points get a small per call table
+    * of odd multiples, their scalars are split using the curve endomorphism,
+    * and all of them are processed with windowed interleaving (Strauss-Shamir)
+    * so that they share a single chain of about 130 doublings. The result is
+    * converted to affine coordinates once.
+    */
+   public static Point multiScalarMultiply(Point[] points, BigInteger[] scalars) {
+      if (points.length != scalars.length) {
+         throw new IllegalArgumentException("The number of points and scalars must match");
+      }
+      if (points.length == 0) {
+         return Parameters.curve.getInfinity();
+      }
+      Curve curve = points[0].getCurve();
+      if (!isSecp256k1(curve)) {
+         Point R = curve.getInfinity();
+         for (int i = 0; i < points.length; i++) {
+            R = R.add(multiplyAffine(points[i], scalars[i]));
+         }
+         return R;
+      }
 
-         if (k.testBit(i)) {
-            if (l.testBit(i)) {
-               R = R.add(Z);
-            } else {
-               R = R.add(P);
-            }
+      JacobianPoint R = new JacobianPoint();
+      multiScalarMultiply(points, scalars, R);
+      return R.toAffine(curve);
+   }
+
+   /**
+    * Calculate several multi-scalar multiplications at once. Result i is the
+    * sum of scalars[i][j] * points[i][j] as with {@link #multiScalarMultiply}.
+    * All results are converted to affine coordinates with a single field
+    * inversion.
+    */
+   public static Point[] multiScalarMultiplyAll(Point[][] points, BigInteger[][] scalars) {
+      if (points.length != scalars.length) {
+         throw new IllegalArgumentException("The number of points and scalars must match");
+      }
+      Point[] result = new Point[points.length];
+      List<JacobianPoint> sums = new ArrayList<JacobianPoint>(points.length);
+      List<Integer> indexes = new ArrayList<Integer>(points.length);
+      for (int i = 0; i < points.length; i++) {
+         if (points[i].length != scalars[i].length) {
+            throw new IllegalArgumentException("The number of points and scalars must match");
+         }
+         if (points[i].length == 0 || !isSecp256k1(points[i][0].getCurve())) {
+            result[i] = multiScalarMultiply(points[i], scalars[i]);
+            continue;
+         }
+         JacobianPoint R = new JacobianPoint();
+         multiScalarMultiply(points[i], scalars[i], R);
+         sums.add(R);
+         indexes.add(i);
+      }
+      Point[] normalized = JacobianPoint.normalizeAll(sums.toArray(new JacobianPoint[sums.size()]),
+            Parameters.curve);
+      for (int i = 0; i < normalized.length; i++) {
+         result[indexes.get(i)] = normalized[i];
+      }
+      return result;
+   }
+
+   /**
+    * Calculate the sum of scalars[i] * points[i] on secp256k1 into R
+    */
+   private static void multiScalarMultiply(Point[] points, BigInteger[] scalars, JacobianPoint R) {
+      // Split into multiples of G and the rest
+      BigInteger g = BigInteger.ZERO;
+      List<Point> others = new ArrayList<Point>(points.length);
+      List<BigInteger> otherScalars = new ArrayList<BigInteger>(points.length);
+      for (int i = 0; i < points.length; i++) {
+         BigInteger k = scalars[i].mod(Parameters.n);
+         if (k.signum() == 0 || points[i].isInfinity()) {
+            continue;
+         }
+         if (points[i].equals(Parameters.G)) {
+            g = g.add(k);
          } else {
-            if (l.testBit(i)) {
-               R = R.add(Q);
+            others.add(points[i]);
+            otherScalars.add(k);
+         }
+      }
+
+      interleaveWnaf(others.toArray(new Point[others.size()]), otherScalars.toArray(new BigInteger[otherScalars
+            .size()]), R);
+      if (g.mod(Parameters.n).signum() != 0) {
+         JacobianPoint gR = new JacobianPoint();
+         GeneratorTable.getInstance().multiply(g, gR);
+         R.add(gR);
+      }
+   }
+
+   /**
+    * Calculate the sum of scalars[i] * points[i] into R using GLV decomposition
+    * and interleaved wNAF. All scalars must be reduced modulo n.
+    */
+   private static void interleaveWnaf(Point[] points, BigInteger[] scalars, JacobianPoint R) {
+      Wnaf.Table[] tables = new Wnaf.Table[points.length * 2];
+      byte[][] digits = new byte[points.length * 2][];
+      for (int i = 0; i < points.length; i++) {
+         Wnaf.Table table = Wnaf.oddMultiples(points[i], WNAF_WIDTH);
+         BigInteger[] parts = Secp256k1Endomorphism.decompose(scalars[i]);
+         tables[2 * i] = table;
+         tables[2 * i + 1] = table.endomorphism(Secp256k1Endomorphism.BETA_LIMBS);
+         for (int j = 0; j < 2; j++) {
+            if (parts[j].signum() < 0) {
+               tables[2 * i + j] = tables[2 * i + j].negate();
             }
+            digits[2 * i + j] = Wnaf.recode(parts[j].abs(), WNAF_WIDTH);
          }
       }
+      Wnaf.interleave(tables, digits, R);
+   }
+
+   private static boolean isSecp256k1(Curve curve) {
+      return curve == Parameters.curve || curve.equals(Parameters.curve);
+   }
 
+   /**
+    * Plain affine double-and-add for curves other than secp256k1
+    */
+   private static Point multiplyAffine(Point p, BigInteger k) {
+      Point R = p.getCurve().getInfinity();
+      for (int i = k.bitLength() - 1; i >= 0; --i) {
+         R = R.twice();
+         if (k.testBit(i)) {
+            R = R.add(p);
+         }
+      }
       return R;
    }
 
+   /**
+    * Calculate the inverses of several numbers modulo m using a single modular
+    * inversion (Montgomery's trick). All values must be invertible modulo m.
+    */
+   public static BigInteger[] modInverseAll(BigInteger[] values, BigInteger m) {
+      int n = values.length;
+      BigInteger[] result = new BigInteger[n];
+      if (n == 0) {
+         return result;
+      }
+      // products[i] = values[0] * ... * values[i]
+      BigInteger[] products = new BigInteger[n];
+      products[0] = values[0].mod(m);
+      for (int i = 1; i < n; i++) {
+         products[i] = products[i - 1].multiply(values[i]).mod(m);
+      }
+      BigInteger inv = products[n - 1].modInverse(m);
+      for (int i = n - 1; i > 0; i--) {
+         result[i] = inv.multiply(products[i - 1]).mod(m);
+         inv = inv.multiply(values[i]).mod(m);
+      }
+      result[0] = inv;
+      return result;
+   }
+
+   /**
+    * Invert several field elements using a single inversion (Montgomery's
+    * trick). None of the elements may be zero.
+    */
+   public static FieldElement[] invertAll(FieldElement[] elements) {
+      int n = elements.length;
+      FieldElement[] result = new FieldElement[n];
+      if (n == 0) {
+         return result;
+      }
+      BigInteger q = elements[0].getQ();
+      if (q.equals(Secp256k1Field.P)) {
+         int[][] limbs = new int[n][];
+         for (int i = 0; i < n; i++) {
+            limbs[i] = Secp256k1Field.fromBigInteger(elements[i].toBigInteger());
+         }
+         new Secp256k1Field().invertAll(limbs, limbs);
+         for (int i = 0; i < n; i++) {
+            result[i] = new FieldElement(q, Secp256k1Field.toBigInteger(limbs[i]));
+         }
+      } else {
+         BigInteger[] values = new BigInteger[n];
+         for (int i = 0; i < n; i++) {
+            values[i] = elements[i].toBigInteger();
+         }
+         BigInteger[] inverses = modInverseAll(values, q);
+         for (int i = 0; i < n; i++) {
+            result[i] = new FieldElement(q, inverses[i]);
+         }
+      }
+      return result;
+   }
+
    //ported from BitcoinJ
    public static Point decompressKey(BigInteger x, boolean firstBit) {
       int size = 1 + getByteLength(Parameters.curve.getFieldSize()); //hmmm..
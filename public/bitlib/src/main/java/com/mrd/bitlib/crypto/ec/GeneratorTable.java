@@ -0,0 +1,105 @@
+/*
+ * Copyright 2013 Megion Research & Development GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mrd.bitlib.crypto.ec;
+
+import java.math.BigInteger;
+
+/**
+ * Precomputed fixed window table for multiplying the secp256k1 generator.
+ * <p>
+ * The scalar is split into 64 windows of 4 bits. For window i the table holds
+ * the affine points j * 16^i * G for j = 1..15, so a multiplication is at most
+ * 64 mixed additions and no doublings. The table takes about 60 KB and is
+ * built on first use.
+ */
+final class GeneratorTable {
+
+   private static final int WINDOW_BITS = 4;
+   private static final int WINDOWS = 256 / WINDOW_BITS;
+   private static final int ENTRIES = (1 << WINDOW_BITS) - 1;
+
+   private static class Holder {
+      private static final GeneratorTable INSTANCE = new GeneratorTable(Parameters.G);
+   }
+
+   private final Curve _curve;
+   private final int[][] _x;
+   private final int[][] _y;
+
+   /**
+    * Get the table for {@link Parameters#G}, building it on first use
+    */
+   public static GeneratorTable getInstance() {
+      return Holder.INSTANCE;
+   }
+
+   private GeneratorTable(Point g) {
+      _curve = g.getCurve();
+      // Compute all entries in Jacobian coordinates and convert them to
+      // affine with a single inversion
+      JacobianPoint[] entries = new JacobianPoint[WINDOWS * ENTRIES];
+      int[][] baseAffine = new int[][] { Secp256k1Field.fromBigInteger(g.getX().toBigInteger()),
+            Secp256k1Field.fromBigInteger(g.getY().toBigInteger()) };
+      for (int i = 0; i < WINDOWS; i++) {
+         JacobianPoint p = new JacobianPoint();
+         p.setAffine(baseAffine[0], baseAffine[1]);
+         for (int j = 0; j < ENTRIES; j++) {
+            entries[i * ENTRIES + j] = p;
+            JacobianPoint next = new JacobianPoint();
+            next.set(p);
+            next.addAffine(baseAffine[0], baseAffine[1]);
+            p = next;
+         }
+         // p is now 16 * base
+         baseAffine = p.toAffineLimbs();
+      }
+      int[][][] affine = JacobianPoint.toAffineLimbs(entries);
+      _x = new int[WINDOWS * ENTRIES][];
+      _y = new int[WINDOWS * ENTRIES][];
+      for (int i = 0; i < affine.length; i++) {
+         _x[i] = affine[i][0];
+         _y[i] = affine[i][1];
+      }
+   }
+
+   /**
+    * Calculate k * G
+    */
+   public Point multiply(BigInteger k) {
+      JacobianPoint R = new JacobianPoint();
+      multiply(k, R);
+      return R.toAffine(_curve);
+   }
+
+   /**
+    * Calculate k * G into a Jacobian point
+    */
+   void multiply(BigInteger k, JacobianPoint R) {
+      R.setInfinity();
+      byte[] bytes = EcTools.integerToBytes(k.mod(Parameters.n), 32);
+      for (int i = 0; i < WINDOWS; i++) {
+         // Window i covers bits 4i..4i+3, bytes are big endian
+         int b = bytes[31 - i / 2] & 0xFF;
+         int digit = (i & 1) == 0 ? b & 0x0F : b >>> 4;
+         if (digit != 0) {
+            int index = i * ENTRIES + digit - 1;
+            R.addAffine(_x[index], _y[index]);
+         }
+      }
+   }
+
+}
@@ -0,0 +1,347 @@
+/*
+ * Copyright 2013 Megion Research & Development GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mrd.bitlib.crypto.ec;
+
+/**
+ * A mutable secp256k1 point in Jacobian projective coordinates. The affine
+ * point is (X / Z^2, Y / Z^3), and Z = 0 represents the point at infinity.
+ * <p>
+ * Coordinates are kept as {@link Secp256k1Field} limbs and all operations
+ * modify this instance in place using scratch space owned by the instance, so
+ * scalar multiplication loops do not allocate. None of the operations perform
+ * a modular inversion except {@link #toAffine(Curve)}.
+ * <p>
+ * An instance is not thread safe.
+ */
+final class JacobianPoint {
+
+   final int[] x = Secp256k1Field.create();
+   final int[] y = Secp256k1Field.create();
+   final int[] z = Secp256k1Field.create();
+
+   private final Secp256k1Field _field = new Secp256k1Field();
+   private final int[] _t0 = Secp256k1Field.create();
+   private final int[] _t1 = Secp256k1Field.create();
+   private final int[] _t2 = Secp256k1Field.create();
+   private final int[] _t3 = Secp256k1Field.create();
+   private final int[] _t4 = Secp256k1Field.create();
+   private final int[] _t5 = Secp256k1Field.create();
+   private final int[] _t6 = Secp256k1Field.create();
+   private final int[] _t7 = Secp256k1Field.create();
+
+   /**
+    * Create a new point at infinity
+    */
+   public JacobianPoint() {
+      setInfinity();
+   }
+
+   public boolean isInfinity() {
+      return Secp256k1Field.isZero(z);
+   }
+
+   public void setInfinity() {
+      Secp256k1Field.setOne(x);
+      Secp256k1Field.setOne(y);
+      Secp256k1Field.setZero(z);
+   }
+
+   public void set(JacobianPoint p) {
+      Secp256k1Field.copy(p.x, x);
+      Secp256k1Field.copy(p.y, y);
+      Secp256k1Field.copy(p.z, z);
+   }
+
+   /**
+    * Set this point to the affine point (ax, ay), lifted with Z = 1
+    */
+   public void setAffine(int[] ax, int[] ay) {
+      Secp256k1Field.copy(ax, x);
+      Secp256k1Field.copy(ay, y);
+      Secp256k1Field.setOne(z);
+   }
+
+   /**
+    * Set this point to an affine point
+    */
+   public void setAffine(Point p) {
+      if (p.isInfinity()) {
+         setInfinity();
+         return;
+      }
+      Secp256k1Field.fromBigInteger(p.getX().toBigInteger(), x);
+      Secp256k1Field.fromBigInteger(p.getY().toBigInteger(), y);
+      Secp256k1Field.setOne(z);
+   }
+
+   public void negate() {
+      Secp256k1Field.negate(y, y);
+   }
+
+   /**
+    * Convert to an affine point. This is the only operation that requires a
+    * modular inversion.
+    */
+   public Point toAffine(Curve curve) {
+      if (isInfinity()) {
+         return curve.getInfinity();
+      }
+      return toPoint(toAffineLimbs(), curve);
+   }
+
+   /**
+    * Convert to affine coordinates as a pair of newly allocated field limbs.
+    * The point must not be the point at infinity.
+    */
+   public int[][] toAffineLimbs() {
+      int[] zInv = _t0;
+      int[] zInv2 = _t1;
+      int[] ax = Secp256k1Field.create();
+      int[] ay = Secp256k1Field.create();
+      _field.invert(z, zInv);
+      _field.square(zInv, zInv2);
+      _field.multiply(x, zInv2, ax);
+      _field.multiply(zInv2, zInv, zInv2);
+      _field.multiply(y, zInv2, ay);
+      return new int[][] { ax, ay };
+   }
+
+   /**
+    * Convert several points to affine coordinates using a single field
+    * inversion (Montgomery's trick). None of the points may be the point at
+    * infinity.
+    *
+    * @return an array with the affine x and y limbs of each point
+    */
+   static int[][][] toAffineLimbs(JacobianPoint[] points) {
+      int n = points.length;
+      Secp256k1Field field = new Secp256k1Field();
+      int[][] zInv = new int[n][];
+      for (int i = 0; i < n; i++) {
+         zInv[i] = Secp256k1Field.create();
+      }
+      int[][] z = new int[n][];
+      for (int i = 0; i < n; i++) {
+         z[i] = points[i].z;
+      }
+      field.invertAll(z, zInv);
+      int[][][] result = new int[n][][];
+      int[] zInv2 = Secp256k1Field.create();
+      for (int i = 0; i < n; i++) {
+         JacobianPoint p = points[i];
+         int[] ax = Secp256k1Field.create();
+         int[] ay = Secp256k1Field.create();
+         field.square(zInv[i], zInv2);
+         field.multiply(p.x, zInv2, ax);
+         field.multiply(zInv2, zInv[i], zInv2);
+         field.multiply(p.y, zInv2, ay);
+         result[i] = new int[][] { ax, ay };
+      }
+      return result;
+   }
+
+   /**
+    * Convert several points to affine points using a single field inversion
+    * (Montgomery's trick). Points at infinity are allowed.
+    */
+   static Point[] normalizeAll(JacobianPoint[] points, Curve curve) {
+      Point[] result = new Point[points.length];
+      int finite = 0;
+      for (JacobianPoint p : points) {
+         if (!p.isInfinity()) {
+            finite++;
+         }
+      }
+      JacobianPoint[] toNormalize = new JacobianPoint[finite];
+      int[] indexes = new int[finite];
+      int j = 0;
+      for (int i = 0; i < points.length; i++) {
+         if (points[i].isInfinity()) {
+            result[i] = curve.getInfinity();
+         } else {
+            toNormalize[j] = points[i];
+            indexes[j] = i;
+            j++;
+         }
+      }
+      int[][][] affine = toAffineLimbs(toNormalize);
+      for (int i = 0; i < finite; i++) {
+         result[indexes[i]] = toPoint(affine[i], curve);
+      }
+      return result;
+   }
+
+   private static Point toPoint(int[][] affine, Curve curve) {
+      return new Point(curve, curve.fromBigInteger(Secp256k1Field.toBigInteger(affine[0])),
+            curve.fromBigInteger(Secp256k1Field.toBigInteger(affine[1])));
+   }
+
+   /**
+    * Double this point in place (dbl-2009-l, secp256k1 has a = 0)
+    */
+   public void twice() {
+      if (isInfinity()) {
+         return;
+      }
+      if (Secp256k1Field.isZero(y)) {
+         setInfinity();
+         return;
+      }
+      int[] a = _t0;
+      int[] b = _t1;
+      int[] c = _t2;
+      int[] d = _t3;
+      int[] e = _t4;
+      int[] ff = _t5;
+      // A = X^2, B = Y^2, C = B^2
+      _field.square(x, a);
+      _field.square(y, b);
+      _field.square(b, c);
+      // D = 2 * ((X + B)^2 - A - C)
+      Secp256k1Field.add(x, b, d);
+      _field.square(d, d);
+      Secp256k1Field.subtract(d, a, d);
+      Secp256k1Field.subtract(d, c, d);
+      Secp256k1Field.twice(d, d);
+      // E = 3 * A, F = E^2
+      Secp256k1Field.multiply(a, 3, e);
+      _field.square(e, ff);
+      // Z3 = 2 * Y * Z
+      _field.multiply(y, z, z);
+      Secp256k1Field.twice(z, z);
+      // X3 = F - 2 * D
+      Secp256k1Field.twice(d, x);
+      Secp256k1Field.subtract(ff, x, x);
+      // Y3 = E * (D - X3) - 8 * C
+      Secp256k1Field.subtract(d, x, d);
+      _field.multiply(e, d, y);
+      Secp256k1Field.multiply(c, 8, c);
+      Secp256k1Field.subtract(y, c, y);
+   }
+
+   /**
+    * Mixed addition of an affine point (bx, by) to this point in place
+    * (madd-2004-hmv)
+    */
+   public void addAffine(int[] bx, int[] by) {
+      if (isInfinity()) {
+         setAffine(bx, by);
+         return;
+      }
+      int[] z1z1 = _t0;
+      int[] h = _t1;
+      int[] r = _t2;
+      int[] hh = _t3;
+      int[] hhh = _t4;
+      int[] v = _t5;
+      // Z1Z1 = Z1^2, U2 = X2 * Z1Z1, S2 = Y2 * Z1 * Z1Z1
+      _field.square(z, z1z1);
+      _field.multiply(bx, z1z1, h);
+      _field.multiply(z1z1, z, z1z1);
+      _field.multiply(by, z1z1, r);
+      // H = U2 - X1, r = S2 - Y1
+      Secp256k1Field.subtract(h, x, h);
+      Secp256k1Field.subtract(r, y, r);
+      if (Secp256k1Field.isZero(h)) {
+         if (Secp256k1Field.isZero(r)) {
+            // this = b, i.e. this must be doubled
+            twice();
+         } else {
+            // this = -b, i.e. the result is the point at infinity
+            setInfinity();
+         }
+         return;
+      }
+      // HH = H^2, HHH = H * HH, V = X1 * HH
+      _field.square(h, hh);
+      _field.multiply(h, hh, hhh);
+      _field.multiply(x, hh, v);
+      // Z3 = Z1 * H
+      _field.multiply(z, h, z);
+      // X3 = r^2 - HHH - 2 * V
+      _field.square(r, x);
+      Secp256k1Field.subtract(x, hhh, x);
+      Secp256k1Field.subtract(x, v, x);
+      Secp256k1Field.subtract(x, v, x);
+      // Y3 = r * (V - X3) - Y1 * HHH
+      _field.multiply(y, hhh, hhh);
+      Secp256k1Field.subtract(v, x, v);
+      _field.multiply(r, v, y);
+      Secp256k1Field.subtract(y, hhh, y);
+   }
+
+   /**
+    * Add another Jacobian point to this point in place (add-1998-cmo-2)
+    */
+   public void add(JacobianPoint b) {
+      if (b.isInfinity()) {
+         return;
+      }
+      if (isInfinity()) {
+         set(b);
+         return;
+      }
+      int[] z1z1 = _t0;
+      int[] z2z2 = _t1;
+      int[] u1 = _t2;
+      int[] s1 = _t3;
+      int[] h = _t4;
+      int[] r = _t5;
+      int[] hh = _t6;
+      int[] hhh = _t7;
+      // U1 = X1 * Z2^2, U2 = X2 * Z1^2, S1 = Y1 * Z2^3, S2 = Y2 * Z1^3
+      _field.square(z, z1z1);
+      _field.square(b.z, z2z2);
+      _field.multiply(x, z2z2, u1);
+      _field.multiply(b.x, z1z1, h);
+      _field.multiply(z2z2, b.z, z2z2);
+      _field.multiply(y, z2z2, s1);
+      _field.multiply(z1z1, z, z1z1);
+      _field.multiply(b.y, z1z1, r);
+      // H = U2 - U1, r = S2 - S1
+      Secp256k1Field.subtract(h, u1, h);
+      Secp256k1Field.subtract(r, s1, r);
+      if (Secp256k1Field.isZero(h)) {
+         if (Secp256k1Field.isZero(r)) {
+            // this = b, i.e. this must be doubled
+            twice();
+         } else {
+            // this = -b, i.e. the result is the point at infinity
+            setInfinity();
+         }
+         return;
+      }
+      // HH = H^2, HHH = H * HH, V = U1 * HH
+      _field.square(h, hh);
+      _field.multiply(h, hh, hhh);
+      _field.multiply(u1, hh, u1);
+      // Z3 = Z1 * Z2 * H
+      _field.multiply(z, b.z, z);
+      _field.multiply(z, h, z);
+      // X3 = r^2 - HHH - 2 * V
+      _field.square(r, x);
+      Secp256k1Field.subtract(x, hhh, x);
+      Secp256k1Field.subtract(x, u1, x);
+      Secp256k1Field.subtract(x, u1, x);
+      // Y3 = r * (V - X3) - S1 * HHH
+      _field.multiply(s1, hhh, hhh);
+      Secp256k1Field.subtract(u1, x, u1);
+      _field.multiply(r, u1, y);
+      Secp256k1Field.subtract(y, hhh, y);
+   }
+
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2013 Megion Research & Development GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mrd.bitlib.crypto.ec;
+
+import java.math.BigInteger;
+
+/**
+ * The efficiently computable endomorphism of secp256k1 used for GLV scalar
+ * decomposition.
+ * <p>
+ * For every point P on the curve lambda * (x, y) = (beta * x, y). A 256 bit
+ * scalar k is split into k1 + k2 * lambda = k (mod n) where k1 and k2 have
+ * about 128 bits each, which halves the number of doublings of a scalar
+ * multiplication. See "Guide to Elliptic Curve Cryptography", algorithm 3.74.
+ */
+final class Secp256k1Endomorphism {
+
+   static final BigInteger BETA = new BigInteger(
+         "7ae96a2b657c07106e64479eac3434e99cf0497512f58995c1396c28719501ee", 16);
+   static final BigInteger LAMBDA = new BigInteger(
+         "5363ad4cc05c30e0a5261c028812645a122e22ea20816678df02967c1b23bd72", 16);
+
+   // The short basis (a1, b1), (a2, b2) of the lattice of decompositions of 0
+   private static final BigInteger A1 = new BigInteger("3086d221a7d46bcde86c90e49284eb15", 16);
+   private static final BigInteger B1 = new BigInteger("-e4437ed6010e88286f547fa90abfe4c3", 16);
+   private static final BigInteger A2 = new BigInteger("114ca50f7a8e2f3f657c1108d9d44cfd8", 16);
+   private static final BigInteger B2 = A1;
+
+   static final int[] BETA_LIMBS = Secp256k1Field.fromBigInteger(BETA);
+
+   private Secp256k1Endomorphism() {
+   }
+
+   /**
+    * Split a scalar 0 <= k < n into {k1, k2} with k1 + k2 * lambda = k (mod
+    * n). Both parts may be negative and have at most 129 bits.
+    */
+   static BigInteger[] decompose(BigInteger k) {
+      BigInteger n = Parameters.n;
+      BigInteger c1 = roundedDivide(B2.multiply(k), n);
+      BigInteger c2 = roundedDivide(B1.negate().multiply(k), n);
+      BigInteger k1 = k.subtract(c1.multiply(A1)).subtract(c2.multiply(A2));
+      BigInteger k2 = c1.multiply(B1).add(c2.multiply(B2)).negate();
+      return new BigInteger[] { k1, k2 };
+   }
+
+   /**
+    * Round a / b to the nearest integer for a >= 0 and b > 0
+    */
+   private static BigInteger roundedDivide(BigInteger a, BigInteger b) {
+      return a.add(b.shiftRight(1)).divide(b);
+   }
+
+}
@@ -0,0 +1,428 @@
+/*
+ * Copyright 2013 Megion Research & Development GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mrd.bitlib.crypto.ec;
+
+import java.math.BigInteger;
+
+/**
+ * Arithmetic in the secp256k1 prime field on fixed width limbs.
+ * <p>
+ * A field element is an int[8] holding the value in little endian order of
+ * 32 bit limbs. All results are fully reduced into the range [0, p). Every
+ * operation writes its result into a caller supplied array, which may be the
+ * same array as one of the operands, so inner loops run without allocating.
+ * <p>
+ * Reduction exploits p = 2^256 - 2^32 - 977, that is 2^256 = 2^32 + 977 (mod
+ * p).
+ * <p>
+ * Multiplication and squaring need a 512 bit scratch area, which is why they
+ * are instance methods. An instance is not thread safe.
+ */
+final class Secp256k1Field {
+
+   public static final int LIMBS = 8;
+
+   public static final BigInteger P = new BigInteger(1,
+         new byte[] { (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF,
+               (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF,
+               (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF,
+               (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFE, (byte) 0xFF, (byte) 0xFF, (byte) 0xFC,
+               (byte) 0x2F });
+
+   private static final long M = 0xFFFFFFFFL;
+
+   // 2^256 - p = 2^32 + 977
+   private static final long PInv33 = 977L;
+
+   private static final int P0 = 0xFFFFFC2F;
+   private static final int P1 = 0xFFFFFFFE;
+
+   private final int[] _tt = new int[2 * LIMBS];
+
+   public static int[] create() {
+      return new int[LIMBS];
+   }
+
+   public static int[] fromBigInteger(BigInteger x) {
+      int[] r = new int[LIMBS];
+      fromBigInteger(x, r);
+      return r;
+   }
+
+   public static void fromBigInteger(BigInteger x, int[] r) {
+      if (x.signum() < 0 || x.compareTo(P) >= 0) {
+         throw new IllegalArgumentException("x value out of range for field element");
+      }
+      for (int i = 0; i < LIMBS; i++) {
+         r[i] = x.intValue();
+         x = x.shiftRight(32);
+      }
+   }
+
+   public static BigInteger toBigInteger(int[] x) {
+      byte[] bytes = new byte[LIMBS * 4];
+      for (int i = 0; i < LIMBS; i++) {
+         int limb = x[LIMBS - 1 - i];
+         bytes[i * 4] = (byte) (limb >>> 24);
+         bytes[i * 4 + 1] = (byte) (limb >>> 16);
+         bytes[i * 4 + 2] = (byte) (limb >>> 8);
+         bytes[i * 4 + 3] = (byte) limb;
+      }
+      return new BigInteger(1, bytes);
+   }
+
+   public static void copy(int[] x, int[] r) {
+      System.arraycopy(x, 0, r, 0, LIMBS);
+   }
+
+   public static void setZero(int[] r) {
+      for (int i = 0; i < LIMBS; i++) {
+         r[i] = 0;
+      }
+   }
+
+   public static void setOne(int[] r) {
+      r[0] = 1;
+      for (int i = 1; i < LIMBS; i++) {
+         r[i] = 0;
+      }
+   }
+
+   public static boolean isZero(int[] x) {
+      int d = 0;
+      for (int i = 0; i < LIMBS; i++) {
+         d |= x[i];
+      }
+      return d == 0;
+   }
+
+   public static boolean isOne(int[] x) {
+      int d = x[0] ^ 1;
+      for (int i = 1; i < LIMBS; i++) {
+         d |= x[i];
+      }
+      return d == 0;
+   }
+
+   public static boolean equals(int[] x, int[] y) {
+      int d = 0;
+      for (int i = 0; i < LIMBS; i++) {
+         d |= x[i] ^ y[i];
+      }
+      return d == 0;
+   }
+
+   /**
+    * r = x + y (mod p)
+    */
+   public static void add(int[] x, int[] y, int[] r) {
+      long c = 0;
+      for (int i = 0; i < LIMBS; i++) {
+         c += (x[i] & M) + (y[i] & M);
+         r[i] = (int) c;
+         c >>>= 32;
+      }
+      if (c != 0) {
+         // The sum overflowed 2^256, add 2^256 - p to wrap around
+         addPInv(r);
+      }
+      reduceOnce(r);
+   }
+
+   /**
+    * r = x - y (mod p)
+    */
+   public static void subtract(int[] x, int[] y, int[] r) {
+      long c = 0;
+      for (int i = 0; i < LIMBS; i++) {
+         c += (x[i] & M) - (y[i] & M);
+         r[i] = (int) c;
+         c >>= 32;
+      }
+      if (c != 0) {
+         // The difference went negative, subtract 2^256 - p, which is the same
+         // as adding p modulo 2^256
+         subtractPInv(r);
+      }
+   }
+
+   /**
+    * r = 2 * x (mod p)
+    */
+   public static void twice(int[] x, int[] r) {
+      add(x, x, r);
+   }
+
+   /**
+    * r = -x (mod p)
+    */
+   public static void negate(int[] x, int[] r) {
+      if (isZero(x)) {
+         setZero(r);
+         return;
+      }
+      long c = (P0 & M) - (x[0] & M);
+      r[0] = (int) c;
+      c >>= 32;
+      c += (P1 & M) - (x[1] & M);
+      r[1] = (int) c;
+      c >>= 32;
+      for (int i = 2; i < LIMBS; i++) {
+         c += M - (x[i] & M);
+         r[i] = (int) c;
+         c >>= 32;
+      }
+   }
+
+   /**
+    * r = x * c (mod p) for a small non-negative constant c
+    */
+   public static void multiply(int[] x, int c, int[] r) {
+      long cc = c & M;
+      long carry = 0;
+      for (int i = 0; i < LIMBS; i++) {
+         carry += (x[i] & M) * cc;
+         r[i] = (int) carry;
+         carry >>>= 32;
+      }
+      reduceWord(r, carry);
+   }
+
+   /**
+    * r = x * y (mod p)
+    */
+   public void multiply(int[] x, int[] y, int[] r) {
+      int[] tt = _tt;
+      long y0 = y[0] & M;
+      long c = 0;
+      for (int i = 0; i < LIMBS; i++) {
+         c += (x[i] & M) * y0;
+         tt[i] = (int) c;
+         c >>>= 32;
+      }
+      tt[LIMBS] = (int) c;
+      for (int j = 1; j < LIMBS; j++) {
+         long yj = y[j] & M;
+         c = 0;
+         for (int i = 0; i < LIMBS; i++) {
+            c += (x[i] & M) * yj + (tt[i + j] & M);
+            tt[i + j] = (int) c;
+            c >>>= 32;
+         }
+         tt[j + LIMBS] = (int) c;
+      }
+      reduce(tt, r);
+   }
+
+   /**
+    * r = x^2 (mod p)
+    */
+   public void square(int[] x, int[] r) {
+      multiply(x, x, r);
+   }
+
+   /**
+    * r = x^-1 (mod p). The input must not be zero.
+    * <p>
+    * This computes x^(p - 2) using the addition chain from libsecp256k1, 255
+    * squarings and 15 multiplications, which is considerably faster than
+    * BigInteger.modInverse.
+    */
+   public void invert(int[] x, int[] r) {
+      if (isZero(x)) {
+         throw new ArithmeticException("Zero has no inverse");
+      }
+      if (x == r) {
+         x = x.clone();
+      }
+      int[] x2 = create();
+      int[] x3 = create();
+      int[] x22 = create();
+      int[] x44 = create();
+      int[] t = create();
+
+      square(x, x2);
+      multiply(x2, x, x2);
+      square(x2, x3);
+      multiply(x3, x, x3);
+      // t = x6
+      squareTimes(x3, 3, t);
+      multiply(t, x3, t);
+      // t = x9
+      squareTimes(t, 3, t);
+      multiply(t, x3, t);
+      // t = x11
+      squareTimes(t, 2, t);
+      multiply(t, x2, t);
+      squareTimes(t, 11, x22);
+      multiply(x22, t, x22);
+      squareTimes(x22, 22, x44);
+      multiply(x44, x22, x44);
+      // t = x88
+      squareTimes(x44, 44, t);
+      multiply(t, x44, t);
+      // r = x176
+      squareTimes(t, 88, r);
+      multiply(r, t, r);
+      // r = x220
+      squareTimes(r, 44, r);
+      multiply(r, x44, r);
+      // r = x223
+      squareTimes(r, 3, r);
+      multiply(r, x3, r);
+
+      squareTimes(r, 23, r);
+      multiply(r, x22, r);
+      squareTimes(r, 5, r);
+      multiply(r, x, r);
+      squareTimes(r, 3, r);
+      multiply(r, x2, r);
+      squareTimes(r, 2, r);
+      multiply(r, x, r);
+   }
+
+   /**
+    * Invert several field elements using a single inversion (Montgomery's
+    * trick), that is r[i] = x[i]^-1 (mod p). None of the inputs may be zero.
+    * The arrays of r may be the same arrays as those of x.
+    */
+   public void invertAll(int[][] x, int[][] r) {
+      int n = x.length;
+      if (n == 0) {
+         return;
+      }
+      // products[i] = x[0] * ... * x[i]
+      int[][] products = new int[n][];
+      products[0] = x[0].clone();
+      for (int i = 1; i < n; i++) {
+         products[i] = create();
+         multiply(products[i - 1], x[i], products[i]);
+      }
+      int[] inv = create();
+      invert(products[n - 1], inv);
+      for (int i = n - 1; i > 0; i--) {
+         // x[i] is needed after r[i] has been written if they are the same
+         int[] xi = x[i] == r[i] ? x[i].clone() : x[i];
+         multiply(inv, products[i - 1], r[i]);
+         multiply(inv, xi, inv);
+      }
+      copy(inv, r[0]);
+   }
+
+   /**
+    * r = x^(2^n) (mod p)
+    */
+   private void squareTimes(int[] x, int n, int[] r) {
+      square(x, r);
+      for (int i = 1; i < n; i++) {
+         square(r, r);
+      }
+   }
+
+   /**
+    * Reduce a 512 bit value modulo p using 2^256 = 2^32 + 977 (mod p)
+    */
+   private static void reduce(int[] tt, int[] r) {
+      // r = lo + hi * 977 + (hi << 32)
+      long c = 0;
+      long prev = 0;
+      for (int i = 0; i < LIMBS; i++) {
+         long hi = tt[i + LIMBS] & M;
+         c += (tt[i] & M) + hi * PInv33 + prev;
+         r[i] = (int) c;
+         c >>>= 32;
+         prev = hi;
+      }
+      // Everything above 2^256 is now c + prev, which is less than 2^33
+      reduceWord(r, c + prev);
+   }
+
+   /**
+    * Fold a value w * 2^256 into r and fully reduce it, with w < 2^34
+    */
+   private static void reduceWord(int[] r, long w) {
+      if (w != 0) {
+         // r += w * 977 + (w << 32)
+         long c = (r[0] & M) + w * PInv33;
+         r[0] = (int) c;
+         c >>>= 32;
+         c += (r[1] & M) + w;
+         r[1] = (int) c;
+         c >>>= 32;
+         for (int i = 2; i < LIMBS && c != 0; i++) {
+            c += r[i] & M;
+            r[i] = (int) c;
+            c >>>= 32;
+         }
+         if (c != 0) {
+            addPInv(r);
+         }
+      }
+      reduceOnce(r);
+   }
+
+   /**
+    * r = r + 2^32 + 977 (mod 2^256)
+    */
+   private static void addPInv(int[] r) {
+      long c = (r[0] & M) + PInv33;
+      r[0] = (int) c;
+      c >>>= 32;
+      c += (r[1] & M) + 1;
+      r[1] = (int) c;
+      c >>>= 32;
+      for (int i = 2; i < LIMBS && c != 0; i++) {
+         c += r[i] & M;
+         r[i] = (int) c;
+         c >>>= 32;
+      }
+   }
+
+   /**
+    * r = r - 2^32 - 977 (mod 2^256)
+    */
+   private static void subtractPInv(int[] r) {
+      long c = (r[0] & M) - PInv33;
+      r[0] = (int) c;
+      c >>= 32;
+      c += (r[1] & M) - 1;
+      r[1] = (int) c;
+      c >>= 32;
+      for (int i = 2; i < LIMBS && c != 0; i++) {
+         c += r[i] & M;
+         r[i] = (int) c;
+         c >>= 32;
+      }
+   }
+
+   /**
+    * Subtract p once if r >= p
+    */
+   private static void reduceOnce(int[] r) {
+      for (int i = LIMBS - 1; i >= 2; i--) {
+         if (r[i] != -1) {
+            return;
+         }
+      }
+      long r1 = r[1] & M;
+      if (r1 < (P1 & M) || (r1 == (P1 & M) && (r[0] & M) < (P0 & M))) {
+         return;
+      }
+      addPInv(r);
+   }
+
+}
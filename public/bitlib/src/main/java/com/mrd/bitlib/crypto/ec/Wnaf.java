@@ -0,0 +1,181 @@
+/*
+ * Copyright 2013 Megion Research & Development GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mrd.bitlib.crypto.ec;
+
+import java.math.BigInteger;
+
+/**
+ * Windowed non-adjacent form (wNAF) scalar multiplication for secp256k1.
+ * <p>
+ * A scalar is recoded into digits that are either zero or odd and in the
+ * range (-2^(w-1), 2^(w-1)), with at most one non-zero digit in any w
+ * consecutive digits. Together with a table of the odd multiples P, 3P, ...,
+ * (2^(w-1) - 1)P this needs one doubling per bit and on average one addition
+ * per w + 1 bits. Several scalars can be processed in one interleaved loop
+ * sharing the doublings.
+ */
+final class Wnaf {
+
+   /**
+    * Affine odd multiples of a point as field limbs. Entry i holds (2i + 1) *
+    * P, and its negation is available without computation.
+    */
+   static final class Table {
+      final int[][] x;
+      final int[][] y;
+      final int[][] negY;
+
+      private Table(int[][] x, int[][] y, int[][] negY) {
+         this.x = x;
+         this.y = y;
+         this.negY = negY;
+      }
+
+      /**
+       * Get the table for -P
+       */
+      Table negate() {
+         return new Table(x, negY, y);
+      }
+
+      /**
+       * Get the table for lambda * P, where lambda * (x, y) = (beta * x, y)
+       */
+      Table endomorphism(int[] beta) {
+         Secp256k1Field field = new Secp256k1Field();
+         int[][] bx = new int[x.length][];
+         for (int i = 0; i < x.length; i++) {
+            bx[i] = Secp256k1Field.create();
+            field.multiply(x[i], beta, bx[i]);
+         }
+         return new Table(bx, y, negY);
+      }
+   }
+
+   private Wnaf() {
+   }
+
+   /**
+    * Build the table of odd multiples of a point for a window width
+    */
+   static Table oddMultiples(Point p, int width) {
+      int size = 1 << (width - 2);
+      int[][] x = new int[size][];
+      int[][] y = new int[size][];
+      int[][] negY = new int[size][];
+      JacobianPoint twice = new JacobianPoint();
+      twice.setAffine(p);
+      twice.twice();
+      int[][] twiceAffine = twice.toAffineLimbs();
+      JacobianPoint[] multiples = new JacobianPoint[size];
+      multiples[0] = new JacobianPoint();
+      multiples[0].setAffine(p);
+      for (int i = 1; i < size; i++) {
+         multiples[i] = new JacobianPoint();
+         multiples[i].set(multiples[i - 1]);
+         multiples[i].addAffine(twiceAffine[0], twiceAffine[1]);
+      }
+      int[][][] affine = JacobianPoint.toAffineLimbs(multiples);
+      for (int i = 0; i < size; i++) {
+         x[i] = affine[i][0];
+         y[i] = affine[i][1];
+         negY[i] = Secp256k1Field.create();
+         Secp256k1Field.negate(y[i], negY[i]);
+      }
+      return new Table(x, y, negY);
+   }
+
+   /**
+    * Recode a non-negative scalar into wNAF digits, least significant digit
+    * first
+    */
+   static byte[] recode(BigInteger k, int width) {
+      byte[] bytes = k.toByteArray();
+      int bits = k.bitLength();
+      byte[] digits = new byte[bits + 1];
+      int length = 0;
+      int carry = 0;
+      int i = 0;
+      while (i < bits) {
+         if (getBits(bytes, i, 1) == carry) {
+            i++;
+            continue;
+         }
+         int word = getBits(bytes, i, width) + carry;
+         carry = (word >> (width - 1)) & 1;
+         word -= carry << width;
+         digits[i] = (byte) word;
+         length = i + 1;
+         i += width;
+      }
+      if (carry != 0) {
+         digits[i] = 1;
+         length = i + 1;
+      }
+      if (length == digits.length) {
+         return digits;
+      }
+      byte[] result = new byte[length];
+      System.arraycopy(digits, 0, result, 0, length);
+      return result;
+   }
+
+   /**
+    * Get count bits starting at bit offset from a big endian two's complement
+    * encoding of a non-negative number
+    */
+   private static int getBits(byte[] bytes, int offset, int count) {
+      int result = 0;
+      for (int j = count - 1; j >= 0; j--) {
+         int bit = offset + j;
+         int index = bytes.length - 1 - (bit >>> 3);
+         result <<= 1;
+         if (index >= 0) {
+            result |= (bytes[index] >>> (bit & 7)) & 1;
+         }
+      }
+      return result;
+   }
+
+   /**
+    * Calculate the sum of digits[i] * tables[i] with shared doublings into R
+    */
+   static void interleave(Table[] tables, byte[][] digits, JacobianPoint R) {
+      int length = 0;
+      for (byte[] d : digits) {
+         length = Math.max(length, d.length);
+      }
+      R.setInfinity();
+      for (int i = length - 1; i >= 0; i--) {
+         R.twice();
+         for (int j = 0; j < tables.length; j++) {
+            byte[] d = digits[j];
+            if (i >= d.length || d[i] == 0) {
+               continue;
+            }
+            int digit = d[i];
+            Table t = tables[j];
+            if (digit > 0) {
+               R.addAffine(t.x[digit >> 1], t.y[digit >> 1]);
+            } else {
+               R.addAffine(t.x[(-digit) >> 1], t.negY[(-digit) >> 1]);
+            }
+         }
+      }
+   }
+
+}
@@ -25,7 +25,6 @@ import com.google.bitcoinj.Base58;
 
 import com.mrd.bitlib.util.BitUtils;
 import com.mrd.bitlib.util.HashUtils;
-import com.mrd.bitlib.util.Sha256Hash;
 
 public class Address implements Serializable, Comparable<Address> {
 
@@ -177,8 +176,9 @@ public class Address implements Serializable, Comparable<Address> {
          byte[] addressBytes = new byte[1 + 20 + 4];
          addressBytes[0] = _bytes[0];
          System.arraycopy(_bytes, 0, addressBytes, 0, NUM_ADDRESS_BYTES);
-         Sha256Hash checkSum = HashUtils.doubleSha256(addressBytes, 0, NUM_ADDRESS_BYTES);
-         System.arraycopy(checkSum.getBytes(), 0, addressBytes, NUM_ADDRESS_BYTES, 4);
+         byte[] checkSum = new byte[HashUtils.SHA256_LENGTH];
+         HashUtils.doubleSha256(addressBytes, 0, NUM_ADDRESS_BYTES, checkSum, 0);
+         System.arraycopy(checkSum, 0, addressBytes, NUM_ADDRESS_BYTES, 4);
          _address = Base58.encode(addressBytes);
       }
       return _address;
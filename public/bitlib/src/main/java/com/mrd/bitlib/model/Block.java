@@ -18,8 +18,8 @@ package com.mrd.bitlib.model;
 
 import com.mrd.bitlib.model.Transaction.TransactionParsingException;
 import com.mrd.bitlib.util.ByteReader;
-import com.mrd.bitlib.util.ByteWriter;
-import com.mrd.bitlib.util.HashUtils;
+import com.mrd.bitlib.util.ByteSink;
+import com.mrd.bitlib.util.HashingByteSink;
 import com.mrd.bitlib.util.Sha256Hash;
 import com.mrd.bitlib.util.ByteReader.InsufficientBytesException;
 
@@ -88,12 +88,12 @@ public class Block {
       this.transactions = transactions;
    }
 
-   public void toByteWriter(ByteWriter writer) {
+   public void toByteWriter(ByteSink writer) {
       headerToByteWriter(writer);
       transactionsToByteWriter(writer);
    }
 
-   public void headerToByteWriter(ByteWriter writer) {
+   public void headerToByteWriter(ByteSink writer) {
       writer.putIntLE(version);
       writer.putSha256Hash(prevBlockHash, true);
       writer.putSha256Hash(merkleRoot, true);
@@ -102,7 +102,7 @@ public class Block {
       writer.putIntLE(nonce);
    }
 
-   public void transactionsToByteWriter(ByteWriter writer) {
+   public void transactionsToByteWriter(ByteSink writer) {
       writer.putCompactInt(transactions.length);
       for (Transaction t : transactions) {
          t.toByteWriter(writer);
@@ -111,13 +111,28 @@ public class Block {
 
    public Sha256Hash getHash() {
       if (_hash == null) {
-         ByteWriter writer = new ByteWriter(2000);
-         headerToByteWriter(writer);
-         _hash = HashUtils.doubleSha256(writer.toBytes()).reverse();
+         HashingByteSink sink = new HashingByteSink();
+         headerToByteWriter(sink);
+         _hash = sink.getDoubleSha256Hash().reverse();
       }
       return _hash;
    }
 
+   /**
+    * Calculate the merkle root of the transactions of this block
+    */
+   public Sha256Hash calculateMerkleRoot() {
+      return new MerkleTree().calculateRoot(this);
+   }
+
+   /**
+    * Check that the merkle root in the header matches the transactions of this
+    * block
+    */
+   public boolean verifyMerkleRoot() {
+      return new MerkleTree().verifyRoot(this);
+   }
+
    @Override
    public String toString() {
       StringBuilder sb = new StringBuilder();
@@ -132,6 +132,26 @@ public class CompactInt {
       }
    }
 
+   /**
+    * Get the number of bytes of the CompactInt representation of a long value
+    * without encoding it.
+    * 
+    * @param value
+    *           The value to get the representation size of.
+    * @return the size in bytes, which is the length of {@link #toBytes}.
+    */
+   public static int sizeOf(long value) {
+      if (isLessThan(value, 253)) {
+         return 1;
+      } else if (isLessThan(value, 65536)) {
+         return 3;
+      } else if (isLessThan(value, 4294967295L)) {
+         return 5;
+      } else {
+         return 9;
+      }
+   }
+
    /**
     * Determine whether one long is less than another long when comparing as
     * unsigned longs.
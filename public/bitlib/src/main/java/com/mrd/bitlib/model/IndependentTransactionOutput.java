@@ -21,6 +21,7 @@ import java.io.Serializable;
 import com.mrd.bitlib.model.Script.ScriptParsingException;
 import com.mrd.bitlib.util.ByteReader;
 import com.mrd.bitlib.util.ByteReader.InsufficientBytesException;
+import com.mrd.bitlib.util.ByteSink;
 import com.mrd.bitlib.util.ByteWriter;
 
 public class IndependentTransactionOutput implements Serializable {
@@ -57,7 +58,7 @@ public class IndependentTransactionOutput implements Serializable {
       return writer.toBytes();
    }
 
-   public void toByteWriter(ByteWriter writer) {
+   public void toByteWriter(ByteSink writer) {
       outPoint.toByteWriter(writer);
       writer.putIntLE(height);
       writer.putLongLE(value);
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2013 Megion Research & Development GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mrd.bitlib.model;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.mrd.bitlib.util.BitUtils;
+import com.mrd.bitlib.util.ByteReader;
+import com.mrd.bitlib.util.ByteReader.InsufficientBytesException;
+import com.mrd.bitlib.util.ByteSink;
+import com.mrd.bitlib.util.HashUtils;
+import com.mrd.bitlib.util.Sha256Hash;
+
+/**
+ * Proof that a transaction is included in a block, consisting of the index of
+ * the transaction in the block and the sibling hashes on the path from the
+ * transaction to the merkle root.
+ * <p>
+ * A proof has one hash per level of the merkle tree, so it stays small even
+ * for large blocks, and it can be verified against a block header alone. See
+ * {@link MerkleTree#createProof}.
+ */
+public class MerkleProof implements Serializable {
+
+   private static final long serialVersionUID = 1L;
+
+   /**
+    * The maximum number of branch hashes accepted when parsing. A block of
+    * {@link Block#MAX_BLOCK_SIZE} bytes cannot have a deeper merkle tree.
+    */
+   private static final int MAX_BRANCH_LENGTH = 32;
+
+   public static class MerkleProofParsingException extends Exception {
+      private static final long serialVersionUID = 1L;
+
+      public MerkleProofParsingException(String message) {
+         super(message);
+      }
+   }
+
+   private final int _index;
+   private final List<Sha256Hash> _branch;
+
+   /**
+    * Create a merkle proof
+    *
+    * @param index
+    *           the index of the transaction in the block
+    * @param branch
+    *           the sibling hashes from the transaction up to the root, in the
+    *           byte order of {@link Transaction#getHash}
+    */
+   public MerkleProof(int index, List<Sha256Hash> branch) {
+      if (index < 0) {
+         throw new IllegalArgumentException("Index must not be negative");
+      }
+      _index = index;
+      _branch = Collections.unmodifiableList(new ArrayList<Sha256Hash>(branch));
+   }
+
+   public static MerkleProof fromByteReader(ByteReader reader) throws MerkleProofParsingException {
+      try {
+         int index = reader.getIntLE();
+         if (index < 0) {
+            throw new MerkleProofParsingException("Invalid transaction index: " + index);
+         }
+         long length = reader.getCompactInt();
+         if (length > MAX_BRANCH_LENGTH) {
+            throw new MerkleProofParsingException("Merkle branch too long: " + length);
+         }
+         List<Sha256Hash> branch = new ArrayList<Sha256Hash>((int) length);
+         for (int i = 0; i < length; i++) {
+            branch.add(reader.getSha256Hash().reverse());
+         }
+         return new MerkleProof(index, branch);
+      } catch (InsufficientBytesException e) {
+         throw new MerkleProofParsingException(e.getMessage());
+      }
+   }
+
+   public void toByteWriter(ByteSink writer) {
+      writer.putIntLE(_index);
+      writer.putCompactInt(_branch.size());
+      for (Sha256Hash hash : _branch) {
+         writer.putSha256Hash(hash, true);
+      }
+   }
+
+   public int getIndex() {
+      return _index;
+   }
+
+   public List<Sha256Hash> getBranch() {
+      return _branch;
+   }
+
+   /**
+    * Calculate the merkle root that this proof leads to from a transaction
+    * hash
+    */
+   public Sha256Hash calculateRoot(Sha256Hash transactionHash) {
+      // The node and its sibling are the two halves of one buffer, in internal
+      // byte order. The parent replaces the left half.
+      final int length = Sha256Hash.HASH_LENGTH;
+      byte[] buffer = new byte[length * 2];
+      reverseInto(transactionHash, buffer, 0);
+      int position = _index;
+      for (Sha256Hash sibling : _branch) {
+         if ((position & 1) == 0) {
+            reverseInto(sibling, buffer, length);
+         } else {
+            System.arraycopy(buffer, 0, buffer, length, length);
+            reverseInto(sibling, buffer, 0);
+         }
+         HashUtils.doubleSha256(buffer, 0, buffer.length, buffer, 0);
+         position >>>= 1;
+      }
+      return new Sha256Hash(BitUtils.reverseBytes(BitUtils.copyOfRange(buffer, 0, length)));
+   }
+
+   /**
+    * Verify that a transaction hash is included under a merkle root, such as
+    * {@link Block#merkleRoot} of a block header
+    */
+   public boolean verify(Sha256Hash transactionHash, Sha256Hash merkleRoot) {
+      // The index must fit in the depth of the tree, otherwise the same proof
+      // would be valid for several indexes
+      if (_branch.size() < 31 && (_index >>> _branch.size()) != 0) {
+         return false;
+      }
+      return calculateRoot(transactionHash).equals(merkleRoot);
+   }
+
+   /**
+    * Copy the bytes of a hash in reverse order into a buffer
+    */
+   private static void reverseInto(Sha256Hash hash, byte[] buffer, int offset) {
+      byte[] bytes = hash.getBytes();
+      for (int i = 0; i < Sha256Hash.HASH_LENGTH; i++) {
+         buffer[offset + i] = bytes[Sha256Hash.HASH_LENGTH - 1 - i];
+      }
+   }
+
+}
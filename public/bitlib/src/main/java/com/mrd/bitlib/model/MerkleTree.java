@@ -0,0 +1,218 @@
+/*
+ * Copyright 2013 Megion Research & Development GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mrd.bitlib.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import com.mrd.bitlib.util.BitUtils;
+import com.mrd.bitlib.util.HashUtils;
+import com.mrd.bitlib.util.Sha256Hash;
+
+/**
+ * Calculates the merkle root of the transactions of a block and creates
+ * merkle proofs for single transactions.
+ * <p>
+ * Transaction hashes and merkle roots are passed in the byte order of
+ * {@link Transaction#getHash} and {@link Block#merkleRoot}. Internally each
+ * level of the tree is kept in a single byte array, and nodes are hashed with
+ * {@link HashUtils#doubleSha256(byte[], int, int, byte[], int)}, which does
+ * not allocate. Levels with many nodes are split into chunks that are hashed
+ * in parallel if an executor is supplied.
+ */
+public class MerkleTree {
+
+   private static final int HASH_LENGTH = Sha256Hash.HASH_LENGTH;
+
+   /**
+    * Levels with fewer nodes than this are always hashed in the calling thread
+    */
+   private static final int MIN_PARALLEL_NODES = 256;
+
+   private final ExecutorService _executor;
+   private final int _parallelism;
+
+   /**
+    * Create a merkle tree engine that hashes in the calling thread
+    */
+   public MerkleTree() {
+      this(null, 1);
+   }
+
+   /**
+    * Create a merkle tree engine that splits large levels into a number of
+    * chunks that are hashed in parallel
+    *
+    * @param executor
+    *           the executor to hash chunks on
+    * @param parallelism
+    *           the number of chunks to split a level into, typically the
+    *           number of available processors
+    */
+   public MerkleTree(ExecutorService executor, int parallelism) {
+      if (parallelism < 1) {
+         throw new IllegalArgumentException("Parallelism must be at least one");
+      }
+      _executor = executor;
+      _parallelism = parallelism;
+   }
+
+   /**
+    * Calculate the merkle root of the transactions of a block
+    */
+   public Sha256Hash calculateRoot(Block block) {
+      return calculateRoot(transactionHashes(block));
+   }
+
+   /**
+    * Check that the merkle root in the header of a block matches its
+    * transactions
+    */
+   public boolean verifyRoot(Block block) {
+      return calculateRoot(block).equals(block.merkleRoot);
+   }
+
+   /**
+    * Calculate the merkle root of a list of transaction hashes
+    */
+   public Sha256Hash calculateRoot(List<Sha256Hash> transactionHashes) {
+      if (transactionHashes.isEmpty()) {
+         throw new IllegalArgumentException("Cannot calculate the merkle root of no transactions");
+      }
+      byte[] level = leaves(transactionHashes);
+      int count = transactionHashes.size();
+      while (count > 1) {
+         level = nextLevel(level, count);
+         count = (count + 1) / 2;
+      }
+      return nodeToHash(level, 0);
+   }
+
+   /**
+    * Create a merkle proof for the transaction at an index of a block
+    */
+   public MerkleProof createProof(Block block, int index) {
+      return createProof(transactionHashes(block), index);
+   }
+
+   /**
+    * Create a merkle proof for the transaction hash at an index of a list of
+    * transaction hashes
+    */
+   public MerkleProof createProof(List<Sha256Hash> transactionHashes, int index) {
+      if (index < 0 || index >= transactionHashes.size()) {
+         throw new IllegalArgumentException("Index out of range: " + index);
+      }
+      List<Sha256Hash> branch = new ArrayList<Sha256Hash>();
+      byte[] level = leaves(transactionHashes);
+      int count = transactionHashes.size();
+      int position = index;
+      while (count > 1) {
+         // The last node of a level with an odd count is paired with itself
+         int sibling = Math.min(position ^ 1, count - 1);
+         branch.add(nodeToHash(level, sibling));
+         level = nextLevel(level, count);
+         count = (count + 1) / 2;
+         position >>= 1;
+      }
+      return new MerkleProof(index, branch);
+   }
+
+   private static List<Sha256Hash> transactionHashes(Block block) {
+      List<Sha256Hash> hashes = new ArrayList<Sha256Hash>(block.transactions.length);
+      for (Transaction t : block.transactions) {
+         hashes.add(t.getHash());
+      }
+      return hashes;
+   }
+
+   /**
+    * Lay out transaction hashes in internal byte order, with room for
+    * duplicating the last one
+    */
+   private static byte[] leaves(List<Sha256Hash> transactionHashes) {
+      byte[] level = new byte[(transactionHashes.size() + 1) * HASH_LENGTH];
+      for (int i = 0; i < transactionHashes.size(); i++) {
+         byte[] bytes = transactionHashes.get(i).getBytes();
+         for (int j = 0; j < HASH_LENGTH; j++) {
+            level[i * HASH_LENGTH + j] = bytes[HASH_LENGTH - 1 - j];
+         }
+      }
+      return level;
+   }
+
+   private static Sha256Hash nodeToHash(byte[] level, int index) {
+      return new Sha256Hash(BitUtils.reverseBytes(BitUtils.copyOfRange(level, index * HASH_LENGTH, (index + 1)
+            * HASH_LENGTH)));
+   }
+
+   /**
+    * Hash the count nodes of a level in pairs. The level array must have room
+    * for one more node.
+    */
+   private byte[] nextLevel(final byte[] level, int count) {
+      if ((count & 1) == 1) {
+         System.arraycopy(level, (count - 1) * HASH_LENGTH, level, count * HASH_LENGTH, HASH_LENGTH);
+      }
+      final int nodes = (count + 1) / 2;
+      final byte[] next = new byte[(nodes + 1) * HASH_LENGTH];
+      int chunks = Math.min(_parallelism, nodes / (MIN_PARALLEL_NODES / 2));
+      if (_executor == null || nodes < MIN_PARALLEL_NODES || chunks <= 1) {
+         hashRange(level, 0, nodes, next);
+         return next;
+      }
+      List<Future<Void>> futures = new ArrayList<Future<Void>>(chunks);
+      int chunkSize = (nodes + chunks - 1) / chunks;
+      for (int start = 0; start < nodes; start += chunkSize) {
+         final int from = start;
+         final int to = Math.min(start + chunkSize, nodes);
+         futures.add(_executor.submit(new Callable<Void>() {
+
+            @Override
+            public Void call() {
+               hashRange(level, from, to, next);
+               return null;
+            }
+         }));
+      }
+      try {
+         for (Future<Void> future : futures) {
+            future.get();
+         }
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new RuntimeException(e);
+      } catch (ExecutionException e) {
+         throw new RuntimeException(e.getCause());
+      }
+      return next;
+   }
+
+   /**
+    * Calculate the nodes [from, to) of the next level
+    */
+   private static void hashRange(byte[] level, int from, int to, byte[] next) {
+      for (int i = from; i < to; i++) {
+         HashUtils.doubleSha256(level, i * 2 * HASH_LENGTH, 2 * HASH_LENGTH, next, i * HASH_LENGTH);
+      }
+   }
+
+}
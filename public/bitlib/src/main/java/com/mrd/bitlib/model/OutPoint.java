@@ -19,7 +19,7 @@ package com.mrd.bitlib.model;
 import java.io.Serializable;
 
 import com.mrd.bitlib.util.ByteReader;
-import com.mrd.bitlib.util.ByteWriter;
+import com.mrd.bitlib.util.ByteSink;
 import com.mrd.bitlib.util.HexUtils;
 import com.mrd.bitlib.util.Sha256Hash;
 import com.mrd.bitlib.util.ByteReader.InsufficientBytesException;
@@ -59,7 +59,7 @@ public class OutPoint implements Serializable {
       return new StringBuilder().append(hash).append(':').append(index).toString();
    }
 
-   public ByteWriter toByteWriter(ByteWriter writer) {
+   public ByteSink toByteWriter(ByteSink writer) {
       writer.putSha256Hash(hash);
       writer.putCompactInt(index);
       return writer;
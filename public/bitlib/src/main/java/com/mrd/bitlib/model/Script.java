@@ -116,6 +116,16 @@ public abstract class Script implements Serializable {
       return chunk.length == 1 && (((int) chunk[0]) & 0xFF) == op;
    }
 
+   /**
+    * Copy the data pushed at an offset of a script. The data length is the
+    * push opcode before it.
+    */
+   protected static final byte[] copyData(byte[] script, int dataOffset) {
+      byte[] data = new byte[ScriptTemplateMatcher.getDataLength(script, dataOffset)];
+      System.arraycopy(script, dataOffset, data, 0, data.length);
+      return data;
+   }
+
    protected static final byte[][] chunksFromScriptBytes(byte[] script) throws ScriptParsingException {
       try {
          ByteReader reader = new ByteReader(script);
@@ -16,12 +16,28 @@
 
 package com.mrd.bitlib.model;
 
+import com.mrd.bitlib.model.ScriptTemplateMatcher.Template;
+
 public class ScriptInput extends Script {
    private static final long serialVersionUID = 1L;
 
    public static final ScriptInput EMPTY = new ScriptInput(new byte[] {});
 
    public static ScriptInput fromScriptBytes(byte[] scriptBytes) throws ScriptParsingException {
+      // Recognize the common templates without splitting the script into
+      // chunks
+      Template template = ScriptTemplateMatcher.matchInput(scriptBytes, 0, scriptBytes.length);
+      switch (template) {
+      case STANDARD_INPUT:
+         return new ScriptInputStandard(copyData(scriptBytes, ScriptTemplateMatcher.getSignatureOffset(template, 0)),
+               copyData(scriptBytes, ScriptTemplateMatcher.getPublicKeyOffset(template, scriptBytes, 0)), scriptBytes);
+      case PUBKEY_INPUT:
+         return new ScriptInputPubKey(copyData(scriptBytes, ScriptTemplateMatcher.getSignatureOffset(template, 0)),
+               scriptBytes);
+      default:
+         break;
+      }
+
       byte[][] chunks = Script.chunksFromScriptBytes(scriptBytes);
       if (ScriptInputStandard.isScriptInputStandard(chunks)) {
          return new ScriptInputStandard(chunks, scriptBytes);
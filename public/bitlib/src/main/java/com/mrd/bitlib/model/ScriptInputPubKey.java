@@ -31,6 +31,11 @@ public class ScriptInputPubKey extends ScriptInput {
       _signature = chunks[0];
    }
 
+   protected ScriptInputPubKey(byte[] signature, byte[] scriptBytes) {
+      super(scriptBytes);
+      _signature = signature;
+   }
+
    protected static boolean isScriptInputPubKey(byte[][] chunks) throws ScriptParsingException {
       try {
          if (chunks.length != 1) {
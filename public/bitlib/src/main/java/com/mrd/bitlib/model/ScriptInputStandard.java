@@ -39,6 +39,12 @@ public class ScriptInputStandard extends ScriptInput {
       _publicKeyBytes = chunks[1];
    }
 
+   protected ScriptInputStandard(byte[] signature, byte[] publicKeyBytes, byte[] scriptBytes) {
+      super(scriptBytes);
+      _signature = signature;
+      _publicKeyBytes = publicKeyBytes;
+   }
+
    protected static boolean isScriptInputStandard(byte[][] chunks) throws ScriptParsingException {
       try {
          if (chunks.length != 2) {
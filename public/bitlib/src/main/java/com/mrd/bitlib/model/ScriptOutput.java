@@ -16,10 +16,29 @@
 
 package com.mrd.bitlib.model;
 
+import com.mrd.bitlib.model.ScriptTemplateMatcher.Template;
+
 public abstract class ScriptOutput extends Script {
    private static final long serialVersionUID = 1L;
 
    public static ScriptOutput fromScriptBytes(byte[] scriptBytes) {
+      // Recognize the common templates without splitting the script into
+      // chunks
+      Template template = ScriptTemplateMatcher.matchOutput(scriptBytes, 0, scriptBytes.length);
+      switch (template) {
+      case PAY_TO_ADDRESS:
+         return new ScriptOutputStandard(copyData(scriptBytes, ScriptTemplateMatcher.getHashOffset(template, 0)),
+               scriptBytes);
+      case PAY_TO_SCRIPT_HASH:
+         return new ScriptOutputMultisig(copyData(scriptBytes, ScriptTemplateMatcher.getHashOffset(template, 0)),
+               scriptBytes);
+      case PAY_TO_PUBKEY:
+         return new ScriptOutputPubkey(copyData(scriptBytes,
+               ScriptTemplateMatcher.getPublicKeyOffset(template, scriptBytes, 0)), scriptBytes);
+      default:
+         break;
+      }
+
       byte[][] chunks;
       try {
          chunks = Script.chunksFromScriptBytes(scriptBytes);
@@ -26,6 +26,11 @@ public class ScriptOutputMultisig extends ScriptOutput implements Serializable {
       _multisigAddressBytes = chunks[1];
    }
 
+   protected ScriptOutputMultisig(byte[] addressBytes, byte[] scriptBytes) {
+      super(scriptBytes);
+      _multisigAddressBytes = addressBytes;
+   }
+
    private byte[] _multisigAddressBytes;
 
    protected static boolean isScriptOutputMultisig(byte[][] chunks) {
@@ -30,6 +30,11 @@ public class ScriptOutputPubkey extends ScriptOutput implements Serializable {
       _publicKeyBytes = chunks[0];
    }
 
+   protected ScriptOutputPubkey(byte[] publicKeyBytes, byte[] scriptBytes) {
+      super(scriptBytes);
+      _publicKeyBytes = publicKeyBytes;
+   }
+
    protected static boolean isScriptOutputPubkey(byte[][] chunks) {
       if (chunks.length != 2) {
          return false;
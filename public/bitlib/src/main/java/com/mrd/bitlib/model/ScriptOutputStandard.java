@@ -28,6 +28,11 @@ public class ScriptOutputStandard extends ScriptOutput implements Serializable {
       _addressBytes = chunks[2];
    }
 
+   protected ScriptOutputStandard(byte[] addressBytes, byte[] scriptBytes) {
+      super(scriptBytes);
+      _addressBytes = addressBytes;
+   }
+
    protected static boolean isScriptOutputStandard(byte[][] chunks) {
       if (chunks.length != 5 && chunks.length != 6) {
          return false;
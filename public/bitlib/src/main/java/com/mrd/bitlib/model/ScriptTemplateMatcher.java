@@ -0,0 +1,282 @@
+/*
+ * Copyright 2013 Megion Research & Development GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mrd.bitlib.model;
+
+/**
+ * Recognizes the standard script templates directly from raw script bytes.
+ * <p>
+ * Matching reads the bytes in place and allocates nothing, where
+ * {@link Script#chunksFromScriptBytes} copies every chunk. The data of a
+ * matched template, such as an address hash or a public key, is located by
+ * its offset in the script bytes, and its length is given by the push opcode
+ * just before it.
+ * <p>
+ * Only the canonical encodings are matched. A script that does not match may
+ * still be standard when parsed into chunks, for instance when it pushes data
+ * with OP_PUSHDATA1.
+ */
+public final class ScriptTemplateMatcher {
+
+   public enum Template {
+      /**
+       * The script does not match any template
+       */
+      NONE,
+      /**
+       * OP_DUP OP_HASH160 [20 bytes] OP_EQUALVERIFY OP_CHECKSIG, optionally
+       * followed by OP_NOP
+       */
+      PAY_TO_ADDRESS,
+      /**
+       * OP_HASH160 [20 bytes] OP_EQUAL
+       */
+      PAY_TO_SCRIPT_HASH,
+      /**
+       * [33 or 65 byte public key] OP_CHECKSIG
+       */
+      PAY_TO_PUBKEY,
+      /**
+       * OP_m [public key] ... OP_n OP_CHECKMULTISIG
+       */
+      MULTISIG,
+      /**
+       * [signature] [public key], spending a pay to address output
+       */
+      STANDARD_INPUT,
+      /**
+       * [signature], spending a pay to public key output
+       */
+      PUBKEY_INPUT
+   }
+
+   /**
+    * The length of an address hash
+    */
+   public static final int HASH_LENGTH = 20;
+
+   private static final int OP_1 = Script.OP_TRUE;
+   private static final int OP_16 = OP_1 + 15;
+
+   private ScriptTemplateMatcher() {
+   }
+
+   /**
+    * Match an output script against the output templates
+    *
+    * @param script the buffer holding the script
+    * @param offset the offset of the script in the buffer
+    * @param length the length of the script
+    * @return the matching template or {@link Template#NONE}
+    */
+   public static Template matchOutput(byte[] script, int offset, int length) {
+      if ((length == 25 || length == 26 && op(script, offset + 25) == Script.OP_NOP)
+            && op(script, offset) == Script.OP_DUP && op(script, offset + 1) == Script.OP_HASH160
+            && op(script, offset + 2) == HASH_LENGTH && op(script, offset + 23) == Script.OP_EQUALVERIFY
+            && op(script, offset + 24) == Script.OP_CHECKSIG) {
+         return Template.PAY_TO_ADDRESS;
+      }
+      if (length == 23 && op(script, offset) == Script.OP_HASH160 && op(script, offset + 1) == HASH_LENGTH
+            && op(script, offset + 22) == Script.OP_EQUAL) {
+         return Template.PAY_TO_SCRIPT_HASH;
+      }
+      if ((length == 35 || length == 67) && op(script, offset) == length - 2
+            && op(script, offset + length - 1) == Script.OP_CHECKSIG) {
+         return Template.PAY_TO_PUBKEY;
+      }
+      if (isMultisig(script, offset, length)) {
+         return Template.MULTISIG;
+      }
+      return Template.NONE;
+   }
+
+   /**
+    * Match an input script against the input templates. Coinbase inputs are
+    * recognized by their out point rather than by their script, see
+    * {@link TransactionInput}.
+    *
+    * @param script the buffer holding the script
+    * @param offset the offset of the script in the buffer
+    * @param length the length of the script
+    * @return the matching template or {@link Template#NONE}
+    */
+   public static Template matchInput(byte[] script, int offset, int length) {
+      if (length < 1) {
+         return Template.NONE;
+      }
+      int end = offset + length;
+      int signatureLength = op(script, offset);
+      if (!isDirectPush(signatureLength) || offset + 1 + signatureLength > end) {
+         return Template.NONE;
+      }
+      int keyPush = offset + 1 + signatureLength;
+      if (keyPush == end) {
+         return isPubkeyInputSignature(script, offset + 1, signatureLength) ? Template.PUBKEY_INPUT : Template.NONE;
+      }
+      int keyLength = op(script, keyPush);
+      if (isDirectPush(keyLength) && keyPush + 1 + keyLength == end
+            && isStandardInputSignature(script, offset + 1, signatureLength)) {
+         return Template.STANDARD_INPUT;
+      }
+      return Template.NONE;
+   }
+
+   /**
+    * Get the offset of the address hash of a pay to address or pay to script
+    * hash output. The hash is {@link #HASH_LENGTH} bytes long.
+    */
+   public static int getHashOffset(Template template, int offset) {
+      switch (template) {
+      case PAY_TO_ADDRESS:
+         return offset + 3;
+      case PAY_TO_SCRIPT_HASH:
+         return offset + 2;
+      default:
+         throw new IllegalArgumentException("No hash in " + template);
+      }
+   }
+
+   /**
+    * Get the offset of the signature of a standard or pubkey input. Its
+    * length is the byte before it.
+    */
+   public static int getSignatureOffset(Template template, int offset) {
+      switch (template) {
+      case STANDARD_INPUT:
+      case PUBKEY_INPUT:
+         return offset + 1;
+      default:
+         throw new IllegalArgumentException("No signature in " + template);
+      }
+   }
+
+   /**
+    * Get the offset of the public key of a pay to pubkey output or of a
+    * standard input. Its length is the byte before it.
+    */
+   public static int getPublicKeyOffset(Template template, byte[] script, int offset) {
+      switch (template) {
+      case PAY_TO_PUBKEY:
+         return offset + 1;
+      case STANDARD_INPUT:
+         return offset + 1 + op(script, offset) + 1;
+      default:
+         throw new IllegalArgumentException("No public key in " + template);
+      }
+   }
+
+   /**
+    * Get the number of signatures required by a multisig output
+    */
+   public static int getMultisigThreshold(byte[] script, int offset) {
+      return op(script, offset) - OP_1 + 1;
+   }
+
+   /**
+    * Get the number of public keys of a multisig output
+    */
+   public static int getMultisigKeyCount(byte[] script, int offset, int length) {
+      return op(script, offset + length - 2) - OP_1 + 1;
+   }
+
+   /**
+    * Get the offset of a public key of a multisig output. Its length is the
+    * byte before it.
+    */
+   public static int getMultisigKeyOffset(byte[] script, int offset, int index) {
+      int position = offset + 1;
+      for (int i = 0; i < index; i++) {
+         position += 1 + op(script, position);
+      }
+      return position + 1;
+   }
+
+   /**
+    * Get the length of the data at an offset, which is the push opcode before
+    * it
+    */
+   public static int getDataLength(byte[] script, int dataOffset) {
+      return op(script, dataOffset - 1);
+   }
+
+   private static boolean isMultisig(byte[] script, int offset, int length) {
+      if (length < 3 + 34) {
+         return false;
+      }
+      int end = offset + length;
+      int m = op(script, offset);
+      int n = op(script, end - 2);
+      if (m < OP_1 || m > OP_16 || n < m || n > OP_16 || op(script, end - 1) != Script.OP_CHECKMULTISIG) {
+         return false;
+      }
+      int position = offset + 1;
+      for (int i = OP_1; i <= n; i++) {
+         int keyLength = position < end - 2 ? op(script, position) : 0;
+         if (keyLength != 33 && keyLength != 65) {
+            return false;
+         }
+         position += 1 + keyLength;
+      }
+      return position == end - 2;
+   }
+
+   /**
+    * The signature check of {@link ScriptInputStandard}: a DER sequence of two
+    * integers whose lengths add up, followed by one hash type byte
+    */
+   private static boolean isStandardInputSignature(byte[] script, int offset, int length) {
+      int end = offset + length;
+      if (length < 4 || op(script, offset) != 0x30 || op(script, offset + 2) != 0x02) {
+         return false;
+      }
+      int sequenceLength = op(script, offset + 1);
+      int length1 = op(script, offset + 3);
+      int type2 = offset + 4 + length1;
+      if (type2 + 2 > end || op(script, type2) != 0x02) {
+         return false;
+      }
+      int length2 = op(script, type2 + 1);
+      return 2 + length1 + 2 + length2 == sequenceLength && type2 + 2 + length2 + 1 == end;
+   }
+
+   /**
+    * The signature check of {@link ScriptInputPubKey}: a DER sequence of two
+    * integers followed by the hash type SIGHASH_ALL
+    */
+   private static boolean isPubkeyInputSignature(byte[] script, int offset, int length) {
+      int end = offset + length;
+      if (length < 4 || op(script, offset) != 0x30 || op(script, offset + 1) > length - 2
+            || op(script, offset + 2) != 0x02) {
+         return false;
+      }
+      int length1 = op(script, offset + 3);
+      int type2 = offset + 4 + length1;
+      if (type2 + 2 > end || op(script, type2) != 0x02) {
+         return false;
+      }
+      int length2 = op(script, type2 + 1);
+      return type2 + 2 + length2 + 1 == end && op(script, end - 1) == 0x01;
+   }
+
+   private static boolean isDirectPush(int opcode) {
+      return opcode > 0 && opcode < Script.OP_PUSHDATA1;
+   }
+
+   private static int op(byte[] script, int index) {
+      return script[index] & 0xFF;
+   }
+
+}
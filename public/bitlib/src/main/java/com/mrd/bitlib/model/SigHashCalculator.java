@@ -0,0 +1,117 @@
+/*
+ * Copyright 2013 Megion Research & Development GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mrd.bitlib.model;
+
+import com.mrd.bitlib.util.ByteWriter;
+import com.mrd.bitlib.util.HashingByteSink;
+import com.mrd.bitlib.util.Sha256Hash;
+
+/**
+ * Calculates the SIGHASH_ALL signature hashes of the inputs of a transaction.
+ * <p>
+ * The message signed for input i is the transaction with the script of input
+ * i replaced by the connected output script and all other input scripts
+ * removed. These messages only differ in one input, so the inputs without
+ * scripts, the outputs and the lock time are serialized once. The hash of the
+ * part before input i is kept as a midstate, which is extended by one input
+ * when the next input is hashed, so hashing the inputs in order only hashes
+ * each prefix once.
+ * <p>
+ * Instances are not thread safe.
+ */
+public class SigHashCalculator {
+
+   public static final int SIGHASH_ALL = 1;
+
+   private final Transaction _transaction;
+   // All inputs without scripts followed by the outputs, lock time and hash
+   // type
+   private final byte[] _blankInputsAndTail;
+   // The offset of each input in _blankInputsAndTail, and the offset of the
+   // tail as the last element
+   private final int[] _inputOffsets;
+   private final HashingByteSink _header;
+   private HashingByteSink _prefix;
+   private int _prefixInputs;
+
+   public SigHashCalculator(Transaction transaction) {
+      _transaction = transaction;
+      TransactionInput[] inputs = transaction.inputs;
+      ByteWriter writer = new ByteWriter(1024);
+      _inputOffsets = new int[inputs.length + 1];
+      for (int i = 0; i < inputs.length; i++) {
+         _inputOffsets[i] = writer.length();
+         writer.putSha256Hash(inputs[i].outPoint.hash, true);
+         writer.putIntLE(inputs[i].outPoint.index);
+         writer.putCompactInt(0);
+         writer.putIntLE(inputs[i].sequence);
+      }
+      _inputOffsets[inputs.length] = writer.length();
+      writer.putCompactInt(transaction.outputs.length);
+      for (TransactionOutput output : transaction.outputs) {
+         output.toByteWriter(writer);
+      }
+      writer.putIntLE(transaction.lockTime);
+      writer.putIntLE(SIGHASH_ALL);
+      _blankInputsAndTail = writer.toBytes();
+
+      _header = new HashingByteSink();
+      _header.putIntLE(transaction.version);
+      _header.putCompactInt(inputs.length);
+      _prefix = new HashingByteSink(_header);
+      _prefixInputs = 0;
+   }
+
+   /**
+    * Calculate the hash to sign for an input. Calculating the hashes in input
+    * order is fastest.
+    *
+    * @param index
+    *           the index of the input
+    * @param connectedScript
+    *           the output script that the input spends
+    * @return the hash to sign, not reversed
+    */
+   public Sha256Hash getSigHash(int index, ScriptOutput connectedScript) {
+      if (index < 0 || index >= _transaction.inputs.length) {
+         throw new IllegalArgumentException("Input index out of range: " + index);
+      }
+      // Move the prefix midstate to just before the input
+      if (index < _prefixInputs) {
+         _prefix = new HashingByteSink(_header);
+         _prefixInputs = 0;
+      }
+      if (index > _prefixInputs) {
+         int from = _inputOffsets[_prefixInputs];
+         _prefix.putBytes(_blankInputsAndTail, from, _inputOffsets[index] - from);
+         _prefixInputs = index;
+      }
+
+      HashingByteSink sink = new HashingByteSink(_prefix);
+      TransactionInput input = _transaction.inputs[index];
+      byte[] script = connectedScript.getScriptBytes();
+      sink.putSha256Hash(input.outPoint.hash, true);
+      sink.putIntLE(input.outPoint.index);
+      sink.putCompactInt(script.length);
+      sink.putBytes(script);
+      sink.putIntLE(input.sequence);
+      int from = _inputOffsets[index + 1];
+      sink.putBytes(_blankInputsAndTail, from, _blankInputsAndTail.length - from);
+      return sink.getDoubleSha256Hash();
+   }
+
+}
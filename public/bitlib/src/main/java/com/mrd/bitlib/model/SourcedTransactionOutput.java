@@ -23,6 +23,7 @@ import java.util.Set;
 import com.mrd.bitlib.model.Script.ScriptParsingException;
 import com.mrd.bitlib.util.ByteReader;
 import com.mrd.bitlib.util.ByteReader.InsufficientBytesException;
+import com.mrd.bitlib.util.ByteSink;
 import com.mrd.bitlib.util.ByteWriter;
 
 public class SourcedTransactionOutput implements Serializable {
@@ -61,7 +62,7 @@ public class SourcedTransactionOutput implements Serializable {
       return writer.toBytes();
    }
 
-   public void toByteWriter(ByteWriter writer) {
+   public void toByteWriter(ByteSink writer) {
       outPoint.toByteWriter(writer);
       writer.putLongLE(value);
       writer.putBytes(address.getAllAddressBytes());
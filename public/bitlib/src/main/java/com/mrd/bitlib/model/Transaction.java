@@ -21,8 +21,9 @@ import java.io.Serializable;
 import com.mrd.bitlib.model.TransactionInput.TransactionInputParsingException;
 import com.mrd.bitlib.model.TransactionOutput.TransactionOutputParsingException;
 import com.mrd.bitlib.util.ByteReader;
+import com.mrd.bitlib.util.ByteSink;
 import com.mrd.bitlib.util.ByteWriter;
-import com.mrd.bitlib.util.HashUtils;
+import com.mrd.bitlib.util.HashingByteSink;
 import com.mrd.bitlib.util.Sha256Hash;
 import com.mrd.bitlib.util.ByteReader.InsufficientBytesException;
 
@@ -96,7 +97,7 @@ public class Transaction implements Serializable {
       return writer.toBytes();
    }
 
-   public void toByteWriter(ByteWriter writer) {
+   public void toByteWriter(ByteSink writer) {
       writer.putIntLE(version);
       writer.putCompactInt(inputs.length);
       for (TransactionInput input : inputs) {
@@ -118,9 +119,9 @@ public class Transaction implements Serializable {
 
    public Sha256Hash getHash() {
       if (_hash == null) {
-         ByteWriter writer = new ByteWriter(2000);
-         toByteWriter(writer);
-         _hash = HashUtils.doubleSha256(writer.toBytes()).reverse();
+         HashingByteSink sink = new HashingByteSink();
+         toByteWriter(sink);
+         _hash = sink.getDoubleSha256Hash().reverse();
       }
       return _hash;
    }
@@ -131,15 +132,15 @@ public class Transaction implements Serializable {
     */
    public Sha256Hash getUmnalleableHash() {
       if (_unmalleableHash == null) {
-         ByteWriter writer = new ByteWriter(2000);
+         HashingByteSink sink = new HashingByteSink();
          for (TransactionInput i : inputs) {
             byte[] bytes = i.getUnmalleableBytes();
             if (bytes == null) {
                return null;
             }
-            writer.putBytes(bytes);
+            sink.putBytes(bytes);
          }
-         _unmalleableHash = HashUtils.doubleSha256(writer.toBytes()).reverse();
+         _unmalleableHash = sink.getDoubleSha256Hash().reverse();
       }
       return _unmalleableHash;
    }
@@ -21,6 +21,7 @@ import java.io.Serializable;
 import com.mrd.bitlib.model.Script.ScriptParsingException;
 import com.mrd.bitlib.util.ByteReader;
 import com.mrd.bitlib.util.ByteReader.InsufficientBytesException;
+import com.mrd.bitlib.util.ByteSink;
 import com.mrd.bitlib.util.ByteWriter;
 import com.mrd.bitlib.util.HexUtils;
 import com.mrd.bitlib.util.Sha256Hash;
@@ -86,7 +87,7 @@ public class TransactionInput implements Serializable {
       return script;
    }
 
-   public void toByteWriter(ByteWriter writer) {
+   public void toByteWriter(ByteSink writer) {
       writer.putSha256Hash(outPoint.hash, true);
       writer.putIntLE(outPoint.index);
       byte[] script = getScript().getScriptBytes();
@@ -20,6 +20,7 @@ import java.io.Serializable;
 
 import com.mrd.bitlib.util.ByteReader;
 import com.mrd.bitlib.util.ByteReader.InsufficientBytesException;
+import com.mrd.bitlib.util.ByteSink;
 import com.mrd.bitlib.util.ByteWriter;
 import com.mrd.bitlib.util.HexUtils;
 
@@ -64,7 +65,7 @@ public class TransactionOutput implements Serializable {
       return writer.toBytes();
    }
 
-   public void toByteWriter(ByteWriter writer) {
+   public void toByteWriter(ByteSink writer) {
       writer.putLongLE(value);
       byte[] scriptBytes = script.getScriptBytes();
       writer.putCompactInt(scriptBytes.length);
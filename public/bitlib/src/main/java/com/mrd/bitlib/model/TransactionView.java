@@ -0,0 +1,272 @@
+/*
+ * Copyright 2013 Megion Research & Development GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mrd.bitlib.model;
+
+import com.mrd.bitlib.model.Transaction.TransactionParsingException;
+import com.mrd.bitlib.model.TransactionInput.TransactionInputParsingException;
+import com.mrd.bitlib.model.TransactionOutput.TransactionOutputParsingException;
+import com.mrd.bitlib.util.BitUtils;
+import com.mrd.bitlib.util.ByteReader;
+import com.mrd.bitlib.util.ByteReader.InsufficientBytesException;
+import com.mrd.bitlib.util.ByteSink;
+import com.mrd.bitlib.util.HashUtils;
+import com.mrd.bitlib.util.Sha256Hash;
+
+/**
+ * A read only view of a serialized transaction that is parsed on demand.
+ * <p>
+ * Creating a view only locates the inputs and outputs in the serialized
+ * bytes, which are not copied. The transaction hash is calculated from these
+ * bytes directly, and inputs, outputs and scripts are only decoded when they
+ * are accessed. Use {@link #toTransaction} to get a fully parsed
+ * {@link Transaction}.
+ * <p>
+ * The bytes must not be modified while the view is in use.
+ */
+public class TransactionView {
+
+   // The smallest possible serialized input and output
+   private static final int MIN_INPUT_SIZE = 32 + 4 + 1 + 4;
+   private static final int MIN_OUTPUT_SIZE = 8 + 1;
+
+   private final byte[] _buf;
+   private final int _offset;
+   private final int _length;
+   // The offset of each input and of the output count that follows them
+   private final int[] _inputOffsets;
+   // The offset of each output and of the lock time that follows them
+   private final int[] _outputOffsets;
+   private Sha256Hash _hash;
+   private TransactionInput[] _inputs;
+   private TransactionOutput[] _outputs;
+
+   /**
+    * Create a view of a serialized transaction that takes up a whole array
+    */
+   public static TransactionView fromBytes(byte[] bytes) throws TransactionParsingException {
+      return fromBytes(bytes, 0, bytes.length);
+   }
+
+   /**
+    * Create a view of a serialized transaction of length bytes at offset
+    */
+   public static TransactionView fromBytes(byte[] buf, int offset, int length) throws TransactionParsingException {
+      if (offset < 0 || length < 0 || offset + length > buf.length) {
+         throw new IllegalArgumentException("Invalid range");
+      }
+      try {
+         ByteReader reader = new ByteReader(buf, offset);
+         int end = offset + length;
+         reader.skip(4); // version
+         int[] inputOffsets = skipItems(reader, end, MIN_INPUT_SIZE, 32 + 4, 4);
+         int[] outputOffsets = skipItems(reader, end, MIN_OUTPUT_SIZE, 8, 0);
+         reader.skip(4); // lock time
+         if (reader.getPosition() != end) {
+            throw new TransactionParsingException("Transaction length mismatch");
+         }
+         return new TransactionView(buf, offset, length, inputOffsets, outputOffsets);
+      } catch (InsufficientBytesException e) {
+         throw new TransactionParsingException(e.getMessage());
+      }
+   }
+
+   /**
+    * Skip a count followed by that many items of a fixed part, a script and
+    * another fixed part, and return the offset of each item followed by the
+    * offset after the last item
+    */
+   private static int[] skipItems(ByteReader reader, int end, int minSize, int before, int after)
+         throws InsufficientBytesException, TransactionParsingException {
+      long count = reader.getCompactInt();
+      if (count < 0 || count > (end - reader.getPosition()) / minSize) {
+         throw new TransactionParsingException("Invalid item count: " + count);
+      }
+      int[] offsets = new int[(int) count + 1];
+      for (int i = 0; i < count; i++) {
+         offsets[i] = reader.getPosition();
+         reader.skip(before);
+         long scriptSize = reader.getCompactInt();
+         if (scriptSize < 0 || scriptSize > end - reader.getPosition()) {
+            throw new TransactionParsingException("Invalid script size: " + scriptSize);
+         }
+         reader.skip((int) scriptSize + after);
+         if (reader.getPosition() > end) {
+            throw new InsufficientBytesException();
+         }
+      }
+      offsets[(int) count] = reader.getPosition();
+      return offsets;
+   }
+
+   private TransactionView(byte[] buf, int offset, int length, int[] inputOffsets, int[] outputOffsets) {
+      _buf = buf;
+      _offset = offset;
+      _length = length;
+      _inputOffsets = inputOffsets;
+      _outputOffsets = outputOffsets;
+   }
+
+   /**
+    * Get the transaction hash, calculated from the serialized bytes
+    */
+   public Sha256Hash getHash() {
+      if (_hash == null) {
+         _hash = HashUtils.doubleSha256(_buf, _offset, _length).reverse();
+      }
+      return _hash;
+   }
+
+   public int getVersion() {
+      return readIntLE(_offset);
+   }
+
+   public int getLockTime() {
+      return readIntLE(_offset + _length - 4);
+   }
+
+   public int getLength() {
+      return _length;
+   }
+
+   public int getInputCount() {
+      return _inputOffsets.length - 1;
+   }
+
+   public int getOutputCount() {
+      return _outputOffsets.length - 1;
+   }
+
+   /**
+    * Get an input, parsing it on first access
+    */
+   public TransactionInput getInput(int index) throws TransactionParsingException {
+      if (_inputs == null) {
+         _inputs = new TransactionInput[getInputCount()];
+      }
+      if (_inputs[index] == null) {
+         try {
+            _inputs[index] = TransactionInput.fromByteReader(new ByteReader(_buf, _inputOffsets[index]));
+         } catch (TransactionInputParsingException e) {
+            throw new TransactionParsingException("Unable to parse tranaction input at index " + index + ": "
+                  + e.getMessage());
+         }
+      }
+      return _inputs[index];
+   }
+
+   /**
+    * Get an output, parsing it on first access
+    */
+   public TransactionOutput getOutput(int index) throws TransactionParsingException {
+      if (_outputs == null) {
+         _outputs = new TransactionOutput[getOutputCount()];
+      }
+      if (_outputs[index] == null) {
+         try {
+            _outputs[index] = TransactionOutput.fromByteReader(new ByteReader(_buf, _outputOffsets[index]));
+         } catch (TransactionOutputParsingException e) {
+            throw new TransactionParsingException("Unable to parse tranaction output at index " + index + ": "
+                  + e.getMessage());
+         }
+      }
+      return _outputs[index];
+   }
+
+   /**
+    * Get the value of an output without parsing its script
+    */
+   public long getOutputValue(int index) {
+      int offset = _outputOffsets[index];
+      return (readIntLE(offset) & 0xFFFFFFFFL) | ((long) readIntLE(offset + 4) << 32);
+   }
+
+   /**
+    * Get the script bytes of an output without parsing the script
+    */
+   public byte[] getOutputScriptBytes(int index) {
+      ByteReader reader = new ByteReader(_buf, _outputOffsets[index] + 8);
+      try {
+         int scriptSize = (int) reader.getCompactInt();
+         return reader.getBytes(scriptSize);
+      } catch (InsufficientBytesException e) {
+         // The layout was checked when the view was created
+         throw new RuntimeException(e);
+      }
+   }
+
+   /**
+    * Match the script of an output against the standard output templates
+    * without copying or parsing it
+    */
+   public ScriptTemplateMatcher.Template getOutputTemplate(int index) {
+      ByteReader reader = new ByteReader(_buf, _outputOffsets[index] + 8);
+      try {
+         int scriptSize = (int) reader.getCompactInt();
+         return ScriptTemplateMatcher.matchOutput(_buf, reader.getPosition(), scriptSize);
+      } catch (InsufficientBytesException e) {
+         // The layout was checked when the view was created
+         throw new RuntimeException(e);
+      }
+   }
+
+   /**
+    * Parse the whole transaction
+    */
+   public Transaction toTransaction() throws TransactionParsingException {
+      return Transaction.fromByteReader(new ByteReader(_buf, _offset));
+   }
+
+   /**
+    * Get a copy of the serialized transaction
+    */
+   public byte[] toBytes() {
+      return BitUtils.copyOfRange(_buf, _offset, _offset + _length);
+   }
+
+   public void toByteWriter(ByteSink writer) {
+      writer.putBytes(_buf, _offset, _length);
+   }
+
+   private int readIntLE(int offset) {
+      return (_buf[offset] & 0xFF) | ((_buf[offset + 1] & 0xFF) << 8) | ((_buf[offset + 2] & 0xFF) << 16)
+            | ((_buf[offset + 3] & 0xFF) << 24);
+   }
+
+   @Override
+   public String toString() {
+      StringBuilder sb = new StringBuilder();
+      sb.append(getHash()).append(" in: ").append(getInputCount()).append(" out: ").append(getOutputCount());
+      return sb.toString();
+   }
+
+   @Override
+   public int hashCode() {
+      return getHash().hashCode();
+   }
+
+   @Override
+   public boolean equals(Object other) {
+      if (other == this) {
+         return true;
+      }
+      if (!(other instanceof TransactionView)) {
+         return false;
+      }
+      return getHash().equals(((TransactionView) other).getHash());
+   }
+
+}
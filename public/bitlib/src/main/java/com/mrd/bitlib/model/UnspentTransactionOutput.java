@@ -20,6 +20,7 @@ import java.io.Serializable;
 
 import com.mrd.bitlib.model.Script.ScriptParsingException;
 import com.mrd.bitlib.util.ByteReader;
+import com.mrd.bitlib.util.ByteSink;
 import com.mrd.bitlib.util.ByteWriter;
 import com.mrd.bitlib.util.ByteReader.InsufficientBytesException;
 
@@ -53,7 +54,7 @@ public class UnspentTransactionOutput implements Serializable {
       return writer.toBytes();
    }
 
-   public void toByteWriter(ByteWriter writer) {
+   public void toByteWriter(ByteSink writer) {
       outPoint.toByteWriter(writer);
       writer.putIntLE(height);
       writer.putLongLE(value);
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2013 Megion Research & Development GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mrd.bitlib.util;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import com.mrd.bitlib.model.CompactInt;
+
+/**
+ * A byte sink that writes into a {@link ByteBuffer}, which may be a heap,
+ * direct or memory mapped buffer.
+ * <p>
+ * Unlike {@link ByteWriter} the buffer does not grow, so objects can be
+ * serialized straight into a network buffer or a mapped file without
+ * intermediate copies. Writing more than fits throws
+ * {@link BufferOverflowException}.
+ */
+public final class ByteBufferWriter implements ByteSink {
+
+   private final ByteBuffer _buf;
+   private final int _start;
+
+   /**
+    * Create a writer that writes into a buffer from its current position. The
+    * position and byte order of the buffer are not changed.
+    */
+   public ByteBufferWriter(ByteBuffer buf) {
+      _buf = buf.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+      _start = buf.position();
+   }
+
+   /**
+    * Create a writer with a new heap buffer
+    */
+   public static ByteBufferWriter allocate(int capacity) {
+      return new ByteBufferWriter(ByteBuffer.allocate(capacity));
+   }
+
+   /**
+    * Create a writer with a new direct buffer
+    */
+   public static ByteBufferWriter allocateDirect(int capacity) {
+      return new ByteBufferWriter(ByteBuffer.allocateDirect(capacity));
+   }
+
+   @Override
+   public void put(byte b) {
+      _buf.put(b);
+   }
+
+   @Override
+   public void putBoolean(boolean b) {
+      put(b ? (byte) 1 : (byte) 0);
+   }
+
+   @Override
+   public void putShortLE(short value) {
+      _buf.putShort(value);
+   }
+
+   @Override
+   public void putIntLE(int value) {
+      _buf.putInt(value);
+   }
+
+   @Override
+   public void putIntBE(int value) {
+      _buf.putInt(Integer.reverseBytes(value));
+   }
+
+   @Override
+   public void putLongLE(long value) {
+      _buf.putLong(value);
+   }
+
+   @Override
+   public void putLongBE(long value) {
+      _buf.putLong(Long.reverseBytes(value));
+   }
+
+   @Override
+   public void putBytes(byte[] value) {
+      _buf.put(value);
+   }
+
+   @Override
+   public void putBytes(byte[] value, int offset, int length) {
+      _buf.put(value, offset, length);
+   }
+
+   /**
+    * Write the remaining bytes of a buffer without changing its position
+    */
+   public void putBytes(ByteBuffer value) {
+      _buf.put(value.duplicate());
+   }
+
+   @Override
+   public void putCompactInt(long value) {
+      CompactInt.toByteBuffer(value, _buf);
+   }
+
+   @Override
+   public void putSha256Hash(Sha256Hash hash) {
+      putBytes(hash.getBytes());
+   }
+
+   @Override
+   public void putSha256Hash(Sha256Hash hash, boolean reverse) {
+      if (reverse) {
+         byte[] bytes = hash.getBytes();
+         if (_buf.remaining() < bytes.length) {
+            throw new BufferOverflowException();
+         }
+         for (int i = bytes.length - 1; i >= 0; i--) {
+            _buf.put(bytes[i]);
+         }
+      } else {
+         putBytes(hash.getBytes());
+      }
+   }
+
+   @Override
+   public void putString(String s) {
+      byte[] bytes = s.getBytes();
+      putIntLE(bytes.length);
+      putBytes(bytes);
+   }
+
+   @Override
+   public int length() {
+      return _buf.position() - _start;
+   }
+
+   /**
+    * Get a read only view of the bytes written so far without copying them
+    */
+   public ByteBuffer toByteBuffer() {
+      ByteBuffer view = _buf.duplicate();
+      view.limit(_buf.position());
+      view.position(_start);
+      return view.slice().asReadOnlyBuffer();
+   }
+
+   /**
+    * Get a copy of the bytes written so far
+    */
+   public byte[] toBytes() {
+      byte[] bytes = new byte[length()];
+      toByteBuffer().get(bytes);
+      return bytes;
+   }
+
+}
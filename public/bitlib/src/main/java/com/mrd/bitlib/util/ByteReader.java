@@ -16,8 +16,23 @@
 
 package com.mrd.bitlib.util;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
 import com.mrd.bitlib.model.CompactInt;
 
+/**
+ * Reads Bitcoin encoded values from a byte array or a {@link ByteBuffer}.
+ * <p>
+ * Any kind of byte buffer can be read, including direct and memory mapped
+ * buffers, so Transaction, Block and ApiObject parsing can run directly over
+ * network buffers and mapped files. {@link #slice} and {@link #getByteBuffer}
+ * give views of a range without copying it.
+ */
 public class ByteReader {
 
    public static class InsufficientBytesException extends Exception {
@@ -25,22 +40,43 @@ public class ByteReader {
       private static final long serialVersionUID = 1L;
    }
 
-   private byte[] _buf;
-   private int _index;
+   private final ByteBuffer _buf;
 
    public ByteReader(byte[] buf) {
-      _buf = buf;
-      _index = 0;
+      this(buf, 0);
    }
 
    public ByteReader(byte[] buf, int index) {
-      _buf = buf;
-      _index = index;
+      _buf = ByteBuffer.wrap(buf).order(ByteOrder.LITTLE_ENDIAN);
+      _buf.position(index);
+   }
+
+   /**
+    * Create a reader of the remaining bytes of a buffer. The bytes are not
+    * copied, and the position of the buffer is not changed. Positions of the
+    * reader are relative to the position of the buffer.
+    */
+   public ByteReader(ByteBuffer buf) {
+      _buf = buf.slice().order(ByteOrder.LITTLE_ENDIAN);
+   }
+
+   /**
+    * Create a reader of a file that is mapped into memory. The mapping is
+    * released when the reader and all slices of it are garbage collected.
+    */
+   public static ByteReader fromFile(File file) throws IOException {
+      FileInputStream stream = new FileInputStream(file);
+      try {
+         FileChannel channel = stream.getChannel();
+         return new ByteReader(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+      } finally {
+         stream.close();
+      }
    }
 
    public byte get() throws InsufficientBytesException {
       checkAvailable(1);
-      return _buf[_index++];
+      return _buf.get();
    }
 
    public boolean getBoolean() throws InsufficientBytesException {
@@ -49,36 +85,50 @@ public class ByteReader {
 
    public int getShortLE() throws InsufficientBytesException {
       checkAvailable(2);
-      return (((_buf[_index++] & 0xFF) << 0) | ((_buf[_index++] & 0xFF) << 8)) & 0xFFFF;
+      return _buf.getShort() & 0xFFFF;
    }
 
    public int getIntLE() throws InsufficientBytesException {
       checkAvailable(4);
-      return ((_buf[_index++] & 0xFF) << 0) | ((_buf[_index++] & 0xFF) << 8) | ((_buf[_index++] & 0xFF) << 16)
-            | ((_buf[_index++] & 0xFF) << 24);
+      return _buf.getInt();
    }
 
    public int getIntBE() throws InsufficientBytesException {
       checkAvailable(4);
-      return ((_buf[_index++] & 0xFF) << 24) | ((_buf[_index++] & 0xFF) << 16) | ((_buf[_index++] & 0xFF) << 8)
-            | ((_buf[_index++] & 0xFF) << 0);
+      return Integer.reverseBytes(_buf.getInt());
    }
 
    public long getLongLE() throws InsufficientBytesException {
       checkAvailable(8);
-      return ((_buf[_index++] & 0xFFL) << 0) | ((_buf[_index++] & 0xFFL) << 8) | ((_buf[_index++] & 0xFFL) << 16)
-            | ((_buf[_index++] & 0xFFL) << 24) | ((_buf[_index++] & 0xFFL) << 32) | ((_buf[_index++] & 0xFFL) << 40)
-            | ((_buf[_index++] & 0xFFL) << 48) | ((_buf[_index++] & 0xFFL) << 56);
+      return _buf.getLong();
    }
 
    public byte[] getBytes(int size) throws InsufficientBytesException {
       checkAvailable(size);
       byte[] bytes = new byte[size];
-      System.arraycopy(_buf, _index, bytes, 0, size);
-      _index += size;
+      _buf.get(bytes);
       return bytes;
    }
 
+   /**
+    * Get a read only view of the next size bytes without copying them
+    */
+   public ByteBuffer getByteBuffer(int size) throws InsufficientBytesException {
+      checkAvailable(size);
+      ByteBuffer view = _buf.slice();
+      view.limit(size);
+      _buf.position(_buf.position() + size);
+      return view.asReadOnlyBuffer();
+   }
+
+   /**
+    * Get a reader of the next size bytes without copying them. Positions of
+    * the returned reader start at zero.
+    */
+   public ByteReader slice(int size) throws InsufficientBytesException {
+      return new ByteReader(getByteBuffer(size));
+   }
+
    public String getString() throws InsufficientBytesException {
       int length = getIntLE();
       byte[] bytes = getBytes(length);
@@ -87,11 +137,11 @@ public class ByteReader {
 
    public void skip(int num) throws InsufficientBytesException {
       checkAvailable(num);
-      _index += num;
+      _buf.position(_buf.position() + num);
    }
 
    public void reset() {
-      _index = 0;
+      _buf.position(0);
    }
 
    public long getCompactInt() throws InsufficientBytesException {
@@ -104,19 +154,19 @@ public class ByteReader {
    }
 
    public int getPosition() {
-      return _index;
+      return _buf.position();
    }
 
    public void setPosition(int index) {
-      _index = index;
+      _buf.position(index);
    }
 
    public final int available() {
-      return _buf.length - _index;
+      return _buf.remaining();
    }
 
    private final void checkAvailable(int num) throws InsufficientBytesException {
-      if (_buf.length - _index < num) {
+      if (_buf.remaining() < num) {
          throw new InsufficientBytesException();
       }
    }
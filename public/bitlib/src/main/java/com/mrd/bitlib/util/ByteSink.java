@@ -0,0 +1,60 @@
+/*
+ * Copyright 2013 Megion Research & Development GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.mrd.bitlib.util;
+
+/**
+ * A destination for serialized bytes.
+ * <p>
+ * Objects that serialize themselves into a sink can be written into a buffer
+ * with {@link ByteWriter}, or hashed directly without an intermediate buffer
+ * with {@link HashingByteSink}.
+ */
+public interface ByteSink {
+
+   void put(byte b);
+
+   void putBoolean(boolean b);
+
+   void putShortLE(short value);
+
+   void putIntLE(int value);
+
+   void putIntBE(int value);
+
+   void putLongLE(long value);
+
+   void putLongBE(long value);
+
+   void putBytes(byte[] value);
+
+   void putBytes(byte[] value, int offset, int length);
+
+   void putCompactInt(long value);
+
+   void putSha256Hash(Sha256Hash hash);
+
+   void putSha256Hash(Sha256Hash hash, boolean reverse);
+
+   void putString(String s);
+
+   /**
+    * Get the number of bytes written to this sink
+    */
+   int length();
+
+}
@@ -18,7 +18,7 @@ package com.mrd.bitlib.util;
 
 import com.mrd.bitlib.model.CompactInt;
 
-final public class ByteWriter {
+final public class ByteWriter implements ByteSink {
 
    private byte[] _buf;
    private int _index;
@@ -14,43 +14,73 @@
  * limitations under the License.
  */
 
+
 package com.mrd.bitlib.util;
 
-import com.mrd.bitlib.crypto.digest.RIPEMD160Digest;
+import com.mrd.bitlib.crypto.digest.Hash160Digest;
 
+import java.security.DigestException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
 /**
  * Various hashing utilities used in the Bitcoin system.
+ * <p>
+ * Each thread reuses its own digest instances, so no provider lookup happens
+ * per call. The variants that take an output buffer do not allocate.
  */
 public class HashUtils {
 
    private static final String SHA256 = "SHA-256";
    private static final String SHA512 = "SHA-512";
 
+   public static final int SHA256_LENGTH = 32;
+   public static final int ADDRESS_HASH_LENGTH = 20;
+
+   private static final MessageDigest SHA256_PROTOTYPE = newDigest(SHA256);
+
+   private static final ThreadLocal<MessageDigest> SHA256_DIGEST = new ThreadLocal<MessageDigest>() {
+      @Override
+      protected MessageDigest initialValue() {
+         return newSha256Digest();
+      }
+   };
+
+   private static final ThreadLocal<MessageDigest> SHA512_DIGEST = new ThreadLocal<MessageDigest>() {
+      @Override
+      protected MessageDigest initialValue() {
+         return newDigest(SHA512);
+      }
+   };
+
+   private static final ThreadLocal<Hash160Digest> HASH160_DIGEST = new ThreadLocal<Hash160Digest>() {
+      @Override
+      protected Hash160Digest initialValue() {
+         return new Hash160Digest();
+      }
+   };
+
    public static Sha256Hash sha256(byte[] data) {
-      MessageDigest digest;
-      digest = getSha256Digest();
-      digest.update(data, 0, data.length);
-      return Sha256Hash.of(digest.digest());
+      byte[] out = new byte[SHA256_LENGTH];
+      sha256(data, 0, data.length, out, 0);
+      return new Sha256Hash(out);
    }
 
    public static Sha256Hash sha256(byte[] data1, byte[] data2) {
-      MessageDigest digest;
-      digest = getSha256Digest();
+      MessageDigest digest = getSha256Digest();
       digest.update(data1, 0, data1.length);
       digest.update(data2, 0, data2.length);
       return new Sha256Hash(digest.digest());
-
    }
 
-   private static MessageDigest getSha256Digest() {
-      try {
-         return MessageDigest.getInstance(SHA256);
-      } catch (NoSuchAlgorithmException e) {
-         throw new RuntimeException(e); //cannot happen
-      }
+   /**
+    * Calculate the SHA-256 of length bytes of data at offset into out at
+    * outOffset
+    */
+   public static void sha256(byte[] data, int offset, int length, byte[] out, int outOffset) {
+      MessageDigest digest = getSha256Digest();
+      digest.update(data, offset, length);
+      finish(digest, out, outOffset);
    }
 
    public static Sha256Hash doubleSha256(byte[] data) {
@@ -58,44 +88,45 @@ public class HashUtils {
    }
 
    public static Sha256Hash doubleSha256TwoBuffers(byte[] data1, byte[] data2) {
-      MessageDigest digest;
-      digest = getSha256Digest();
+      MessageDigest digest = getSha256Digest();
       digest.update(data1, 0, data1.length);
       digest.update(data2, 0, data2.length);
-      return new Sha256Hash(digest.digest(digest.digest()));
-
+      byte[] out = new byte[SHA256_LENGTH];
+      finish(digest, out, 0);
+      digest.update(out, 0, SHA256_LENGTH);
+      finish(digest, out, 0);
+      return new Sha256Hash(out);
    }
 
    public static Sha256Hash doubleSha256(byte[] data, int offset, int length) {
-      MessageDigest digest;
-      digest = getSha256Digest();
-      digest.update(data, offset, length);
-      return new Sha256Hash(digest.digest(digest.digest()));
+      byte[] out = new byte[SHA256_LENGTH];
+      doubleSha256(data, offset, length, out, 0);
+      return new Sha256Hash(out);
+   }
 
+   /**
+    * Calculate the double SHA-256 of length bytes of data at offset into out at
+    * outOffset. The output may overlap the input.
+    */
+   public static void doubleSha256(byte[] data, int offset, int length, byte[] out, int outOffset) {
+      MessageDigest digest = getSha256Digest();
+      digest.update(data, offset, length);
+      finish(digest, out, outOffset);
+      digest.update(out, outOffset, SHA256_LENGTH);
+      finish(digest, out, outOffset);
    }
 
    public static Sha512Hash sha512(byte[] data) {
-      MessageDigest digest;
-      digest = getSha512Digest();
+      MessageDigest digest = getSha512Digest();
       digest.update(data, 0, data.length);
       return Sha512Hash.of(digest.digest());
    }
 
    public static Sha512Hash sha512(byte[] data1, byte[] data2) {
-      MessageDigest digest;
-      digest = getSha512Digest();
+      MessageDigest digest = getSha512Digest();
       digest.update(data1, 0, data1.length);
       digest.update(data2, 0, data2.length);
       return new Sha512Hash(digest.digest());
-
-   }
-
-   private static MessageDigest getSha512Digest() {
-      try {
-         return MessageDigest.getInstance(SHA512);
-      } catch (NoSuchAlgorithmException e) {
-         throw new RuntimeException(e); //cannot happen
-      }
    }
 
    /**
@@ -106,12 +137,66 @@ public class HashUtils {
     * @return The Bitcoin address as an array of bytes.
     */
    public static byte[] addressHash(byte[] pubkeyBytes) {
-      byte[] sha256 = getSha256Digest().digest(pubkeyBytes);
-      byte[] out = new byte[20];
-      RIPEMD160Digest ripeMD160 = new RIPEMD160Digest();
-      ripeMD160.update(sha256, 0, sha256.length);
-      ripeMD160.doFinal(out, 0); // This also resets the hash function for
-      // next use
+      byte[] out = new byte[ADDRESS_HASH_LENGTH];
+      addressHash(pubkeyBytes, 0, pubkeyBytes.length, out, 0);
       return out;
    }
+
+   /**
+    * Calculate the RipeMd160 value of the SHA-256 of length bytes of data at
+    * offset into out at outOffset
+    */
+   public static void addressHash(byte[] data, int offset, int length, byte[] out, int outOffset) {
+      HASH160_DIGEST.get().hash(data, offset, length, out, outOffset);
+   }
+
+   /**
+    * Calculate the address hashes of count public keys of keyLength bytes each
+    * laid out contiguously in keys from offset. The hash of key i is written to
+    * out at outOffset + i * {@link #ADDRESS_HASH_LENGTH}.
+    */
+   public static void addressHashes(byte[] keys, int offset, int keyLength, int count, byte[] out, int outOffset) {
+      HASH160_DIGEST.get().hashAll(keys, offset, keyLength, count, out, outOffset);
+   }
+
+   /**
+    * Get a new SHA-256 digest. This is faster than looking it up through the
+    * security providers.
+    */
+   static MessageDigest newSha256Digest() {
+      try {
+         return (MessageDigest) SHA256_PROTOTYPE.clone();
+      } catch (CloneNotSupportedException e) {
+         return newDigest(SHA256);
+      }
+   }
+
+   private static MessageDigest getSha256Digest() {
+      MessageDigest digest = SHA256_DIGEST.get();
+      digest.reset();
+      return digest;
+   }
+
+   private static MessageDigest getSha512Digest() {
+      MessageDigest digest = SHA512_DIGEST.get();
+      digest.reset();
+      return digest;
+   }
+
+   private static MessageDigest newDigest(String algorithm) {
+      try {
+         return MessageDigest.getInstance(algorithm);
+      } catch (NoSuchAlgorithmException e) {
+         throw new RuntimeException(e); //cannot happen
+      }
+   }
+
+   private static void finish(MessageDigest digest, byte[] out, int outOffset) {
+      try {
+         digest.digest(out, outOffset, SHA256_LENGTH);
+      } catch (DigestException e) {
+         // Only happens if the output buffer is too small
+         throw new IllegalArgumentException(e);
+      }
+   }
 }
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2013 Megion Research & Development GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.mrd.bitlib.util;
+
+import java.security.MessageDigest;
+
+/**
+ * A byte sink that feeds everything written to it into a SHA-256 digest.
+ * <p>
+ * Serializing an object into this sink calculates its hash without building
+ * the serialized form in memory. Small writes are collected in a short buffer
+ * before they are passed to the digest. Instances are not thread safe, and can
+ * be reused after the hash has been taken.
+ */
+public final class HashingByteSink implements ByteSink {
+
+   private static final int BUFFER_SIZE = 256;
+
+   private final MessageDigest _digest;
+   private final byte[] _buf;
+   private int _index;
+   private int _length;
+
+   public HashingByteSink() {
+      _digest = HashUtils.newSha256Digest();
+      _buf = new byte[BUFFER_SIZE];
+   }
+
+   /**
+    * Create a sink that continues from the state of another sink. This allows
+    * hashing a common prefix once for several messages.
+    */
+   public HashingByteSink(HashingByteSink other) {
+      try {
+         _digest = (MessageDigest) other._digest.clone();
+      } catch (CloneNotSupportedException e) {
+         // Only happens if the security provider cannot clone digests
+         throw new RuntimeException(e);
+      }
+      _buf = new byte[BUFFER_SIZE];
+      System.arraycopy(other._buf, 0, _buf, 0, other._index);
+      _index = other._index;
+      _length = other._length;
+   }
+
+   private void ensureCapacity(int capacity) {
+      if (_buf.length - _index < capacity) {
+         flush();
+      }
+   }
+
+   private void flush() {
+      _digest.update(_buf, 0, _index);
+      _index = 0;
+   }
+
+   @Override
+   public void put(byte b) {
+      ensureCapacity(1);
+      _buf[_index++] = b;
+      _length++;
+   }
+
+   @Override
+   public void putBoolean(boolean b) {
+      put(b ? (byte) 1 : (byte) 0);
+   }
+
+   @Override
+   public void putShortLE(short value) {
+      ensureCapacity(2);
+      _buf[_index++] = (byte) (0xFF & (value >> 0));
+      _buf[_index++] = (byte) (0xFF & (value >> 8));
+      _length += 2;
+   }
+
+   @Override
+   public void putIntLE(int value) {
+      ensureCapacity(4);
+      _buf[_index++] = (byte) (0xFF & (value >> 0));
+      _buf[_index++] = (byte) (0xFF & (value >> 8));
+      _buf[_index++] = (byte) (0xFF & (value >> 16));
+      _buf[_index++] = (byte) (0xFF & (value >> 24));
+      _length += 4;
+   }
+
+   @Override
+   public void putIntBE(int value) {
+      ensureCapacity(4);
+      _buf[_index++] = (byte) (0xFF & (value >> 24));
+      _buf[_index++] = (byte) (0xFF & (value >> 16));
+      _buf[_index++] = (byte) (0xFF & (value >> 8));
+      _buf[_index++] = (byte) (0xFF & (value >> 0));
+      _length += 4;
+   }
+
+   @Override
+   public void putLongLE(long value) {
+      putIntLE((int) value);
+      putIntLE((int) (value >>> 32));
+   }
+
+   @Override
+   public void putLongBE(long value) {
+      putIntBE((int) (value >>> 32));
+      putIntBE((int) value);
+   }
+
+   @Override
+   public void putBytes(byte[] value) {
+      putBytes(value, 0, value.length);
+   }
+
+   @Override
+   public void putBytes(byte[] value, int offset, int length) {
+      if (length <= _buf.length - _index) {
+         System.arraycopy(value, offset, _buf, _index, length);
+         _index += length;
+      } else {
+         // Too large for the buffer, pass it on directly
+         flush();
+         _digest.update(value, offset, length);
+      }
+      _length += length;
+   }
+
+   @Override
+   public void putCompactInt(long value) {
+      if (value >= 0 && value < 253) {
+         put((byte) value);
+      } else if (value >= 0 && value < 65536) {
+         put((byte) 253);
+         putShortLE((short) value);
+      } else if (value >= 0 && value < 4294967295L) {
+         put((byte) 254);
+         putIntLE((int) value);
+      } else {
+         put((byte) 255);
+         putLongLE(value);
+      }
+   }
+
+   @Override
+   public void putSha256Hash(Sha256Hash hash) {
+      putBytes(hash.getBytes());
+   }
+
+   @Override
+   public void putSha256Hash(Sha256Hash hash, boolean reverse) {
+      if (reverse) {
+         byte[] bytes = hash.getBytes();
+         ensureCapacity(bytes.length);
+         for (int i = bytes.length - 1; i >= 0; i--) {
+            _buf[_index++] = bytes[i];
+         }
+         _length += bytes.length;
+      } else {
+         putBytes(hash.getBytes());
+      }
+   }
+
+   @Override
+   public void putString(String s) {
+      byte[] bytes = s.getBytes();
+      putIntLE(bytes.length);
+      putBytes(bytes);
+   }
+
+   @Override
+   public int length() {
+      return _length;
+   }
+
+   /**
+    * Get the SHA-256 hash of the bytes written and reset this sink
+    */
+   public Sha256Hash getSha256Hash() {
+      flush();
+      _length = 0;
+      return new Sha256Hash(_digest.digest());
+   }
+
+   /**
+    * Get the double SHA-256 hash of the bytes written and reset this sink
+    */
+   public Sha256Hash getDoubleSha256Hash() {
+      flush();
+      _length = 0;
+      return new Sha256Hash(_digest.digest(_digest.digest()));
+   }
+
+   /**
+    * Discard the bytes written so far
+    */
+   public void reset() {
+      _digest.reset();
+      _index = 0;
+      _length = 0;
+   }
+
+}
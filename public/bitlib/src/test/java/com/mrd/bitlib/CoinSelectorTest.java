@@ -0,0 +1,135 @@
+package com.mrd.bitlib;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import com.mrd.bitlib.StandardTransactionBuilder.UnsignedTransaction;
+import com.mrd.bitlib.crypto.InMemoryPrivateKey;
+import com.mrd.bitlib.crypto.PrivateKeyRing;
+import com.mrd.bitlib.model.Address;
+import com.mrd.bitlib.model.NetworkParameters;
+import com.mrd.bitlib.model.OutPoint;
+import com.mrd.bitlib.model.ScriptOutput;
+import com.mrd.bitlib.model.ScriptOutputStandard;
+import com.mrd.bitlib.model.UnspentTransactionOutput;
+import com.mrd.bitlib.util.HashUtils;
+import com.mrd.bitlib.util.Sha256Hash;
+
+public class CoinSelectorTest {
+
+   private static final NetworkParameters NETWORK = NetworkParameters.testNetwork;
+   private static final InMemoryPrivateKey KEY = new InMemoryPrivateKey(HashUtils.sha256(new byte[] { 1 }), true);
+   private static final Address ADDRESS = KEY.getPublicKey().toAddress(NETWORK);
+
+   private static UnspentTransactionOutput output(int index, int height, long value) {
+      OutPoint outPoint = new OutPoint(HashUtils.sha256(new byte[] { (byte) (index >> 8), (byte) index }), index);
+      return new UnspentTransactionOutput(outPoint, height, value, new ScriptOutputStandard(
+            ADDRESS.getTypeSpecificBytes()));
+   }
+
+   private static long sum(List<UnspentTransactionOutput> outputs) {
+      long sum = 0;
+      for (UnspentTransactionOutput output : outputs) {
+         sum += output.value;
+      }
+      return sum;
+   }
+
+   @Test
+   public void poolTest() {
+      List<UnspentTransactionOutput> unspent = new ArrayList<UnspentTransactionOutput>();
+      unspent.add(output(0, 10, 300));
+      unspent.add(output(1, -1, 100));
+      unspent.add(output(2, 5, 300));
+      unspent.add(output(3, 5, 200));
+      // Not a standard output
+      unspent.add(new UnspentTransactionOutput(new OutPoint(Sha256Hash.ZERO_HASH, 4), 1, 1000, ScriptOutput
+            .fromScriptBytes(new byte[] { 0x51 })));
+      UnspentOutputPool pool = new UnspentOutputPool(unspent);
+      Assert.assertEquals(4, pool.size());
+      Assert.assertEquals(900, pool.getTotalValue());
+      // Unconfirmed first, ties in the given order
+      Assert.assertEquals(unspent.get(1), pool.getByHeight(0));
+      Assert.assertEquals(unspent.get(2), pool.getByHeight(1));
+      Assert.assertEquals(unspent.get(3), pool.getByHeight(2));
+      Assert.assertEquals(unspent.get(0), pool.getByHeight(3));
+      Assert.assertEquals(unspent.get(0), pool.getByValue(0));
+      Assert.assertEquals(unspent.get(2), pool.getByValue(1));
+      Assert.assertEquals(unspent.get(3), pool.getByValue(2));
+      Assert.assertEquals(unspent.get(1), pool.getByValue(3));
+
+      List<UnspentTransactionOutput> oldest = new OldestFirstCoinSelector().select(pool, 350);
+      Assert.assertEquals(2, oldest.size());
+      Assert.assertEquals(unspent.get(1), oldest.get(0));
+      Assert.assertEquals(unspent.get(2), oldest.get(1));
+      List<UnspentTransactionOutput> largest = new LargestFirstCoinSelector().select(pool, 350);
+      Assert.assertEquals(2, largest.size());
+      Assert.assertEquals(unspent.get(0), largest.get(0));
+      Assert.assertEquals(unspent.get(2), largest.get(1));
+      Assert.assertNull(new OldestFirstCoinSelector().select(pool, 901));
+      Assert.assertNull(new LargestFirstCoinSelector().select(pool, 901));
+      Assert.assertNull(new BranchAndBoundCoinSelector().select(pool, 901));
+   }
+
+   @Test
+   public void branchAndBoundTest() {
+      List<UnspentTransactionOutput> unspent = new ArrayList<UnspentTransactionOutput>();
+      long[] values = { 1000, 700, 700, 500, 300, 300, 60 };
+      for (int i = 0; i < values.length; i++) {
+         unspent.add(output(i, i, values[i]));
+      }
+      UnspentOutputPool pool = new UnspentOutputPool(unspent);
+      BranchAndBoundCoinSelector exact = new BranchAndBoundCoinSelector(0, new LargestFirstCoinSelector());
+      for (long target : new long[] { 60, 360, 1060, 1100, 1360, 2000, 3560 }) {
+         Assert.assertEquals(target, sum(exact.select(pool, target)));
+      }
+      // There is no exact match, so the fallback is used
+      Assert.assertEquals(unspent.subList(0, 1), exact.select(pool, 70));
+      // Within the tolerance
+      BranchAndBoundCoinSelector tolerant = new BranchAndBoundCoinSelector(20, new LargestFirstCoinSelector());
+      long found = sum(tolerant.select(pool, 1045));
+      Assert.assertTrue(found >= 1045 && found <= 1065);
+   }
+
+   @Test
+   public void randomBranchAndBoundTest() {
+      Random random = new Random(1);
+      List<UnspentTransactionOutput> unspent = new ArrayList<UnspentTransactionOutput>();
+      for (int i = 0; i < 200; i++) {
+         unspent.add(output(i, i, 1 + random.nextInt(100000)));
+      }
+      UnspentOutputPool pool = new UnspentOutputPool(unspent);
+      BranchAndBoundCoinSelector selector = new BranchAndBoundCoinSelector(100, new OldestFirstCoinSelector());
+      for (int i = 0; i < 50; i++) {
+         long target = 1 + random.nextInt(2000000);
+         long found = sum(selector.select(pool, target));
+         Assert.assertTrue(found >= target);
+      }
+   }
+
+   @Test
+   public void largeInventoryTest() throws Exception {
+      // Many small outputs used to make selection take quadratic time
+      List<UnspentTransactionOutput> unspent = new ArrayList<UnspentTransactionOutput>();
+      for (int i = 0; i < 30000; i++) {
+         unspent.add(output(i, 30000 - i, 100000 + i));
+      }
+      PrivateKeyRing keyRing = new PrivateKeyRing();
+      keyRing.addPrivateKey(KEY, NETWORK);
+      for (CoinSelector selector : new CoinSelector[] { new OldestFirstCoinSelector(),
+            new LargestFirstCoinSelector(), new BranchAndBoundCoinSelector() }) {
+         StandardTransactionBuilder builder = new StandardTransactionBuilder(NETWORK);
+         builder.setCoinSelector(selector);
+         builder.addOutput(ADDRESS, 2000000L);
+         UnsignedTransaction unsigned = builder.createUnsignedTransaction(unspent, ADDRESS, keyRing, NETWORK);
+         Assert.assertTrue(unsigned.getSignatureInfo().length >= 14);
+         Assert.assertTrue(unsigned.calculateFee() >= TransactionUtils.DEFAULT_MINER_FEE);
+      }
+   }
+
+}
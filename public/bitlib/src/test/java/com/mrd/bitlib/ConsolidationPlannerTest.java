@@ -0,0 +1,116 @@
+package com.mrd.bitlib;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import com.mrd.bitlib.ConsolidationPlanner.Consolidation;
+import com.mrd.bitlib.StandardTransactionBuilder.UnsignedTransaction;
+import com.mrd.bitlib.crypto.InMemoryPrivateKey;
+import com.mrd.bitlib.crypto.PrivateKeyRing;
+import com.mrd.bitlib.crypto.StaticSimpleRandomSource;
+import com.mrd.bitlib.model.Address;
+import com.mrd.bitlib.model.NetworkParameters;
+import com.mrd.bitlib.model.OutPoint;
+import com.mrd.bitlib.model.ScriptOutputStandard;
+import com.mrd.bitlib.model.Transaction;
+import com.mrd.bitlib.model.UnspentTransactionOutput;
+import com.mrd.bitlib.util.HashUtils;
+
+public class ConsolidationPlannerTest {
+
+   private static final NetworkParameters NETWORK = NetworkParameters.testNetwork;
+
+   private static UnspentTransactionOutput output(Address address, int index, long value) {
+      OutPoint outPoint = new OutPoint(HashUtils.sha256(new byte[] { (byte) (index >> 8), (byte) index }), index);
+      return new UnspentTransactionOutput(outPoint, index, value, new ScriptOutputStandard(
+            address.getTypeSpecificBytes()));
+   }
+
+   @Test
+   public void planTest() throws Exception {
+      PrivateKeyRing keyRing = new PrivateKeyRing();
+      Address[] addresses = new Address[3];
+      for (int i = 0; i < addresses.length; i++) {
+         InMemoryPrivateKey key = new InMemoryPrivateKey(HashUtils.sha256(new byte[] { (byte) i }), i != 0);
+         keyRing.addPrivateKey(key, NETWORK);
+         addresses[i] = key.getPublicKey().toAddress(NETWORK);
+      }
+      List<UnspentTransactionOutput> unspent = new ArrayList<UnspentTransactionOutput>();
+      int index = 0;
+      for (int i = 0; i < 130; i++) {
+         unspent.add(output(addresses[0], index++, 20000 + i));
+      }
+      // Dust that costs more to spend than it is worth
+      for (int i = 0; i < 10; i++) {
+         unspent.add(output(addresses[0], index++, 1000));
+      }
+      for (int i = 0; i < 3; i++) {
+         unspent.add(output(addresses[1], index++, 50000));
+      }
+      // A single output cannot be consolidated
+      unspent.add(output(addresses[2], index++, 50000));
+
+      ConsolidationPlanner planner = new ConsolidationPlanner(NETWORK, 5000);
+      List<Consolidation> plan = planner.plan(unspent);
+
+      Set<UnspentTransactionOutput> spent = new HashSet<UnspentTransactionOutput>();
+      long totalFee = 0;
+      for (Consolidation consolidation : plan) {
+         Assert.assertTrue(consolidation.estimatedSize <= 5000);
+         for (UnspentTransactionOutput output : consolidation.funding) {
+            Assert.assertTrue(spent.add(output));
+            Assert.assertEquals(consolidation.address, output.script.getAddress(NETWORK));
+         }
+         totalFee += consolidation.fee;
+
+         UnsignedTransaction unsigned = planner.createUnsignedTransaction(consolidation, keyRing);
+         Assert.assertEquals(consolidation.fee, unsigned.calculateFee());
+         List<byte[]> signatures = StandardTransactionBuilder.generateSignatures(unsigned.getSignatureInfo(),
+               keyRing, new StaticSimpleRandomSource());
+         Transaction t = StandardTransactionBuilder.finalizeTransaction(unsigned, signatures);
+         Assert.assertEquals(1, t.outputs.length);
+         Assert.assertEquals(consolidation.getValue(), t.outputs[0].value);
+         Assert.assertTrue(t.toBytes().length <= consolidation.estimatedSize);
+         Assert.assertTrue(consolidation.fee >= TransactionUtils.calculateFeeRequired(t.toBytes().length));
+      }
+      Assert.assertEquals(130 + 3, spent.size());
+
+      // Filling every transaction up to the limit is not cheaper for the
+      // first address
+      long greedyFee = 0;
+      for (int remaining = 130; remaining > 0; remaining -= 27) {
+         int inputs = Math.min(remaining, 27);
+         greedyFee += TransactionUtils.calculateFeeRequired(TransactionUtils.estimateStandardTransactionSize(inputs,
+               1, 34));
+      }
+      long secondFee = TransactionUtils.calculateFeeRequired(TransactionUtils.estimateStandardTransactionSize(3, 1, 34));
+      Assert.assertEquals(greedyFee + secondFee, totalFee);
+      Assert.assertEquals(6, plan.size());
+   }
+
+   @Test
+   public void oddPairsTest() {
+      Address address = new InMemoryPrivateKey(HashUtils.sha256(new byte[] { 1 }), true).getPublicKey().toAddress(
+            NETWORK);
+      List<UnspentTransactionOutput> unspent = new ArrayList<UnspentTransactionOutput>();
+      for (int i = 0; i < 5; i++) {
+         unspent.add(output(address, i, 100000 - i));
+      }
+      // Only two inputs fit
+      ConsolidationPlanner planner = new ConsolidationPlanner(NETWORK, 420);
+      List<Consolidation> plan = planner.plan(unspent);
+      Assert.assertEquals(2, plan.size());
+      for (Consolidation consolidation : plan) {
+         Assert.assertEquals(2, consolidation.funding.size());
+         // The smallest output is left out
+         Assert.assertFalse(consolidation.funding.contains(unspent.get(4)));
+      }
+   }
+
+}
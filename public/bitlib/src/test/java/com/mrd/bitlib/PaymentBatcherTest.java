@@ -0,0 +1,155 @@
+package com.mrd.bitlib;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.mrd.bitlib.PaymentBatcher.PaymentResult;
+import com.mrd.bitlib.PaymentBatcher.TransactionBroadcaster;
+import com.mrd.bitlib.PaymentBatcher.UnspentOutputSource;
+import com.mrd.bitlib.StandardTransactionBuilder.InsufficientFundsException;
+import com.mrd.bitlib.crypto.InMemoryPrivateKey;
+import com.mrd.bitlib.crypto.PrivateKeyRing;
+import com.mrd.bitlib.crypto.StaticSimpleRandomSource;
+import com.mrd.bitlib.model.Address;
+import com.mrd.bitlib.model.NetworkParameters;
+import com.mrd.bitlib.model.OutPoint;
+import com.mrd.bitlib.model.ScriptOutputStandard;
+import com.mrd.bitlib.model.Transaction;
+import com.mrd.bitlib.model.TransactionInput;
+import com.mrd.bitlib.model.UnspentTransactionOutput;
+import com.mrd.bitlib.util.HashUtils;
+
+public class PaymentBatcherTest {
+
+   private static final NetworkParameters NETWORK = NetworkParameters.testNetwork;
+   private static final InMemoryPrivateKey KEY = new InMemoryPrivateKey(HashUtils.sha256(new byte[] { 1 }), true);
+   private static final Address ADDRESS = KEY.getPublicKey().toAddress(NETWORK);
+   private static final Address CHANGE = new InMemoryPrivateKey(HashUtils.sha256(new byte[] { 2 }), true)
+         .getPublicKey().toAddress(NETWORK);
+
+   private ScheduledExecutorService scheduler;
+   private PrivateKeyRing keyRing;
+   private List<UnspentTransactionOutput> unspent;
+   private List<Transaction> broadcast;
+
+   private final UnspentOutputSource source = new UnspentOutputSource() {
+      @Override
+      public List<UnspentTransactionOutput> getUnspentOutputs() {
+         return unspent;
+      }
+   };
+
+   private final TransactionBroadcaster broadcaster = new TransactionBroadcaster() {
+      @Override
+      public void broadcast(Transaction transaction) throws IOException {
+         broadcast.add(transaction);
+      }
+   };
+
+   @Before
+   public void setUp() {
+      scheduler = Executors.newSingleThreadScheduledExecutor();
+      keyRing = new PrivateKeyRing();
+      keyRing.addPrivateKey(KEY, NETWORK);
+      unspent = new ArrayList<UnspentTransactionOutput>();
+      for (int i = 0; i < 10; i++) {
+         OutPoint outPoint = new OutPoint(HashUtils.sha256(new byte[] { (byte) i }), 0);
+         unspent.add(new UnspentTransactionOutput(outPoint, i, 1000000, new ScriptOutputStandard(ADDRESS
+               .getTypeSpecificBytes())));
+      }
+      broadcast = Collections.synchronizedList(new ArrayList<Transaction>());
+   }
+
+   @After
+   public void tearDown() {
+      scheduler.shutdownNow();
+   }
+
+   private PaymentBatcher createBatcher(int maxPayments, long maxDelayMillis) {
+      return new PaymentBatcher(NETWORK, source, keyRing, CHANGE, new StaticSimpleRandomSource(), broadcaster,
+            scheduler, maxPayments, maxDelayMillis);
+   }
+
+   @Test
+   public void sizeThresholdTest() throws Exception {
+      PaymentBatcher batcher = createBatcher(3, 3600000);
+      List<Future<PaymentResult>> results = new ArrayList<Future<PaymentResult>>();
+      for (int i = 0; i < 3; i++) {
+         results.add(batcher.addPayment(ADDRESS, 100000 * (i + 1)));
+      }
+      Transaction transaction = null;
+      for (int i = 0; i < 3; i++) {
+         PaymentResult result = results.get(i).get(10, TimeUnit.SECONDS);
+         Assert.assertEquals(i, result.outputIndex);
+         Assert.assertEquals(100000 * (i + 1), result.transaction.outputs[i].value);
+         transaction = result.transaction;
+      }
+      Assert.assertEquals(1, broadcast.size());
+      Assert.assertSame(transaction, broadcast.get(0));
+      // One change output
+      Assert.assertEquals(4, transaction.outputs.length);
+      Assert.assertEquals(CHANGE, transaction.outputs[3].script.getAddress(NETWORK));
+      Assert.assertEquals(0, batcher.getQueueSize());
+   }
+
+   @Test
+   public void timeThresholdTest() throws Exception {
+      PaymentBatcher batcher = createBatcher(100, 50);
+      Future<PaymentResult> first = batcher.addPayment(ADDRESS, 100000);
+      Future<PaymentResult> second = batcher.addPayment(ADDRESS, 200000);
+      Assert.assertSame(first.get(10, TimeUnit.SECONDS).transaction, second.get(10, TimeUnit.SECONDS).transaction);
+      Assert.assertEquals(1, broadcast.size());
+   }
+
+   @Test
+   public void spentOutputsTest() throws Exception {
+      PaymentBatcher batcher = createBatcher(100, 3600000);
+      List<Future<PaymentResult>> results = new ArrayList<Future<PaymentResult>>();
+      results.add(batcher.addPayment(ADDRESS, 1500000));
+      batcher.flush();
+      results.add(batcher.addPayment(ADDRESS, 1500000));
+      batcher.flush();
+      Set<OutPoint> spent = new HashSet<OutPoint>();
+      for (Future<PaymentResult> result : results) {
+         Transaction transaction = result.get().transaction;
+         for (TransactionInput input : transaction.inputs) {
+            Assert.assertTrue(spent.add(input.outPoint));
+         }
+      }
+      Assert.assertEquals(2, broadcast.size());
+   }
+
+   @Test
+   public void insufficientFundsTest() throws Exception {
+      PaymentBatcher batcher = createBatcher(100, 3600000);
+      List<Future<PaymentResult>> results = new ArrayList<Future<PaymentResult>>();
+      results.add(batcher.addPayment(ADDRESS, 6000000));
+      results.add(batcher.addPayment(ADDRESS, 6000000));
+      batcher.flush();
+      for (Future<PaymentResult> result : results) {
+         try {
+            result.get();
+            Assert.fail("Expected the batch to fail");
+         } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof InsufficientFundsException);
+         }
+      }
+      Assert.assertEquals(0, broadcast.size());
+   }
+
+}
@@ -35,16 +35,28 @@
 package com.mrd.bitlib;
 
 import com.google.common.collect.ImmutableList;
+import com.mrd.bitlib.StandardTransactionBuilder.SigningRequest;
+import com.mrd.bitlib.crypto.InMemoryPrivateKey;
+import com.mrd.bitlib.crypto.PrivateKeyRing;
+import com.mrd.bitlib.crypto.PublicKey;
+import com.mrd.bitlib.crypto.StaticSimpleRandomSource;
 import com.mrd.bitlib.model.Address;
 import com.mrd.bitlib.model.NetworkParameters;
 import com.mrd.bitlib.model.OutPoint;
 import com.mrd.bitlib.model.ScriptOutputStandard;
 import com.mrd.bitlib.model.UnspentTransactionOutput;
+import com.mrd.bitlib.util.HashUtils;
 import com.mrd.bitlib.util.Sha256Hash;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 /**
  * a programmer
@@ -84,5 +96,37 @@ public class StandardTransactionBuilderTest {
       assertEquals(addr2,address);
    }
 
+   @Test
+   public void testParallelSignatures() throws Exception {
+      PrivateKeyRing keyRing = new PrivateKeyRing();
+      InMemoryPrivateKey[] keys = new InMemoryPrivateKey[3];
+      for (int i = 0; i < keys.length; i++) {
+         keys[i] = new InMemoryPrivateKey(HashUtils.sha256(new byte[] { (byte) i }), true);
+         keyRing.addPrivateKey(keys[i], network);
+      }
+      SigningRequest[] requests = new SigningRequest[25];
+      for (int i = 0; i < requests.length; i++) {
+         PublicKey publicKey = keys[i % keys.length].getPublicKey();
+         requests[i] = new SigningRequest(publicKey, HashUtils.sha256(new byte[] { 42, (byte) i }));
+      }
+      ExecutorService executor = Executors.newFixedThreadPool(4);
+      try {
+         List<byte[]> signatures = StandardTransactionBuilder.generateSignatures(requests, keyRing,
+               new StaticSimpleRandomSource(), executor, 4);
+         assertEquals(requests.length, signatures.size());
+         for (int i = 0; i < requests.length; i++) {
+            assertTrue(requests[i].publicKey.verifyStandardBitcoinSignature(requests[i].toSign, signatures.get(i)));
+         }
+         // The nonce generators are seeded in order, so the result does not
+         // depend on scheduling
+         List<byte[]> again = StandardTransactionBuilder.generateSignatures(requests, keyRing,
+               new StaticSimpleRandomSource(), executor, 4);
+         for (int i = 0; i < requests.length; i++) {
+            assertTrue(Arrays.equals(signatures.get(i), again.get(i)));
+         }
+      } finally {
+         executor.shutdown();
+      }
+   }
 
 }
@@ -0,0 +1,103 @@
+package com.mrd.bitlib;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import com.mrd.bitlib.StandardTransactionBuilder.UnsignedTransaction;
+import com.mrd.bitlib.crypto.InMemoryPrivateKey;
+import com.mrd.bitlib.crypto.PrivateKeyRing;
+import com.mrd.bitlib.crypto.StaticSimpleRandomSource;
+import com.mrd.bitlib.model.Address;
+import com.mrd.bitlib.model.CompactInt;
+import com.mrd.bitlib.model.NetworkParameters;
+import com.mrd.bitlib.model.OutPoint;
+import com.mrd.bitlib.model.ScriptInput;
+import com.mrd.bitlib.model.ScriptOutput;
+import com.mrd.bitlib.model.ScriptOutputStandard;
+import com.mrd.bitlib.model.Transaction;
+import com.mrd.bitlib.model.TransactionInput;
+import com.mrd.bitlib.model.TransactionOutput;
+import com.mrd.bitlib.model.UnspentTransactionOutput;
+import com.mrd.bitlib.util.HashUtils;
+
+public class TransactionUtilsTest {
+
+   private static final NetworkParameters NETWORK = NetworkParameters.testNetwork;
+
+   @Test
+   public void compactIntSizeTest() {
+      for (long value : new long[] { 0, 252, 253, 65535, 65536, 4294967294L, 4294967295L, Long.MAX_VALUE, -1 }) {
+         Assert.assertEquals(CompactInt.toBytes(value).length, CompactInt.sizeOf(value));
+      }
+   }
+
+   @Test
+   public void transactionSizeTest() {
+      Random random = new Random(1);
+      for (int numInputs : new int[] { 0, 1, 252, 253, 300 }) {
+         TransactionInput[] inputs = new TransactionInput[numInputs];
+         int inputsSize = 0;
+         for (int i = 0; i < numInputs; i++) {
+            byte[] script = new byte[random.nextInt(300)];
+            OutPoint outPoint = new OutPoint(HashUtils.sha256(new byte[] { (byte) i }), i);
+            ScriptInput scriptInput = ScriptInput.fromOutputScript(ScriptOutput.fromScriptBytes(script));
+            inputs[i] = new TransactionInput(outPoint, scriptInput);
+            inputsSize += TransactionUtils.calculateInputSize(script.length);
+         }
+         TransactionOutput[] outputs = new TransactionOutput[numInputs / 2];
+         int outputsSize = 0;
+         for (int i = 0; i < outputs.length; i++) {
+            byte[] script = new byte[random.nextInt(300)];
+            outputs[i] = new TransactionOutput(i, ScriptOutput.fromScriptBytes(script));
+            outputsSize += TransactionUtils.calculateOutputSize(script.length);
+         }
+         Transaction t = new Transaction(1, inputs, outputs, 0);
+         Assert.assertEquals(t.toBytes().length,
+               TransactionUtils.calculateTransactionSize(numInputs, inputsSize, outputs.length, outputsSize));
+      }
+   }
+
+   @Test
+   public void feeTest() throws Exception {
+      // Uncompressed keys give the largest input scripts
+      InMemoryPrivateKey key = new InMemoryPrivateKey(HashUtils.sha256(new byte[] { 1 }), false);
+      Address address = key.getPublicKey().toAddress(NETWORK);
+      PrivateKeyRing keyRing = new PrivateKeyRing();
+      keyRing.addPrivateKey(key, NETWORK);
+      List<UnspentTransactionOutput> unspent = new ArrayList<UnspentTransactionOutput>();
+      for (int i = 0; i < 400; i++) {
+         OutPoint outPoint = new OutPoint(HashUtils.sha256(new byte[] { (byte) (i >> 8), (byte) i }), i);
+         unspent.add(new UnspentTransactionOutput(outPoint, i, 100000, new ScriptOutputStandard(address
+               .getTypeSpecificBytes())));
+      }
+      for (long value : new long[] { 50000, 1000000, 10000000, 30000000 }) {
+         StandardTransactionBuilder builder = new StandardTransactionBuilder(NETWORK);
+         builder.addOutput(address, value);
+         UnsignedTransaction unsigned = builder.createUnsignedTransaction(unspent, null, keyRing, NETWORK);
+         List<byte[]> signatures = StandardTransactionBuilder.generateSignatures(unsigned.getSignatureInfo(),
+               keyRing, new StaticSimpleRandomSource());
+         Transaction t = StandardTransactionBuilder.finalizeTransaction(unsigned, signatures);
+         int size = t.toBytes().length;
+         int estimate = TransactionUtils.estimateStandardTransactionSize(t.inputs.length, t.outputs.length,
+               size - TransactionUtils.calculateTransactionSize(t.inputs.length, 0, t.outputs.length, 0)
+                     - sumInputSizes(t));
+         Assert.assertTrue(estimate >= size);
+         Assert.assertTrue(estimate - size <= 2 * t.inputs.length);
+         Assert.assertTrue(unsigned.calculateFee() >= TransactionUtils.calculateFeeRequired(size));
+      }
+   }
+
+   private static int sumInputSizes(Transaction t) {
+      int size = 0;
+      for (TransactionInput input : t.inputs) {
+         size += TransactionUtils.calculateInputSize(input.script.getScriptBytes().length);
+      }
+      return size;
+   }
+
+}
@@ -0,0 +1,76 @@
+package com.mrd.bitlib.crypto;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import com.mrd.bitlib.util.HashUtils;
+import com.mrd.bitlib.util.Sha256Hash;
+
+public class BatchSignatureVerifierTest {
+
+   private static final int JOBS = 12;
+
+   private static List<BatchSignatureVerifier.Job> createJobs() {
+      RandomSource rnd = new StaticSimpleRandomSource();
+      List<BatchSignatureVerifier.Job> jobs = new ArrayList<BatchSignatureVerifier.Job>();
+      for (int i = 0; i < JOBS; i++) {
+         InMemoryPrivateKey key = new InMemoryPrivateKey(rnd, i % 2 == 0);
+         Sha256Hash hash = HashUtils.sha256(new byte[] { (byte) i });
+         byte[] signature = key.makeStandardBitcoinSignature(hash, rnd);
+         jobs.add(BatchSignatureVerifier.Job.fromStandardBitcoinSignature(hash, signature, key.getPublicKey()));
+      }
+      return jobs;
+   }
+
+   private static void checkBatch(BatchSignatureVerifier verifier) {
+      List<BatchSignatureVerifier.Job> jobs = createJobs();
+
+      // Signed by another key
+      BatchSignatureVerifier.Job job = jobs.get(3);
+      jobs.set(3, new BatchSignatureVerifier.Job(job.hash, job.signature, jobs.get(4).publicKey));
+      // Another hash
+      job = jobs.get(7);
+      jobs.set(7, new BatchSignatureVerifier.Job(jobs.get(8).hash, job.signature, job.publicKey));
+      // Undecodable signature
+      job = jobs.get(10);
+      jobs.set(10, BatchSignatureVerifier.Job.fromStandardBitcoinSignature(job.hash, new byte[] { 0x30, 0x01 },
+            job.publicKey));
+
+      boolean[] result = verifier.verify(jobs);
+      Assert.assertEquals(JOBS, result.length);
+      for (int i = 0; i < JOBS; i++) {
+         boolean expected = i != 3 && i != 7 && i != 10;
+         Assert.assertEquals(expected, result[i]);
+         Assert.assertEquals(expected, jobs.get(i).signature != null
+               && Signatures.verifySignature(jobs.get(i).hash.getBytes(), jobs.get(i).signature,
+                     jobs.get(i).publicKey.getQ()));
+      }
+   }
+
+   @Test
+   public void sequentialTest() {
+      checkBatch(new BatchSignatureVerifier());
+   }
+
+   @Test
+   public void parallelTest() {
+      ExecutorService executor = Executors.newFixedThreadPool(3);
+      try {
+         checkBatch(new BatchSignatureVerifier(executor, 5));
+      } finally {
+         executor.shutdown();
+      }
+   }
+
+   @Test
+   public void emptyBatchTest() {
+      Assert.assertEquals(0, new BatchSignatureVerifier().verify(new ArrayList<BatchSignatureVerifier.Job>()).length);
+   }
+
+}
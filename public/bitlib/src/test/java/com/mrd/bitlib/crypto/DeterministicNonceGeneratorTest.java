@@ -0,0 +1,54 @@
+package com.mrd.bitlib.crypto;
+
+import java.math.BigInteger;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import com.mrd.bitlib.crypto.ec.Parameters;
+import com.mrd.bitlib.util.HashUtils;
+import com.mrd.bitlib.util.Sha256Hash;
+
+public class DeterministicNonceGeneratorTest {
+
+   private static BigInteger nonce(BigInteger privateKey, String message) throws Exception {
+      byte[] hash = HashUtils.sha256(message.getBytes("UTF-8")).getBytes();
+      return new DeterministicNonceGenerator(privateKey, hash).nextNonce();
+   }
+
+   @Test
+   public void vectorTest() throws Exception {
+      Assert.assertEquals(new BigInteger("8F8A276C19F4149656B280621E358CCE24F5F52542772691EE69063B74F15D15", 16),
+            nonce(BigInteger.ONE, "Satoshi Nakamoto"));
+      Assert.assertEquals(new BigInteger("38AA22D72376B4DBC472E06C3BA403EE0A394DA63FC58D88686C611ABA98D6B3", 16),
+            nonce(BigInteger.ONE, "All those moments will be lost in time, like tears in rain. Time to die..."));
+      Assert.assertEquals(new BigInteger("33A19B60E25FB6F4435AF53A3D42D493644827367E6453928554F43E49AA6F90", 16),
+            nonce(Parameters.n.subtract(BigInteger.ONE), "Satoshi Nakamoto"));
+   }
+
+   @Test
+   public void signatureTest() throws Exception {
+      byte[] keyBytes = new byte[32];
+      keyBytes[31] = 1;
+      InMemoryPrivateKey key = new InMemoryPrivateKey(keyBytes, true);
+      key.setDeterministicSigning(true);
+      Sha256Hash hash = HashUtils.sha256("Satoshi Nakamoto".getBytes("UTF-8"));
+      // The random source must not be used
+      RandomSource failing = new RandomSource() {
+
+         @Override
+         public void nextBytes(byte[] bytes) {
+            throw new IllegalStateException();
+         }
+      };
+      Signature signature = key.generateSignature(hash, failing);
+      Assert.assertEquals(new BigInteger("934b1ea10a4b3c1757e2b0c017d0b6143ce3c9a7e6a4a49860d7a6ab210ee3d8", 16),
+            signature.r);
+      Assert.assertEquals(new BigInteger("2442ce9d2b916064108014783e923ec36b49743e2ffa1c4496f01a512aafd9e5", 16),
+            signature.s);
+      byte[] standard = key.makeStandardBitcoinSignature(hash, failing);
+      Assert.assertTrue(key.getPublicKey().verifyStandardBitcoinSignature(hash, standard));
+   }
+
+}
@@ -1,10 +1,15 @@
 package com.mrd.bitlib.crypto;
 
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 import junit.framework.Assert;
 
 import org.junit.Test;
 
 import com.mrd.bitlib.crypto.HdKeyNode.KeyGenerationException;
+import com.mrd.bitlib.model.Address;
 import com.mrd.bitlib.model.NetworkParameters;
 import com.mrd.bitlib.util.HexUtils;
 
@@ -294,4 +299,95 @@ public class HdKeyNodeTest {
       }
    }
 
+   @Test
+   public void deriveRangeTest() throws KeyGenerationException {
+      HdKeyNode root = HdKeyNode.fromSeed(TV1_MASTER_SEED);
+      HdKeyNode account = root.createChildNode(0 | HARDENED_PRIVATE_KEY);
+      HdKeyNode accountPublic = account.getPublicNode();
+
+      List<PublicKey> keys = account.deriveRange(5, 20);
+      Assert.assertEquals(20, keys.size());
+      for (int i = 0; i < keys.size(); i++) {
+         Assert.assertEquals(account.createChildPublicKey(5 + i), keys.get(i));
+      }
+      Assert.assertEquals(keys, accountPublic.deriveRange(5, 20));
+
+      ExecutorService executor = Executors.newFixedThreadPool(3);
+      try {
+         Assert.assertEquals(keys, accountPublic.deriveRange(5, 20, executor, 4));
+      } finally {
+         executor.shutdown();
+      }
+
+      List<Address> addresses = accountPublic.deriveAddressRange(5, 20, NetworkParameters.productionNetwork);
+      for (int i = 0; i < addresses.size(); i++) {
+         Assert.assertEquals(keys.get(i).toAddress(NetworkParameters.productionNetwork), addresses.get(i));
+      }
+
+      // Hardened children
+      keys = root.deriveRange(HARDENED_PRIVATE_KEY, 3);
+      for (int i = 0; i < keys.size(); i++) {
+         Assert.assertEquals(root.createChildPublicKey(HARDENED_PRIVATE_KEY + i), keys.get(i));
+      }
+      try {
+         accountPublic.deriveRange(HARDENED_PRIVATE_KEY - 2, 4);
+         Assert.fail("Exception expected");
+      } catch (KeyGenerationException e) {
+         // Expected
+      }
+      Assert.assertTrue(accountPublic.deriveRange(0, 0).isEmpty());
+   }
+
+   @Test
+   public void pathTest() throws KeyGenerationException {
+      HdKeyNode root = HdKeyNode.fromSeed(TV1_MASTER_SEED);
+      Assert.assertEquals(root, root.createChildNode("m"));
+      HdKeyNode node = root.createChildNode("m/0'/1/2h/2/1000000000");
+      Assert.assertEquals(TV1_TEST_M_0H_1_2H_2_1000000000_PRV, node.serialize(NetworkParameters.productionNetwork));
+
+      int[] path = HdKeyNode.parsePath("m/44'/0H/0'/1/2147483647");
+      Assert.assertEquals(5, path.length);
+      Assert.assertEquals(44 | HARDENED_PRIVATE_KEY, path[0]);
+      Assert.assertEquals(HARDENED_PRIVATE_KEY, path[1]);
+      Assert.assertEquals(1, path[3]);
+      Assert.assertEquals(2147483647, path[4]);
+      Assert.assertEquals("m/44'/0'/0'/1/2147483647", HdKeyNode.pathToString(path));
+
+      String[] invalid = { "", "0/1", "m/", "m//1", "m/1''", "m/-1", "m/2147483648", "m/x", "m/99999999999" };
+      for (String p : invalid) {
+         try {
+            HdKeyNode.parsePath(p);
+            Assert.fail("Exception expected for " + p);
+         } catch (KeyGenerationException e) {
+            // Expected
+         }
+      }
+   }
+
+   @Test
+   public void cacheTest() throws KeyGenerationException {
+      HdKeyNode root = HdKeyNode.fromSeed(TV1_MASTER_SEED);
+      HdKeyNodeCache cache = new HdKeyNodeCache(5);
+      HdKeyNode node = cache.getNode(root, "m/0'/1/2'/2/1000000000");
+      Assert.assertEquals(TV1_TEST_M_0H_1_2H_2_1000000000_PRV, node.serialize(NetworkParameters.productionNetwork));
+      Assert.assertEquals(5, cache.size());
+      Assert.assertSame(node, cache.getNode(root, "m/0'/1/2'/2/1000000000"));
+
+      // Siblings reuse the cached parent
+      HdKeyNode parent = cache.getNode(root, "m/0'/1/2'/2");
+      for (int i = 0; i < 3; i++) {
+         Assert.assertEquals(parent.createChildNode(i), cache.getNode(root, "m/0'/1/2'/2/" + i));
+      }
+      Assert.assertEquals(5, cache.size());
+
+      // Public and private roots are cached separately
+      HdKeyNode publicRoot = root.createChildNode(0 | HARDENED_PRIVATE_KEY).getPublicNode();
+      HdKeyNode publicNode = cache.getNode(publicRoot, "m/1/2");
+      Assert.assertFalse(publicNode.isPrivateHdKeyNode());
+      Assert.assertEquals(root.createChildNode("m/0'/1/2").getPublicNode(), publicNode);
+
+      cache.clear();
+      Assert.assertEquals(0, cache.size());
+   }
+
 }
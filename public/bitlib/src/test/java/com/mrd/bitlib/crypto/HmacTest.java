@@ -40,6 +40,7 @@ import java.util.Arrays;
 
 import org.junit.Test;
 
+import com.lambdaworks.crypto.PBKDF;
 import com.mrd.bitlib.util.HexUtils;
 
 public class HmacTest {
@@ -71,4 +72,39 @@ public class HmacTest {
       assertTrue(Arrays.equals(TEST_3_RESULT, Hmac.hmacSha512(TEST_3_KEY, TEST_3_DATA)));
    }
 
+   @Test
+   public void keyedHmacTest() throws Exception {
+      KeyedHmac hmac = KeyedHmac.hmacSha512(TEST_1_KEY);
+      // Reuse the same instance for several messages
+      for (int i = 0; i < 3; i++) {
+         assertTrue(Arrays.equals(TEST_1_RESULT, hmac.mac(TEST_1_DATA)));
+      }
+      assertTrue(Arrays.equals(TEST_3_RESULT, KeyedHmac.hmacSha512(TEST_3_KEY).mac(TEST_3_DATA)));
+
+      // Clone in the middle of a message
+      hmac = KeyedHmac.hmacSha512(TEST_2_KEY);
+      hmac.update(TEST_2_DATA, 0, 10);
+      KeyedHmac copy = hmac.clone();
+      hmac.update(TEST_2_DATA, 10, TEST_2_DATA.length - 10);
+      assertTrue(Arrays.equals(TEST_2_RESULT, hmac.doFinal()));
+      copy.update(TEST_2_DATA, 10, TEST_2_DATA.length - 10);
+      byte[] result = new byte[copy.getMacLength() + 1];
+      copy.doFinal(result, 1);
+      assertTrue(Arrays.equals(TEST_2_RESULT, Arrays.copyOfRange(result, 1, result.length)));
+
+      // Keys longer than the block size
+      byte[] longKey = new byte[200];
+      for (int i = 0; i < longKey.length; i++) {
+         longKey[i] = (byte) i;
+      }
+      assertTrue(Arrays.equals(Hmac.hmacSha256(longKey, TEST_3_DATA), KeyedHmac.hmacSha256(longKey).mac(TEST_3_DATA)));
+      assertTrue(Arrays.equals(Hmac.hmacSha512(longKey, TEST_3_DATA), KeyedHmac.hmacSha512(longKey).mac(TEST_3_DATA)));
+
+      // PBKDF2 with a keyed HMAC gives the same result as with a Mac
+      byte[] expected = PBKDF.pbkdf2("HmacSHA256", TEST_2_KEY, TEST_2_DATA, 100, 80);
+      byte[] derived = new byte[80];
+      PBKDF.pbkdf2(KeyedHmac.hmacSha256(TEST_2_KEY), TEST_2_DATA, 100, derived, 80);
+      assertTrue(Arrays.equals(expected, derived));
+   }
+
 }
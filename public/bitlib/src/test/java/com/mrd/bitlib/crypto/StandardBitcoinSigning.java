@@ -12,6 +12,7 @@ import com.mrd.bitlib.crypto.ec.EcTools;
 import com.mrd.bitlib.crypto.ec.Point;
 import com.mrd.bitlib.model.Address;
 import com.mrd.bitlib.model.NetworkParameters;
+import com.mrd.bitlib.util.HashUtils;
 
 public class StandardBitcoinSigning {
 
@@ -75,6 +76,17 @@ public class StandardBitcoinSigning {
 
    }
 
+   @Test
+   public void testMessageHash() {
+      StringBuilder sb = new StringBuilder();
+      for (int i = 0; i < 300; i++) {
+         String message = sb.toString();
+         assertEquals(HashUtils.doubleSha256(Signatures.formatMessageForSigning(message)),
+               Signatures.messageHash(message));
+         sb.append((char) ('a' + i % 26));
+      }
+   }
+
    @Test
    public void testKeyDecompress() {
       Point point = EcTools.decompressKey(BigInteger.ONE, true);
@@ -0,0 +1,75 @@
+package com.mrd.bitlib.crypto.digest;
+
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Compares {@link Sha256Digest} with the SHA-256 of the platform provider for
+ * the message sizes that dominate Bitcoin hashing. Run the main method, this
+ * is not a unit test.
+ */
+public class Sha256DigestBenchmark {
+
+   private static final int ROUNDS = 5;
+   private static final int ITERATIONS = 500000;
+
+   public static void main(String[] args) throws NoSuchAlgorithmException, DigestException {
+      MessageDigest jca = MessageDigest.getInstance("SHA-256");
+      Sha256Digest digest = new Sha256Digest();
+      byte[] data = new byte[250];
+      for (int i = 0; i < data.length; i++) {
+         data[i] = (byte) i;
+      }
+      byte[] out = new byte[32];
+      System.out.println("Provider: " + jca.getProvider());
+      for (int round = 0; round < ROUNDS; round++) {
+         long start = System.nanoTime();
+         for (int i = 0; i < ITERATIONS; i++) {
+            jca.update(data, 0, 32);
+            jca.digest(out, 0, 32);
+         }
+         long jca32 = System.nanoTime() - start;
+
+         start = System.nanoTime();
+         for (int i = 0; i < ITERATIONS; i++) {
+            digest.hash32(data, 0, out, 0);
+         }
+         long java32 = System.nanoTime() - start;
+
+         start = System.nanoTime();
+         for (int i = 0; i < ITERATIONS; i++) {
+            jca.update(data, 0, 64);
+            jca.digest(out, 0, 32);
+            jca.update(out, 0, 32);
+            jca.digest(out, 0, 32);
+         }
+         long jca64 = System.nanoTime() - start;
+
+         start = System.nanoTime();
+         for (int i = 0; i < ITERATIONS; i++) {
+            digest.doubleHash64(data, 0, out, 0);
+         }
+         long java64 = System.nanoTime() - start;
+
+         start = System.nanoTime();
+         for (int i = 0; i < ITERATIONS; i++) {
+            jca.update(data, 0, data.length);
+            jca.digest(out, 0, 32);
+         }
+         long jca250 = System.nanoTime() - start;
+
+         start = System.nanoTime();
+         for (int i = 0; i < ITERATIONS; i++) {
+            digest.update(data, 0, data.length);
+            digest.doFinal(out, 0);
+         }
+         long java250 = System.nanoTime() - start;
+
+         System.out.println(String.format("32 bytes: %d / %d ns, double 64 bytes: %d / %d ns, 250 bytes: %d / %d ns"
+               + " (provider / pure Java)", jca32 / ITERATIONS, java32 / ITERATIONS, jca64 / ITERATIONS, java64
+               / ITERATIONS, jca250 / ITERATIONS, java250 / ITERATIONS));
+      }
+   }
+
+}
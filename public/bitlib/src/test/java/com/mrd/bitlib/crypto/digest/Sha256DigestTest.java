@@ -0,0 +1,107 @@
+package com.mrd.bitlib.crypto.digest;
+
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import com.mrd.bitlib.util.HexUtils;
+
+public class Sha256DigestTest {
+
+   private static byte[] jcaSha256(byte[] data, int offset, int length) throws Exception {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      digest.update(data, offset, length);
+      return digest.digest();
+   }
+
+   private static byte[] randomBytes(Random rnd, int length) {
+      byte[] bytes = new byte[length];
+      rnd.nextBytes(bytes);
+      return bytes;
+   }
+
+   @Test
+   public void vectorTest() {
+      Sha256Digest digest = new Sha256Digest();
+      byte[] out = new byte[32];
+      digest.doFinal(out, 0);
+      Assert.assertEquals("e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855", HexUtils.toHex(out));
+      digest.update(new byte[] { 'a', 'b', 'c' });
+      digest.doFinal(out, 0);
+      Assert.assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad", HexUtils.toHex(out));
+   }
+
+   @Test
+   public void streamingTest() throws Exception {
+      Random rnd = new Random(42);
+      Sha256Digest digest = new Sha256Digest();
+      byte[] out = new byte[32];
+      for (int length = 0; length < 300; length++) {
+         byte[] data = randomBytes(rnd, length);
+         // Feed in random pieces
+         int i = 0;
+         while (i < length) {
+            if (rnd.nextBoolean()) {
+               digest.update(data[i++]);
+            } else {
+               int n = Math.min(length - i, rnd.nextInt(130));
+               digest.update(data, i, n);
+               i += n;
+            }
+         }
+         digest.doFinal(out, 0);
+         Assert.assertTrue(Arrays.equals(jcaSha256(data, 0, length), out));
+      }
+   }
+
+   @Test
+   public void fixedLengthTest() throws Exception {
+      Random rnd = new Random(43);
+      Sha256Digest digest = new Sha256Digest();
+      for (int i = 0; i < 50; i++) {
+         byte[] data = randomBytes(rnd, 70);
+         byte[] out = new byte[33];
+         digest.hash32(data, 3, out, 1);
+         Assert.assertTrue(Arrays.equals(jcaSha256(data, 3, 32), Arrays.copyOfRange(out, 1, 33)));
+         digest.hash64(data, 5, out, 1);
+         Assert.assertTrue(Arrays.equals(jcaSha256(data, 5, 64), Arrays.copyOfRange(out, 1, 33)));
+         digest.doubleHash64(data, 6, out, 0);
+         Assert.assertTrue(Arrays.equals(jcaSha256(jcaSha256(data, 6, 64), 0, 32), Arrays.copyOf(out, 32)));
+         // In place
+         byte[] expected = jcaSha256(data, 0, 64);
+         digest.hash64(data, 0, data, 0);
+         Assert.assertTrue(Arrays.equals(expected, Arrays.copyOf(data, 32)));
+      }
+   }
+
+   @Test
+   public void midstateTest() throws Exception {
+      Random rnd = new Random(44);
+      byte[] out = new byte[32];
+      for (int prefixLength : new int[] { 0, 25, 64, 100 }) {
+         byte[] data = randomBytes(rnd, prefixLength + 77);
+         Sha256Digest digest = new Sha256Digest();
+         digest.update(data, 0, prefixLength);
+         Sha256Digest.Midstate midstate = digest.getMidstate();
+         Assert.assertEquals(prefixLength, midstate.getByteCount());
+         // The digest can go on independently of the exported state
+         digest.update(data, 0, 10);
+         for (int i = 0; i < 3; i++) {
+            Sha256Digest resumed = new Sha256Digest(midstate);
+            resumed.update(data, prefixLength, 77);
+            resumed.doFinal(out, 0);
+            Assert.assertTrue(Arrays.equals(jcaSha256(data, 0, data.length), out));
+         }
+         digest.setMidstate(midstate);
+         Sha256Digest copy = new Sha256Digest(digest);
+         copy.update(data, prefixLength, 77);
+         copy.doFinal(out, 0);
+         Assert.assertTrue(Arrays.equals(jcaSha256(data, 0, data.length), out));
+      }
+   }
+
+}
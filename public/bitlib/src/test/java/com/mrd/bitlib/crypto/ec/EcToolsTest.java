@@ -0,0 +1,180 @@
+package com.mrd.bitlib.crypto.ec;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+public class EcToolsTest {
+
+   private static final BigInteger TWO_G_X = new BigInteger(
+         "C6047F9441ED7D6D3045406E95C07CD85C778E4B8CEF3CA7ABAC09B95C709EE5", 16);
+   private static final BigInteger TWO_G_Y = new BigInteger(
+         "1AE168FEA63DC339A3C58419466CEAEEF7F632653266D0E1236431A950CFE52A", 16);
+
+   /**
+    * Plain affine double-and-add used as reference
+    */
+   private static Point referenceMultiply(Point p, BigInteger k) {
+      Point r = p.getCurve().getInfinity();
+      for (int i = k.bitLength() - 1; i >= 0; i--) {
+         r = r.twice();
+         if (k.testBit(i)) {
+            r = r.add(p);
+         }
+      }
+      return r;
+   }
+
+   @Test
+   public void multiplySmallScalarsTest() {
+      Point G = Parameters.G;
+      Assert.assertTrue(EcTools.multiply(G, BigInteger.ZERO).isInfinity());
+      Assert.assertEquals(G, EcTools.multiply(G, BigInteger.ONE));
+      Point twoG = EcTools.multiply(G, BigInteger.valueOf(2));
+      Assert.assertEquals(TWO_G_X, twoG.getX().toBigInteger());
+      Assert.assertEquals(TWO_G_Y, twoG.getY().toBigInteger());
+      Assert.assertEquals(G.twice().add(G), EcTools.multiply(G, BigInteger.valueOf(3)));
+   }
+
+   @Test
+   public void multiplyByOrderTest() {
+      Assert.assertTrue(EcTools.multiply(Parameters.G, Parameters.n).isInfinity());
+      Assert.assertEquals(Parameters.G.negate(), EcTools.multiply(Parameters.G, Parameters.n.subtract(BigInteger.ONE)));
+   }
+
+   @Test
+   public void multiplyRandomTest() {
+      Random rnd = new Random(42);
+      Point P = referenceMultiply(Parameters.G, new BigInteger(256, rnd).mod(Parameters.n));
+      for (int i = 0; i < 10; i++) {
+         BigInteger k = new BigInteger(256, rnd).mod(Parameters.n);
+         Point expected = referenceMultiply(P, k);
+         Assert.assertEquals(expected, EcTools.multiply(P, k));
+         Assert.assertEquals(expected, EcTools.multiply(P, k, false));
+      }
+      Assert.assertTrue(EcTools.multiply(P, Parameters.n).isInfinity());
+      Assert.assertEquals(P.negate(), EcTools.multiply(P, Parameters.n.subtract(BigInteger.ONE)));
+   }
+
+   @Test
+   public void endomorphismTest() {
+      Point lambdaG = referenceMultiply(Parameters.G, Secp256k1Endomorphism.LAMBDA);
+      BigInteger betaX = Parameters.G.getX().toBigInteger().multiply(Secp256k1Endomorphism.BETA)
+            .mod(Parameters.curve.getQ());
+      Assert.assertEquals(betaX, lambdaG.getX().toBigInteger());
+      Assert.assertEquals(Parameters.G.getY(), lambdaG.getY());
+
+      Random rnd = new Random(99);
+      for (int i = 0; i < 100; i++) {
+         BigInteger k = new BigInteger(256, rnd).mod(Parameters.n);
+         BigInteger[] parts = Secp256k1Endomorphism.decompose(k);
+         Assert.assertEquals(k, parts[0].add(parts[1].multiply(Secp256k1Endomorphism.LAMBDA)).mod(Parameters.n));
+         Assert.assertTrue(parts[0].abs().bitLength() <= 129);
+         Assert.assertTrue(parts[1].abs().bitLength() <= 129);
+      }
+   }
+
+   @Test
+   public void multiplyGeneratorTest() {
+      Assert.assertTrue(EcTools.multiplyGenerator(BigInteger.ZERO).isInfinity());
+      Assert.assertTrue(EcTools.multiplyGenerator(Parameters.n).isInfinity());
+      Assert.assertEquals(Parameters.G, EcTools.multiplyGenerator(BigInteger.ONE));
+      Assert.assertEquals(TWO_G_X, EcTools.multiplyGenerator(BigInteger.valueOf(2)).getX().toBigInteger());
+      Assert.assertEquals(Parameters.G.negate(), EcTools.multiplyGenerator(Parameters.n.subtract(BigInteger.ONE)));
+      Random rnd = new Random(7);
+      for (int i = 0; i < 10; i++) {
+         BigInteger k = new BigInteger(256, rnd).mod(Parameters.n);
+         Assert.assertEquals(referenceMultiply(Parameters.G, k), EcTools.multiplyGenerator(k));
+      }
+   }
+
+   @Test
+   public void sumOfTwoMultipliesTest() {
+      Random rnd = new Random(4711);
+      Point Q = referenceMultiply(Parameters.G, new BigInteger(256, rnd).mod(Parameters.n));
+      for (int i = 0; i < 10; i++) {
+         BigInteger k = new BigInteger(256, rnd).mod(Parameters.n);
+         BigInteger l = new BigInteger(256, rnd).mod(Parameters.n);
+         Point expected = referenceMultiply(Parameters.G, k).add(referenceMultiply(Q, l));
+         Assert.assertEquals(expected, EcTools.sumOfTwoMultiplies(Parameters.G, k, Q, l));
+      }
+      // k * G + (n - k) * G is the point at infinity
+      BigInteger k = new BigInteger(256, rnd).mod(Parameters.n);
+      Assert.assertTrue(EcTools.sumOfTwoMultiplies(Parameters.G, k, Parameters.G, Parameters.n.subtract(k)).isInfinity());
+   }
+
+   @Test
+   public void multiScalarMultiplyTest() {
+      Random rnd = new Random(31337);
+      Point[] points = new Point[4];
+      BigInteger[] scalars = new BigInteger[4];
+      Point expected = Parameters.curve.getInfinity();
+      for (int i = 0; i < points.length; i++) {
+         points[i] = i == 1 ? Parameters.G : referenceMultiply(Parameters.G, new BigInteger(256, rnd)
+               .mod(Parameters.n));
+         scalars[i] = new BigInteger(256, rnd).mod(Parameters.n);
+         expected = expected.add(referenceMultiply(points[i], scalars[i]));
+      }
+      Assert.assertEquals(expected, EcTools.multiScalarMultiply(points, scalars));
+
+      // Terms that cancel out yield the point at infinity
+      BigInteger k = scalars[0];
+      Assert.assertTrue(EcTools.multiScalarMultiply(new Point[] { points[0], points[0].negate() },
+            new BigInteger[] { k, k }).isInfinity());
+      Assert.assertTrue(EcTools.multiScalarMultiply(new Point[] { Parameters.G, Parameters.G },
+            new BigInteger[] { k, Parameters.n.subtract(k) }).isInfinity());
+
+      // A generator term equal to the other term requires a doubling
+      Assert.assertEquals(referenceMultiply(Parameters.G, BigInteger.valueOf(4)), EcTools.multiScalarMultiply(
+            new Point[] { Parameters.G, Parameters.G.twice() }, new BigInteger[] { BigInteger.valueOf(2),
+                  BigInteger.ONE }));
+   }
+
+   @Test
+   public void modInverseAllTest() {
+      Random rnd = new Random(5);
+      BigInteger[] values = new BigInteger[7];
+      for (int i = 0; i < values.length; i++) {
+         values[i] = new BigInteger(256, rnd).mod(Parameters.n.subtract(BigInteger.ONE)).add(BigInteger.ONE);
+      }
+      BigInteger[] inverses = EcTools.modInverseAll(values, Parameters.n);
+      for (int i = 0; i < values.length; i++) {
+         Assert.assertEquals(values[i].modInverse(Parameters.n), inverses[i]);
+      }
+      Assert.assertEquals(0, EcTools.modInverseAll(new BigInteger[0], Parameters.n).length);
+   }
+
+   @Test
+   public void invertAllTest() {
+      Random rnd = new Random(6);
+      FieldElement[] elements = new FieldElement[5];
+      for (int i = 0; i < elements.length; i++) {
+         elements[i] = Parameters.curve.fromBigInteger(new BigInteger(255, rnd).add(BigInteger.ONE));
+      }
+      FieldElement[] inverses = EcTools.invertAll(elements);
+      for (int i = 0; i < elements.length; i++) {
+         Assert.assertEquals(elements[i].invert(), inverses[i]);
+      }
+   }
+
+   @Test
+   public void multiplyGeneratorAllTest() {
+      Random rnd = new Random(8);
+      BigInteger[] k = new BigInteger[6];
+      for (int i = 0; i < k.length; i++) {
+         k[i] = new BigInteger(256, rnd).mod(Parameters.n);
+      }
+      k[2] = BigInteger.ZERO;
+      k[4] = Parameters.n;
+      Point[] points = EcTools.multiplyGeneratorAll(k);
+      for (int i = 0; i < k.length; i++) {
+         Assert.assertEquals(referenceMultiply(Parameters.G, k[i].mod(Parameters.n)), points[i]);
+      }
+      Assert.assertTrue(points[2].isInfinity());
+      Assert.assertTrue(points[4].isInfinity());
+   }
+
+}
@@ -0,0 +1,79 @@
+package com.mrd.bitlib.crypto.ec;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+public class Secp256k1FieldTest {
+
+   private static final BigInteger P = Secp256k1Field.P;
+
+   private static List<BigInteger> testValues() {
+      List<BigInteger> values = new ArrayList<BigInteger>();
+      values.add(BigInteger.ZERO);
+      values.add(BigInteger.ONE);
+      values.add(BigInteger.valueOf(977));
+      values.add(P.subtract(BigInteger.ONE));
+      values.add(P.subtract(BigInteger.valueOf(2)));
+      values.add(BigInteger.ONE.shiftLeft(255));
+      values.add(BigInteger.ONE.shiftLeft(32).subtract(BigInteger.ONE));
+      Random rnd = new Random(1234);
+      for (int i = 0; i < 30; i++) {
+         values.add(new BigInteger(256, rnd).mod(P));
+      }
+      return values;
+   }
+
+   @Test
+   public void conversionTest() {
+      for (BigInteger a : testValues()) {
+         Assert.assertEquals(a, Secp256k1Field.toBigInteger(Secp256k1Field.fromBigInteger(a)));
+      }
+   }
+
+   @Test
+   public void arithmeticTest() {
+      Secp256k1Field field = new Secp256k1Field();
+      int[] r = Secp256k1Field.create();
+      List<BigInteger> values = testValues();
+      for (BigInteger a : values) {
+         int[] x = Secp256k1Field.fromBigInteger(a);
+         Secp256k1Field.negate(x, r);
+         Assert.assertEquals(a.negate().mod(P), Secp256k1Field.toBigInteger(r));
+         Secp256k1Field.multiply(x, 8, r);
+         Assert.assertEquals(a.shiftLeft(3).mod(P), Secp256k1Field.toBigInteger(r));
+         if (a.signum() != 0) {
+            field.invert(x, r);
+            Assert.assertEquals(a.modInverse(P), Secp256k1Field.toBigInteger(r));
+         }
+         for (BigInteger b : values) {
+            int[] y = Secp256k1Field.fromBigInteger(b);
+            Secp256k1Field.add(x, y, r);
+            Assert.assertEquals(a.add(b).mod(P), Secp256k1Field.toBigInteger(r));
+            Secp256k1Field.subtract(x, y, r);
+            Assert.assertEquals(a.subtract(b).mod(P), Secp256k1Field.toBigInteger(r));
+            field.multiply(x, y, r);
+            Assert.assertEquals(a.multiply(b).mod(P), Secp256k1Field.toBigInteger(r));
+         }
+      }
+   }
+
+   @Test
+   public void inPlaceTest() {
+      Secp256k1Field field = new Secp256k1Field();
+      BigInteger a = P.subtract(BigInteger.valueOf(12345));
+      int[] x = Secp256k1Field.fromBigInteger(a);
+      field.square(x, x);
+      Assert.assertEquals(a.multiply(a).mod(P), Secp256k1Field.toBigInteger(x));
+      Secp256k1Field.add(x, x, x);
+      Assert.assertEquals(a.multiply(a).shiftLeft(1).mod(P), Secp256k1Field.toBigInteger(x));
+      field.invert(x, x);
+      Assert.assertEquals(a.multiply(a).shiftLeft(1).modInverse(P), Secp256k1Field.toBigInteger(x));
+   }
+
+}
@@ -0,0 +1,103 @@
+package com.mrd.bitlib.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import com.mrd.bitlib.model.MerkleProof.MerkleProofParsingException;
+import com.mrd.bitlib.util.ByteReader;
+import com.mrd.bitlib.util.ByteWriter;
+import com.mrd.bitlib.util.HexUtils;
+import com.mrd.bitlib.util.Sha256Hash;
+
+public class MerkleTreeTest {
+
+   // Block 100000
+   private static final List<Sha256Hash> BLOCK_100000_TRANSACTIONS = Arrays.asList(
+         hash("8c14f0db3df150123e6f3dbbf30f8b955a8249b62ac1d1ff16284aefa3d06d87"),
+         hash("fff2525b8931402dd09222c50775608f75787bd2b87e56995a7bdd30f79702c4"),
+         hash("6359f0868171b1d194cbee1af2f16ea598ae8fad666d9b012c8ed2b79a236ec4"),
+         hash("e9a66845e05d5abc0ad04ec80f774a7e585c6e8db975962d069a522137b80c1d"));
+   private static final Sha256Hash BLOCK_100000_MERKLE_ROOT =
+         hash("f3e94742aca4b5ef85488dc37c06c3282295ffec960994b2c0d5ac2a25a95766");
+
+   private static Sha256Hash hash(String hex) {
+      return new Sha256Hash(HexUtils.toBytes(hex));
+   }
+
+   private static List<Sha256Hash> randomHashes(Random random, int count) {
+      List<Sha256Hash> hashes = new ArrayList<Sha256Hash>(count);
+      for (int i = 0; i < count; i++) {
+         byte[] bytes = new byte[Sha256Hash.HASH_LENGTH];
+         random.nextBytes(bytes);
+         hashes.add(new Sha256Hash(bytes));
+      }
+      return hashes;
+   }
+
+   @Test
+   public void rootTest() {
+      MerkleTree tree = new MerkleTree();
+      Assert.assertEquals(BLOCK_100000_MERKLE_ROOT, tree.calculateRoot(BLOCK_100000_TRANSACTIONS));
+      // A single transaction is its own root
+      Sha256Hash single = BLOCK_100000_TRANSACTIONS.get(0);
+      Assert.assertEquals(single, tree.calculateRoot(Arrays.asList(single)));
+   }
+
+   @Test
+   public void proofTest() throws MerkleProofParsingException {
+      MerkleTree tree = new MerkleTree();
+      for (int i = 0; i < BLOCK_100000_TRANSACTIONS.size(); i++) {
+         MerkleProof proof = tree.createProof(BLOCK_100000_TRANSACTIONS, i);
+         Assert.assertEquals(2, proof.getBranch().size());
+         Assert.assertTrue(proof.verify(BLOCK_100000_TRANSACTIONS.get(i), BLOCK_100000_MERKLE_ROOT));
+         Assert.assertFalse(proof.verify(BLOCK_100000_TRANSACTIONS.get((i + 1) % 4), BLOCK_100000_MERKLE_ROOT));
+
+         // Serialization round trip
+         ByteWriter writer = new ByteWriter(1024);
+         proof.toByteWriter(writer);
+         MerkleProof copy = MerkleProof.fromByteReader(new ByteReader(writer.toBytes()));
+         Assert.assertEquals(i, copy.getIndex());
+         Assert.assertTrue(copy.verify(BLOCK_100000_TRANSACTIONS.get(i), BLOCK_100000_MERKLE_ROOT));
+      }
+
+      // Odd numbers of transactions on some levels
+      Random random = new Random(42);
+      for (int count = 1; count <= 20; count++) {
+         List<Sha256Hash> hashes = randomHashes(random, count);
+         Sha256Hash root = tree.calculateRoot(hashes);
+         for (int i = 0; i < count; i++) {
+            MerkleProof proof = tree.createProof(hashes, i);
+            Assert.assertTrue(proof.verify(hashes.get(i), root));
+            // The proof is not valid for the sibling index, unless the node is
+            // paired with itself
+            if (i != count - 1 || count % 2 == 0) {
+               MerkleProof moved = new MerkleProof(i ^ 1, proof.getBranch());
+               Assert.assertFalse(moved.verify(hashes.get(i), root));
+            }
+         }
+      }
+   }
+
+   @Test
+   public void parallelTest() {
+      List<Sha256Hash> hashes = randomHashes(new Random(7), 2500);
+      Sha256Hash expected = new MerkleTree().calculateRoot(hashes);
+      ExecutorService executor = Executors.newFixedThreadPool(4);
+      try {
+         MerkleTree tree = new MerkleTree(executor, 4);
+         Assert.assertEquals(expected, tree.calculateRoot(hashes));
+         Assert.assertTrue(tree.createProof(hashes, 1234).verify(hashes.get(1234), expected));
+      } finally {
+         executor.shutdown();
+      }
+   }
+
+}
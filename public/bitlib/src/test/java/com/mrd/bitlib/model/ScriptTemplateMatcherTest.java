@@ -0,0 +1,247 @@
+package com.mrd.bitlib.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import com.mrd.bitlib.crypto.InMemoryPrivateKey;
+import com.mrd.bitlib.crypto.StaticSimpleRandomSource;
+import com.mrd.bitlib.model.Script.ScriptParsingException;
+import com.mrd.bitlib.model.ScriptTemplateMatcher.Template;
+import com.mrd.bitlib.util.BitUtils;
+import com.mrd.bitlib.util.HashUtils;
+import com.mrd.bitlib.util.HexUtils;
+
+public class ScriptTemplateMatcherTest {
+
+   private static final InMemoryPrivateKey KEY = new InMemoryPrivateKey(HashUtils.sha256(new byte[] { 1 }), true);
+   private static final InMemoryPrivateKey UNCOMPRESSED_KEY = new InMemoryPrivateKey(
+         HashUtils.sha256(new byte[] { 2 }), false);
+
+   private static byte[] concat(byte[]... parts) {
+      int length = 0;
+      for (byte[] part : parts) {
+         length += part.length;
+      }
+      byte[] result = new byte[length];
+      int offset = 0;
+      for (byte[] part : parts) {
+         System.arraycopy(part, 0, result, offset, part.length);
+         offset += part.length;
+      }
+      return result;
+   }
+
+   private static byte[] op(int opcode) {
+      return new byte[] { (byte) opcode };
+   }
+
+   private static byte[] push(byte[] data) {
+      return concat(op(data.length), data);
+   }
+
+   private static byte[] signature(InMemoryPrivateKey key, int i) {
+      // The signature is followed by the hash type
+      return key.makeStandardBitcoinSignature(HashUtils.sha256(new byte[] { (byte) i }),
+            new StaticSimpleRandomSource());
+   }
+
+   private static List<byte[]> outputScripts() {
+      byte[] hash = KEY.getPublicKey().getPublicKeyHash();
+      byte[] key = KEY.getPublicKey().getPublicKeyBytes();
+      byte[] uncompressed = UNCOMPRESSED_KEY.getPublicKey().getPublicKeyBytes();
+      List<byte[]> scripts = new ArrayList<byte[]>();
+      scripts.add(new ScriptOutputStandard(hash).getScriptBytes());
+      scripts.add(concat(new ScriptOutputStandard(hash).getScriptBytes(), op(Script.OP_NOP)));
+      scripts.add(new ScriptOutputMultisig(hash).getScriptBytes());
+      scripts.add(concat(push(key), op(Script.OP_CHECKSIG)));
+      scripts.add(concat(push(uncompressed), op(Script.OP_CHECKSIG)));
+      scripts.add(concat(op(Script.OP_TRUE), push(key), push(uncompressed), op(Script.OP_2),
+            op(Script.OP_CHECKMULTISIG)));
+      scripts.add(concat(push("hello".getBytes()), op(Script.OP_DROP), push(key), op(Script.OP_CHECKSIG)));
+      // Standard, but not in the canonical encoding
+      scripts.add(concat(op(Script.OP_DUP), op(Script.OP_HASH160), op(Script.OP_PUSHDATA1), op(20), hash,
+            op(Script.OP_EQUALVERIFY), op(Script.OP_CHECKSIG)));
+      scripts.add(new byte[0]);
+      return scripts;
+   }
+
+   private static List<byte[]> inputScripts() {
+      List<byte[]> scripts = new ArrayList<byte[]>();
+      for (int i = 0; i < 4; i++) {
+         scripts.add(concat(push(signature(KEY, i)), push(KEY.getPublicKey().getPublicKeyBytes())));
+         scripts.add(concat(push(signature(UNCOMPRESSED_KEY, i)),
+               push(UNCOMPRESSED_KEY.getPublicKey().getPublicKeyBytes())));
+         scripts.add(push(signature(KEY, i)));
+      }
+      scripts.add(new byte[0]);
+      return scripts;
+   }
+
+   /**
+    * Classify an output script the way ScriptOutput did before templates
+    * were matched on the raw bytes
+    */
+   private static Class<?> classifyOutput(byte[] scriptBytes) {
+      byte[][] chunks;
+      try {
+         chunks = Script.chunksFromScriptBytes(scriptBytes);
+      } catch (ScriptParsingException e) {
+         return ScriptOutputError.class;
+      }
+      if (ScriptOutputStandard.isScriptOutputStandard(chunks)) {
+         return ScriptOutputStandard.class;
+      } else if (ScriptOutputPubkey.isScriptOutputPubkey(chunks)) {
+         return ScriptOutputPubkey.class;
+      } else if (ScriptOutputMultisig.isScriptOutputMultisig(chunks)) {
+         return ScriptOutputMultisig.class;
+      } else if (ScriptOutputMsg.isScriptOutputMsg(chunks)) {
+         return ScriptOutputMsg.class;
+      } else {
+         return ScriptOutputStrange.class;
+      }
+   }
+
+   /**
+    * Classify an input script the way ScriptInput did before templates were
+    * matched on the raw bytes
+    */
+   private static Class<?> classifyInput(byte[] scriptBytes) {
+      try {
+         byte[][] chunks = Script.chunksFromScriptBytes(scriptBytes);
+         if (ScriptInputStandard.isScriptInputStandard(chunks)) {
+            return ScriptInputStandard.class;
+         } else if (ScriptInputPubKey.isScriptInputPubKey(chunks)) {
+            return ScriptInputPubKey.class;
+         } else {
+            return ScriptInput.class;
+         }
+      } catch (ScriptParsingException e) {
+         return ScriptParsingException.class;
+      }
+   }
+
+   private static Class<?> parseInput(byte[] scriptBytes) {
+      try {
+         return ScriptInput.fromScriptBytes(scriptBytes).getClass();
+      } catch (ScriptParsingException e) {
+         return ScriptParsingException.class;
+      }
+   }
+
+   @Test
+   public void outputTemplateTest() {
+      List<byte[]> scripts = outputScripts();
+      Template[] expected = { Template.PAY_TO_ADDRESS, Template.PAY_TO_ADDRESS, Template.PAY_TO_SCRIPT_HASH,
+            Template.PAY_TO_PUBKEY, Template.PAY_TO_PUBKEY, Template.MULTISIG, Template.NONE, Template.NONE,
+            Template.NONE };
+      for (int i = 0; i < expected.length; i++) {
+         byte[] script = scripts.get(i);
+         // Match at an offset in a larger buffer
+         byte[] buf = concat(new byte[] { 1, 2, 3 }, script, new byte[] { 4 });
+         Assert.assertEquals(expected[i], ScriptTemplateMatcher.matchOutput(buf, 3, script.length));
+      }
+
+      byte[] p2pkh = scripts.get(0);
+      int hashOffset = ScriptTemplateMatcher.getHashOffset(Template.PAY_TO_ADDRESS, 0);
+      Assert.assertTrue(BitUtils.areEqual(KEY.getPublicKey().getPublicKeyHash(),
+            BitUtils.copyOfRange(p2pkh, hashOffset, hashOffset + ScriptTemplateMatcher.HASH_LENGTH)));
+
+      byte[] multisig = scripts.get(5);
+      Assert.assertEquals(1, ScriptTemplateMatcher.getMultisigThreshold(multisig, 0));
+      Assert.assertEquals(2, ScriptTemplateMatcher.getMultisigKeyCount(multisig, 0, multisig.length));
+      int keyOffset = ScriptTemplateMatcher.getMultisigKeyOffset(multisig, 0, 1);
+      Assert.assertEquals(65, ScriptTemplateMatcher.getDataLength(multisig, keyOffset));
+      Assert.assertTrue(BitUtils.areEqual(UNCOMPRESSED_KEY.getPublicKey().getPublicKeyBytes(),
+            BitUtils.copyOfRange(multisig, keyOffset, keyOffset + 65)));
+   }
+
+   @Test
+   public void inputTemplateTest() throws ScriptParsingException {
+      byte[] signature = signature(KEY, 0);
+      byte[] publicKey = KEY.getPublicKey().getPublicKeyBytes();
+      byte[] script = concat(push(signature), push(publicKey));
+      Assert.assertEquals(Template.STANDARD_INPUT, ScriptTemplateMatcher.matchInput(script, 0, script.length));
+      ScriptInputStandard input = (ScriptInputStandard) ScriptInput.fromScriptBytes(script);
+      Assert.assertTrue(BitUtils.areEqual(signature, input.getSignature()));
+      Assert.assertTrue(BitUtils.areEqual(publicKey, input.getPublicKeyBytes()));
+
+      script = push(signature);
+      Assert.assertEquals(Template.PUBKEY_INPUT, ScriptTemplateMatcher.matchInput(script, 0, script.length));
+      Assert.assertTrue(BitUtils.areEqual(signature, ((ScriptInputPubKey) ScriptInput.fromScriptBytes(script))
+            .getSignature()));
+   }
+
+   @Test
+   public void parsedFieldsTest() {
+      for (byte[] script : outputScripts()) {
+         ScriptOutput output = ScriptOutput.fromScriptBytes(script);
+         Assert.assertEquals(classifyOutput(script), output.getClass());
+         Assert.assertSame(script, output.getScriptBytes());
+         if (output instanceof ScriptOutputStandard) {
+            Assert.assertTrue(BitUtils.areEqual(KEY.getPublicKey().getPublicKeyHash(),
+                  ((ScriptOutputStandard) output).getAddressBytes()));
+         } else if (output instanceof ScriptOutputMultisig) {
+            Assert.assertTrue(BitUtils.areEqual(KEY.getPublicKey().getPublicKeyHash(),
+                  ((ScriptOutputMultisig) output).getMultisigAddressBytes()));
+         } else if (output instanceof ScriptOutputPubkey) {
+            byte[] publicKey = ((ScriptOutputPubkey) output).getPublicKeyBytes();
+            Assert.assertTrue(Arrays.equals(KEY.getPublicKey().getPublicKeyBytes(), publicKey)
+                  || Arrays.equals(UNCOMPRESSED_KEY.getPublicKey().getPublicKeyBytes(), publicKey));
+         }
+      }
+   }
+
+   /**
+    * Corrupted scripts must be classified exactly as when parsing them into
+    * chunks
+    */
+   @Test
+   public void mutationTest() {
+      Random random = new Random(1);
+      List<byte[]> outputs = outputScripts();
+      List<byte[]> inputs = inputScripts();
+      for (int i = 0; i < 20000; i++) {
+         boolean output = random.nextBoolean();
+         List<byte[]> scripts = output ? outputs : inputs;
+         byte[] script = mutate(random, scripts.get(random.nextInt(scripts.size())));
+         if (output) {
+            Assert.assertEquals(HexUtils.toHex(script), classifyOutput(script), ScriptOutput.fromScriptBytes(script)
+                  .getClass());
+         } else {
+            Assert.assertEquals(HexUtils.toHex(script), classifyInput(script), parseInput(script));
+         }
+      }
+   }
+
+   private static byte[] mutate(Random random, byte[] script) {
+      if (script.length == 0) {
+         return script;
+      }
+      switch (random.nextInt(4)) {
+      case 0:
+         // Change one byte
+         script = BitUtils.copyOf(script, script.length);
+         script[random.nextInt(script.length)] = (byte) random.nextInt(256);
+         return script;
+      case 1:
+         // Change a byte to a small value, which hits length fields
+         script = BitUtils.copyOf(script, script.length);
+         int index = random.nextInt(script.length);
+         script[index] = (byte) (script[index] + random.nextInt(5) - 2);
+         return script;
+      case 2:
+         // Truncate
+         return BitUtils.copyOf(script, random.nextInt(script.length));
+      default:
+         // Append
+         return concat(script, op(random.nextInt(256)));
+      }
+   }
+
+}
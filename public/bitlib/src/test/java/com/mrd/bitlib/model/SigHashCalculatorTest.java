@@ -0,0 +1,63 @@
+package com.mrd.bitlib.model;
+
+import java.util.Random;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import com.mrd.bitlib.util.HashingByteSink;
+import com.mrd.bitlib.util.Sha256Hash;
+
+public class SigHashCalculatorTest {
+
+   private static byte[] randomBytes(Random random, int length) {
+      byte[] bytes = new byte[length];
+      random.nextBytes(bytes);
+      return bytes;
+   }
+
+   /**
+    * Calculate the signature hash by serializing the whole transaction with
+    * the connected script in place
+    */
+   private static Sha256Hash referenceSigHash(Transaction t, int index, ScriptOutput connectedScript) {
+      TransactionInput[] inputs = new TransactionInput[t.inputs.length];
+      for (int i = 0; i < inputs.length; i++) {
+         ScriptInput script = i == index ? ScriptInput.fromOutputScript(connectedScript) : ScriptInput.EMPTY;
+         inputs[i] = new TransactionInput(t.inputs[i].outPoint, script, t.inputs[i].sequence);
+      }
+      HashingByteSink sink = new HashingByteSink();
+      new Transaction(t.version, inputs, t.outputs, t.lockTime).toByteWriter(sink);
+      sink.putIntLE(SigHashCalculator.SIGHASH_ALL);
+      return sink.getDoubleSha256Hash();
+   }
+
+   @Test
+   public void sigHashTest() {
+      Random random = new Random(1);
+      int numInputs = 300;
+      TransactionInput[] inputs = new TransactionInput[numInputs];
+      ScriptOutput[] connected = new ScriptOutput[numInputs];
+      for (int i = 0; i < numInputs; i++) {
+         OutPoint outPoint = new OutPoint(new Sha256Hash(randomBytes(random, 32)), random.nextInt(10));
+         inputs[i] = new TransactionInput(outPoint, ScriptInput.EMPTY);
+         connected[i] = new ScriptOutputStandard(randomBytes(random, 20));
+      }
+      TransactionOutput[] outputs = new TransactionOutput[] {
+            new TransactionOutput(100000, new ScriptOutputStandard(randomBytes(random, 20))),
+            new TransactionOutput(200000, new ScriptOutputStandard(randomBytes(random, 20))) };
+      Transaction t = new Transaction(1, inputs, outputs, 0);
+
+      SigHashCalculator calculator = new SigHashCalculator(t);
+      // In order
+      for (int i = 0; i < numInputs; i++) {
+         Assert.assertEquals(referenceSigHash(t, i, connected[i]), calculator.getSigHash(i, connected[i]));
+      }
+      // Out of order
+      for (int i : new int[] { 17, 3, 3, 250, 0, 299 }) {
+         Assert.assertEquals(referenceSigHash(t, i, connected[i]), calculator.getSigHash(i, connected[i]));
+      }
+   }
+
+}
@@ -0,0 +1,83 @@
+package com.mrd.bitlib.model;
+
+import java.util.Random;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import com.mrd.bitlib.model.Transaction.TransactionParsingException;
+import com.mrd.bitlib.util.BitUtils;
+import com.mrd.bitlib.util.HexUtils;
+import com.mrd.bitlib.util.Sha256Hash;
+
+public class TransactionViewTest {
+
+   private static final String GENESIS_TRANSACTION = "01000000010000000000000000000000000000000000000000000000000000000000000000ffffffff4d04ffff001d0104455468652054696d65732030332f4a616e2f32303039204368616e63656c6c6f72206f6e206272696e6b206f66207365636f6e64206261696c6f757420666f722062616e6b73ffffffff0100f2052a01000000434104678afdb0fe5548271967f1a67130b7105cd6a828e03909a67962e0ea1f61deb649f6bc3f4cef38c4f35504e51ec112de5c384df7ba0b8d578a4c702b6bf11d5fac00000000";
+
+   private static Transaction randomTransaction(Random random, int numInputs, int numOutputs) {
+      TransactionInput[] inputs = new TransactionInput[numInputs];
+      for (int i = 0; i < numInputs; i++) {
+         byte[] hash = new byte[32];
+         random.nextBytes(hash);
+         inputs[i] = new TransactionInput(new OutPoint(new Sha256Hash(hash), i), ScriptInput.EMPTY);
+      }
+      TransactionOutput[] outputs = new TransactionOutput[numOutputs];
+      for (int i = 0; i < numOutputs; i++) {
+         byte[] address = new byte[20];
+         random.nextBytes(address);
+         outputs[i] = new TransactionOutput(random.nextLong() & 0xFFFFFFFFFFFFL, new ScriptOutputStandard(address));
+      }
+      return new Transaction(1, inputs, outputs, 12345);
+   }
+
+   @Test
+   public void genesisTest() throws TransactionParsingException {
+      byte[] bytes = HexUtils.toBytes(GENESIS_TRANSACTION);
+      // Embed the transaction in a larger buffer
+      byte[] buf = new byte[bytes.length + 10];
+      System.arraycopy(bytes, 0, buf, 3, bytes.length);
+      TransactionView view = TransactionView.fromBytes(buf, 3, bytes.length);
+      Assert.assertEquals("4a5e1e4baab89f3a32518a88c31bc87f618f76673e2cc77ab2127b7afdeda33b", view.getHash().toString());
+      Assert.assertEquals(1, view.getInputCount());
+      Assert.assertEquals(1, view.getOutputCount());
+      Assert.assertEquals(5000000000L, view.getOutputValue(0));
+      Assert.assertEquals(ScriptTemplateMatcher.Template.PAY_TO_PUBKEY, view.getOutputTemplate(0));
+      Assert.assertEquals(view.getHash(), view.toTransaction().getHash());
+      Assert.assertTrue(BitUtils.areEqual(bytes, view.toBytes()));
+   }
+
+   @Test
+   public void lazyTest() throws TransactionParsingException {
+      Random random = new Random(3);
+      Transaction t = randomTransaction(random, 5, 7);
+      TransactionView view = TransactionView.fromBytes(t.toBytes());
+      Assert.assertEquals(t.getHash(), view.getHash());
+      Assert.assertEquals(1, view.getVersion());
+      Assert.assertEquals(12345, view.getLockTime());
+      Assert.assertEquals(5, view.getInputCount());
+      Assert.assertEquals(7, view.getOutputCount());
+      for (int i = 0; i < 5; i++) {
+         Assert.assertEquals(t.inputs[i].outPoint, view.getInput(i).outPoint);
+      }
+      for (int i = 0; i < 7; i++) {
+         Assert.assertEquals(t.outputs[i].value, view.getOutputValue(i));
+         Assert.assertEquals(t.outputs[i].value, view.getOutput(i).value);
+         Assert.assertTrue(BitUtils.areEqual(t.outputs[i].script.getScriptBytes(), view.getOutputScriptBytes(i)));
+      }
+   }
+
+   @Test
+   public void invalidTest() {
+      byte[] bytes = randomTransaction(new Random(5), 2, 2).toBytes();
+      for (int length : new int[] { 0, 4, 50, bytes.length - 1 }) {
+         try {
+            TransactionView.fromBytes(bytes, 0, length);
+            Assert.fail("Truncated transaction accepted");
+         } catch (TransactionParsingException e) {
+            // expected
+         }
+      }
+   }
+
+}
@@ -0,0 +1,101 @@
+package com.mrd.bitlib.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import com.mrd.bitlib.model.Block;
+import com.mrd.bitlib.model.Block.BlockParsingException;
+import com.mrd.bitlib.model.Transaction;
+import com.mrd.bitlib.model.Transaction.TransactionParsingException;
+import com.mrd.bitlib.util.ByteReader.InsufficientBytesException;
+
+public class ByteBufferTest {
+
+   private static final String GENESIS_TRANSACTION = "01000000010000000000000000000000000000000000000000000000000000000000000000ffffffff4d04ffff001d0104455468652054696d65732030332f4a616e2f32303039204368616e63656c6c6f72206f6e206272696e6b206f66207365636f6e64206261696c6f757420666f722062616e6b73ffffffff0100f2052a01000000434104678afdb0fe5548271967f1a67130b7105cd6a828e03909a67962e0ea1f61deb649f6bc3f4cef38c4f35504e51ec112de5c384df7ba0b8d578a4c702b6bf11d5fac00000000";
+   private static final String GENESIS_BLOCK = "0100000000000000000000000000000000000000000000000000000000000000000000003ba3edfd7a7b12b27ac72c3e67768f617fc81bc3888a51323a9fb8aa4b1e5e4a29ab5f49ffff001d1dac2b7c01"
+         + GENESIS_TRANSACTION;
+   private static final String GENESIS_TRANSACTION_HASH = "4a5e1e4baab89f3a32518a88c31bc87f618f76673e2cc77ab2127b7afdeda33b";
+
+   @Test
+   public void writerTest() throws InsufficientBytesException {
+      ByteWriter expected = new ByteWriter(16);
+      ByteBufferWriter heap = ByteBufferWriter.allocate(100);
+      ByteBufferWriter direct = ByteBufferWriter.allocateDirect(100);
+      for (ByteSink sink : new ByteSink[] { expected, heap, direct }) {
+         sink.put((byte) 7);
+         sink.putShortLE((short) 0x1234);
+         sink.putIntLE(0x12345678);
+         sink.putIntBE(0x12345678);
+         sink.putLongLE(0x123456789ABCDEFL);
+         sink.putLongBE(0x123456789ABCDEFL);
+         sink.putCompactInt(70000);
+         sink.putSha256Hash(HashUtils.sha256(new byte[] { 1 }), true);
+         sink.putString("abc");
+      }
+      Assert.assertTrue(BitUtils.areEqual(expected.toBytes(), heap.toBytes()));
+      Assert.assertTrue(BitUtils.areEqual(expected.toBytes(), direct.toBytes()));
+      Assert.assertEquals(expected.length(), direct.length());
+
+      // Read back from the direct buffer
+      ByteReader reader = new ByteReader(direct.toByteBuffer());
+      Assert.assertEquals(7, reader.get());
+      Assert.assertEquals(0x1234, reader.getShortLE());
+      Assert.assertEquals(0x12345678, reader.getIntLE());
+      Assert.assertEquals(0x12345678, reader.getIntBE());
+      Assert.assertEquals(0x123456789ABCDEFL, reader.getLongLE());
+      reader.skip(8);
+      Assert.assertEquals(70000, reader.getCompactInt());
+      Assert.assertEquals(HashUtils.sha256(new byte[] { 1 }), reader.getSha256Hash().reverse());
+      Assert.assertEquals("abc", reader.getString());
+      Assert.assertEquals(0, reader.available());
+   }
+
+   @Test
+   public void sliceTest() throws InsufficientBytesException, TransactionParsingException {
+      byte[] tx = HexUtils.toBytes(GENESIS_TRANSACTION);
+      ByteBuffer buffer = ByteBuffer.allocateDirect(tx.length + 6);
+      buffer.putShort((short) 1).put(tx).putInt(2);
+      buffer.flip();
+      ByteReader reader = new ByteReader(buffer);
+      reader.skip(2);
+      ByteReader slice = reader.slice(tx.length);
+      Assert.assertEquals(0, slice.getPosition());
+      Assert.assertEquals(tx.length, slice.available());
+      Assert.assertEquals(GENESIS_TRANSACTION_HASH, Transaction.fromByteReader(slice).getHash().toString());
+      Assert.assertEquals(0, slice.available());
+      Assert.assertEquals(4, reader.available());
+      // The source buffer is untouched
+      Assert.assertEquals(0, buffer.position());
+      try {
+         reader.slice(5);
+         Assert.fail("Slice beyond the end");
+      } catch (InsufficientBytesException e) {
+         // expected
+      }
+   }
+
+   @Test
+   public void mappedFileTest() throws IOException, BlockParsingException {
+      File file = File.createTempFile("block", ".dat");
+      try {
+         FileOutputStream out = new FileOutputStream(file);
+         try {
+            out.write(HexUtils.toBytes(GENESIS_BLOCK));
+         } finally {
+            out.close();
+         }
+         Block block = Block.fromBlockStore(ByteReader.fromFile(file));
+         Assert.assertEquals(GENESIS_TRANSACTION_HASH, block.transactions[0].getHash().toString());
+         Assert.assertTrue(block.verifyMerkleRoot());
+      } finally {
+         file.delete();
+      }
+   }
+
+}
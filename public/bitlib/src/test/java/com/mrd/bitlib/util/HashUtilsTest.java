@@ -0,0 +1,112 @@
+package com.mrd.bitlib.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import com.google.bitcoinj.Base58;
+import com.mrd.bitlib.crypto.digest.RIPEMD160Digest;
+
+public class HashUtilsTest {
+
+   private static final byte[] ABC = new byte[] { 'a', 'b', 'c' };
+   private static final String SHA256_ABC = "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad";
+   private static final String DOUBLE_SHA256_ABC = "4f8b42c22dd3729b519ba6f68d2da7cc5b2d606d05daed5ad5128cc03e6c6358";
+   private static final byte[] PUBLIC_KEY = HexUtils
+         .toBytes("0250863ad64a87ae8a2fe83c1af1a8403cb53f53e486d8511dad8a04887e5b2352");
+   private static final String PUBLIC_KEY_HASH = "f54a5851e9372b87810a8e60cdd2e7cfd80b6e31";
+
+   @Test
+   public void vectorTest() {
+      Assert.assertEquals(SHA256_ABC, HashUtils.sha256(ABC).toHex());
+      Assert.assertEquals(DOUBLE_SHA256_ABC, HashUtils.doubleSha256(ABC).toHex());
+      Assert.assertEquals(DOUBLE_SHA256_ABC, HashUtils.doubleSha256TwoBuffers(new byte[] { 'a' }, new byte[] { 'b', 'c' })
+            .toHex());
+      Assert.assertEquals(PUBLIC_KEY_HASH, HexUtils.toHex(HashUtils.addressHash(PUBLIC_KEY)));
+   }
+
+   @Test
+   public void bufferTest() {
+      byte[] data = new byte[40];
+      System.arraycopy(ABC, 0, data, 5, 3);
+      byte[] out = new byte[40];
+      HashUtils.sha256(data, 5, 3, out, 3);
+      Assert.assertEquals(SHA256_ABC, HexUtils.toHex(BitUtils.copyOfRange(out, 3, 35)));
+      HashUtils.doubleSha256(data, 5, 3, out, 8);
+      Assert.assertEquals(DOUBLE_SHA256_ABC, HexUtils.toHex(BitUtils.copyOfRange(out, 8, 40)));
+
+      // Output overlapping the input
+      HashUtils.doubleSha256(data, 5, 3, data, 0);
+      Assert.assertEquals(DOUBLE_SHA256_ABC, HexUtils.toHex(BitUtils.copyOfRange(data, 0, 32)));
+
+      byte[] key = new byte[PUBLIC_KEY.length + 2];
+      System.arraycopy(PUBLIC_KEY, 0, key, 2, PUBLIC_KEY.length);
+      HashUtils.addressHash(key, 2, PUBLIC_KEY.length, out, 1);
+      Assert.assertEquals(PUBLIC_KEY_HASH, HexUtils.toHex(BitUtils.copyOfRange(out, 1, 21)));
+   }
+
+   @Test
+   public void batchTest() {
+      int count = 10;
+      int keyLength = PUBLIC_KEY.length;
+      byte[] keys = new byte[3 + count * keyLength];
+      for (int i = 0; i < count; i++) {
+         System.arraycopy(PUBLIC_KEY, 0, keys, 3 + i * keyLength, keyLength);
+         keys[3 + i * keyLength + keyLength - 1] = (byte) i;
+      }
+      byte[] hashes = new byte[count * HashUtils.ADDRESS_HASH_LENGTH];
+      HashUtils.addressHashes(keys, 3, keyLength, count, hashes, 0);
+      for (int i = 0; i < count; i++) {
+         // Compare with a streaming RIPEMD-160 of the SHA-256
+         byte[] key = BitUtils.copyOfRange(keys, 3 + i * keyLength, 3 + (i + 1) * keyLength);
+         byte[] sha256 = HashUtils.sha256(key).getBytes();
+         RIPEMD160Digest ripemd160 = new RIPEMD160Digest();
+         ripemd160.update(sha256, 0, sha256.length);
+         byte[] expected = new byte[20];
+         ripemd160.doFinal(expected, 0);
+         Assert.assertEquals(HexUtils.toHex(expected),
+               HexUtils.toHex(BitUtils.copyOfRange(hashes, i * 20, (i + 1) * 20)));
+      }
+   }
+
+   @Test
+   public void checksumTest() {
+      byte[] payload = HexUtils.toBytes("00" + PUBLIC_KEY_HASH);
+      String encoded = Base58.encodeWithChecksum(payload);
+      Assert.assertEquals("1PMycacnJaSqwwJqjawXBErnLsZ7RkXUAs", encoded);
+      Assert.assertTrue(BitUtils.areEqual(payload, Base58.decodeChecked(encoded)));
+      Assert.assertNull(Base58.decodeChecked("1PMycacnJaSqwwJqjawXBErnLsZ7RkXUAt"));
+   }
+
+   @Test
+   public void threadTest() throws InterruptedException {
+      final List<String> errors = new ArrayList<String>();
+      List<Thread> threads = new ArrayList<Thread>();
+      for (int t = 0; t < 4; t++) {
+         Thread thread = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+               for (int i = 0; i < 500; i++) {
+                  if (!HashUtils.doubleSha256(ABC).toHex().equals(DOUBLE_SHA256_ABC)
+                        || !HexUtils.toHex(HashUtils.addressHash(PUBLIC_KEY)).equals(PUBLIC_KEY_HASH)) {
+                     synchronized (errors) {
+                        errors.add("Mismatch in iteration " + i);
+                     }
+                  }
+               }
+            }
+         });
+         threads.add(thread);
+         thread.start();
+      }
+      for (Thread thread : threads) {
+         thread.join();
+      }
+      Assert.assertTrue(errors.isEmpty());
+   }
+
+}
@@ -0,0 +1,64 @@
+package com.mrd.bitlib.util;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import com.mrd.bitlib.model.Block;
+import com.mrd.bitlib.model.Transaction;
+
+public class HashingByteSinkTest {
+
+   private static final String GENESIS_TRANSACTION = "01000000010000000000000000000000000000000000000000000000000000000000000000ffffffff4d04ffff001d0104455468652054696d65732030332f4a616e2f32303039204368616e63656c6c6f72206f6e206272696e6b206f66207365636f6e64206261696c6f757420666f722062616e6b73ffffffff0100f2052a01000000434104678afdb0fe5548271967f1a67130b7105cd6a828e03909a67962e0ea1f61deb649f6bc3f4cef38c4f35504e51ec112de5c384df7ba0b8d578a4c702b6bf11d5fac00000000";
+   private static final String GENESIS_BLOCK = "0100000000000000000000000000000000000000000000000000000000000000000000003ba3edfd7a7b12b27ac72c3e67768f617fc81bc3888a51323a9fb8aa4b1e5e4a29ab5f49ffff001d1dac2b7c01"
+         + GENESIS_TRANSACTION;
+
+   private static void write(ByteSink sink) {
+      sink.put((byte) 1);
+      sink.putBoolean(true);
+      sink.putShortLE((short) 0x1234);
+      sink.putIntLE(0x12345678);
+      sink.putIntBE(0x12345678);
+      sink.putLongLE(0x123456789ABCDEF0L);
+      sink.putLongBE(0x123456789ABCDEF0L);
+      long[] compactInts = { 0, 252, 253, 65535, 65536, 4294967294L, 4294967295L, -1 };
+      for (long value : compactInts) {
+         sink.putCompactInt(value);
+      }
+      Sha256Hash hash = HashUtils.sha256(new byte[] { 1, 2, 3 });
+      sink.putSha256Hash(hash);
+      sink.putSha256Hash(hash, true);
+      sink.putString("hello");
+      byte[] large = new byte[1000];
+      for (int i = 0; i < large.length; i++) {
+         large[i] = (byte) i;
+      }
+      for (int i = 0; i < 40; i++) {
+         sink.putBytes(large, i, 7 * i);
+      }
+      sink.putBytes(large);
+   }
+
+   @Test
+   public void sameAsWriterTest() {
+      ByteWriter writer = new ByteWriter(10);
+      write(writer);
+      HashingByteSink sink = new HashingByteSink();
+      write(sink);
+      Assert.assertEquals(writer.length(), sink.length());
+      Assert.assertEquals(HashUtils.doubleSha256(writer.toBytes()), sink.getDoubleSha256Hash());
+      // The sink is reset after taking the hash
+      Assert.assertEquals(0, sink.length());
+      write(sink);
+      Assert.assertEquals(HashUtils.sha256(writer.toBytes()), sink.getSha256Hash());
+   }
+
+   @Test
+   public void genesisTest() throws Exception {
+      Transaction tx = Transaction.fromByteReader(new ByteReader(HexUtils.toBytes(GENESIS_TRANSACTION)));
+      Assert.assertEquals("4a5e1e4baab89f3a32518a88c31bc87f618f76673e2cc77ab2127b7afdeda33b", tx.getHash().toString());
+      Block block = Block.fromBlockStore(new ByteReader(HexUtils.toBytes(GENESIS_BLOCK)));
+      Assert.assertEquals("000000000019d6689c085ae165831e934ff763ae46a2a6c172b3f1b60a8ce26f", block.getHash().toString());
+   }
+
+}
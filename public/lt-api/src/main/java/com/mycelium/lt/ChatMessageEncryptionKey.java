@@ -8,8 +8,8 @@ import Rijndael.Rijndael;
 
 import com.google.common.io.BaseEncoding;
 import com.mrd.bitlib.crypto.Ecdh;
-import com.mrd.bitlib.crypto.Hmac;
 import com.mrd.bitlib.crypto.InMemoryPrivateKey;
+import com.mrd.bitlib.crypto.KeyedHmac;
 import com.mrd.bitlib.crypto.PublicKey;
 import com.mrd.bitlib.util.BitUtils;
 import com.mrd.bitlib.util.ByteReader;
@@ -34,6 +34,7 @@ public class ChatMessageEncryptionKey implements Serializable {
 
    public final byte[] encryptionKey;
    public final byte[] hmacKey;
+   private transient volatile KeyedHmac keyedHmac;
 
    private ChatMessageEncryptionKey(byte[] aesKey, byte[] hmacKey) {
       this.encryptionKey = aesKey;
@@ -229,11 +230,24 @@ public class ChatMessageEncryptionKey implements Serializable {
     * bytes
     */
    private byte[] calculateHmac(byte[] messageBytes) {
-      byte[] hmac = Hmac.hmacSha256(hmacKey, messageBytes);
+      byte[] hmac = getKeyedHmac().mac(messageBytes);
       // We use the first half of the H-MAC value as our MAC value
       return BitUtils.copyOf(hmac, MAC_LENGTH);
    }
 
+   /**
+    * Get an HMAC-SHA256 keyed with the HMAC key. The keyed HMAC is created
+    * once and copied for each use.
+    */
+   private KeyedHmac getKeyedHmac() {
+      KeyedHmac hmac = keyedHmac;
+      if (hmac == null) {
+         hmac = KeyedHmac.hmacSha256(hmacKey);
+         keyedHmac = hmac;
+      }
+      return hmac.clone();
+   }
+
    private static byte[] utf8StringToBytes(String string) {
       try {
          return string.getBytes("UTF-8");
@@ -36,6 +36,7 @@ package com.mrd.mbwapi.api;
 
 import com.mrd.bitlib.util.ByteReader;
 import com.mrd.bitlib.util.ByteReader.InsufficientBytesException;
+import com.mrd.bitlib.util.ByteSink;
 import com.mrd.bitlib.util.ByteWriter;
 
 public abstract class ApiObject {
@@ -70,13 +71,22 @@ public abstract class ApiObject {
    protected static final byte EXCHANGE_RATE_TYPE = (byte) 0x26;
 
    public final ByteWriter serialize(ByteWriter writer) {
-      byte[] payload = toByteWriter(new ByteWriter(1024)).toBytes();
-      writer.put(getType());
-      writer.putIntLE(payload.length);
-      writer.putBytes(payload);
+      serialize((ByteSink) writer);
       return writer;
    }
 
+   /**
+    * Serialize this object into a byte sink, for instance a
+    * {@link com.mrd.bitlib.util.HashingByteSink} to hash it. The payload is
+    * still buffered, as its length precedes it.
+    */
+   public final void serialize(ByteSink sink) {
+      ByteWriter payload = toByteWriter(new ByteWriter(1024));
+      sink.put(getType());
+      sink.putIntLE(payload.length());
+      sink.putBytes(payload.toBytes());
+   }
+
    private static ApiObject deserialize(ByteReader reader) throws ApiException {
       try {
          byte type = reader.get();
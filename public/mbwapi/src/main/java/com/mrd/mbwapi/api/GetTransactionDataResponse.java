@@ -34,6 +34,7 @@
 
 package com.mrd.mbwapi.api;
 
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -41,6 +42,7 @@ import com.mrd.bitlib.model.IndependentTransactionOutput;
 import com.mrd.bitlib.model.Script.ScriptParsingException;
 import com.mrd.bitlib.model.SourcedTransactionOutput;
 import com.mrd.bitlib.model.Transaction.TransactionParsingException;
+import com.mrd.bitlib.model.TransactionView;
 import com.mrd.bitlib.util.ByteReader;
 import com.mrd.bitlib.util.ByteReader.InsufficientBytesException;
 import com.mrd.bitlib.util.ByteWriter;
@@ -74,6 +76,19 @@ public class GetTransactionDataResponse extends ApiObject {
       // compatibility
    }
 
+   /**
+    * Get views of the raw transactions. The views only decode inputs and
+    * outputs when they are accessed, so getting the hashes of many
+    * transactions is cheap.
+    */
+   public List<TransactionView> getTransactionViews() throws TransactionParsingException {
+      List<TransactionView> views = new ArrayList<TransactionView>(rawTransactions.size());
+      for (byte[] rawTransaction : rawTransactions) {
+         views.add(TransactionView.fromBytes(rawTransaction));
+      }
+      return views;
+   }
+
    private List<SourcedTransactionOutput> sourcedOutputListFromReader(ByteReader reader)
          throws InsufficientBytesException, ApiException, ScriptParsingException {
       int size = reader.getIntLE();